@@ -0,0 +1,53 @@
+package com.stegosecure.benchmark;
+
+import com.stegosecure.util.AESUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passphrase-based AES encrypt/decrypt as used for every hide and reveal.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AESBenchmark {
+
+    @Param({"64", "4096", "262144"})
+    public int payloadSize;
+
+    private static final String KEY = "benchmark-passphrase-123";
+
+    private String plaintext;
+    private String ciphertext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        plaintext = BenchmarkImages.message(payloadSize);
+        ciphertext = AESUtil.encrypt(plaintext, KEY);
+    }
+
+    @Benchmark
+    public String encrypt() throws Exception {
+        return AESUtil.encrypt(plaintext, KEY);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return AESUtil.decrypt(ciphertext, KEY);
+    }
+}
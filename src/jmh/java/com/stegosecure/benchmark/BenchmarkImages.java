@@ -0,0 +1,79 @@
+package com.stegosecure.benchmark;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Deterministic carrier images and payloads shared by the benchmarks.
+ */
+final class BenchmarkImages {
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * @param size  "WIDTHxHEIGHT", e.g. "1024x1024"
+     * @param type  INT_RGB, INT_ARGB, 3BYTE_BGR or 4BYTE_ABGR
+     */
+    static BufferedImage create(String size, String type) {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+        BufferedImage image = new BufferedImage(width, height, imageType(type));
+        // Photo-like gradients plus noise so PNG filters and deflate have realistic work to do
+        Random random = new Random(width * 31L + height);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(8);
+                row[x] = 0xFF000000 | ((x + noise) & 0xFF) << 16 | ((y + noise) & 0xFF) << 8 | ((x ^ y) & 0xFF);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    static int imageType(String type) {
+        switch (type) {
+            case "INT_RGB": return BufferedImage.TYPE_INT_RGB;
+            case "INT_ARGB": return BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR": return BufferedImage.TYPE_3BYTE_BGR;
+            case "4BYTE_ABGR": return BufferedImage.TYPE_4BYTE_ABGR;
+            default: throw new IllegalArgumentException("Unknown image type " + type);
+        }
+    }
+
+    static byte[] png(BufferedImage image) {
+        return encode(image, "png");
+    }
+
+    /**
+     * @param format an ImageIO format name, e.g. png, bmp or tiff
+     */
+    static byte[] encode(BufferedImage image, String format) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!ImageIO.write(image, format, out)) {
+                throw new IllegalArgumentException("No " + format + " writer for this image type");
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** ASCII payload of the given length, shaped like the Base64 text the service embeds. */
+    static String message(int length) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        Random random = new Random(length);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package com.stegosecure.benchmark;
+
+import com.stegosecure.service.StegoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end StegoService hide, reveal and capacity per carrier format: the same pixels as PNG
+ * (streamed), BMP (embedded in place) and TIFF (decoded and re-encoded through ImageIO).
+ * {@link #copyThroughFile()} is the I/O floor of an in-place hide: the temp file copy and
+ * transfer without any embedding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class CarrierCodecBenchmark {
+
+    @Param({"png", "bmp", "tiff"})
+    public String codec;
+
+    @Param({"1024x1024", "4096x4096"})
+    public String imageSize;
+
+    @Param({"4096"})
+    public int payloadSize;
+
+    private static final String KEY = "benchmark-passphrase-123";
+
+    private final StegoService stegoService = new StegoService();
+    private byte[] carrier;
+    private byte[] stegoImage;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        carrier = BenchmarkImages.encode(BenchmarkImages.create(imageSize, "3BYTE_BGR"), codec);
+        message = BenchmarkImages.message(payloadSize);
+        stegoImage = hide();
+    }
+
+    @Benchmark
+    public byte[] hide() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(carrier.length);
+        stegoService.prepareHide(carrier, message, KEY, "fast").writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] copyThroughFile() throws Exception {
+        Path copy = Files.createTempFile("stego-bench-", "." + codec);
+        try {
+            Files.copy(new ByteArrayInputStream(carrier), copy, StandardCopyOption.REPLACE_EXISTING);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(carrier.length);
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                for (long position = 0; position < channel.size(); ) {
+                    position += channel.transferTo(position, channel.size() - position, target);
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Benchmark
+    public String reveal() throws Exception {
+        return stegoService.revealMessage(stegoImage, KEY);
+    }
+
+    @Benchmark
+    public int capacity() throws Exception {
+        return stegoService.getImageCapacity(new ByteArrayInputStream(carrier));
+    }
+}
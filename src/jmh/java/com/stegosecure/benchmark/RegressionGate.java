@@ -0,0 +1,65 @@
+package com.stegosecure.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result with a baseline from a previously promoted build and exits
+ * non-zero if any benchmark got slower than the tolerance allows.
+ *
+ * Usage: RegressionGate &lt;baseline.json&gt; &lt;current.json&gt; [tolerance, default 0.10]
+ *
+ * Only benchmarks present in both files are compared, keyed by name plus parameters.
+ * All benchmarks here report average time, so a higher score is a regression.
+ */
+public final class RegressionGate {
+
+    private RegressionGate() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RegressionGate <baseline.json> <current.json> [tolerance]");
+            System.exit(2);
+        }
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        Map<String, Double> baseline = scores(new File(args[0]));
+        Map<String, Double> current = scores(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null || before <= 0) {
+                continue;
+            }
+            double change = entry.getValue() / before - 1;
+            boolean regressed = change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%s %-90s %12.3f -> %12.3f (%+.1f%%)%n",
+                    regressed ? "❌" : "✅", entry.getKey(), before, entry.getValue(), change * 100);
+        }
+        if (regressions > 0) {
+            System.err.println("❌ " + regressions + " benchmark(s) regressed by more than "
+                    + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+        System.out.println("✅ No benchmark regressed by more than " + Math.round(tolerance * 100) + "%");
+    }
+
+    private static Map<String, Double> scores(File file) throws Exception {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            scores.put(key.toString(), run.path("primaryMetric").path("score").asDouble());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,107 @@
+package com.stegosecure.benchmark;
+
+import com.stegosecure.util.AESUtil;
+import com.stegosecure.util.ImageSteganographyUtil;
+import com.stegosecure.util.LsbLayout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LSB embed/extract on in-memory images.
+ *
+ * The scattered variants include building the slot permutation and one permutation lookup per
+ * payload bit; only deriving the scatter key from the passphrase is done up front. Run them with
+ * {@code -p imageSize=8192x6144 -prof gc} to check that a 50 MP image allocates no more than a
+ * small one beyond the image copy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class SteganographyBenchmark {
+
+    @Param({"1024x1024", "4096x4096"})
+    public String imageSize;
+
+    @Param({"INT_RGB", "3BYTE_BGR", "4BYTE_ABGR"})
+    public String imageType;
+
+    @Param({"64", "4096", "262144"})
+    public int payloadSize;
+
+    /** LSB depth of the raw-payload benchmarks; depth 1 is the original one-bit layout. */
+    @Param({"1", "2", "4"})
+    public int lsbDepth;
+
+    private BufferedImage carrier;
+    private BufferedImage stegoImage;
+    private BufferedImage layeredStegoImage;
+    private BufferedImage scatteredStegoImage;
+    private byte[] scatterKey;
+    private String message;
+    private byte[] payload;
+    private LsbLayout layout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        carrier = BenchmarkImages.create(imageSize, imageType);
+        message = BenchmarkImages.message(payloadSize);
+        stegoImage = ImageSteganographyUtil.hideMessage(carrier, message);
+        payload = message.getBytes(StandardCharsets.UTF_8);
+        layout = LsbLayout.of(lsbDepth, false);
+        layeredStegoImage = ImageSteganographyUtil.hidePayload(carrier, payload, layout);
+        scatterKey = AESUtil.deriveScatterKey("benchmark-key");
+        scatteredStegoImage = ImageSteganographyUtil.hidePayload(carrier, payload, layout, scatterKey);
+    }
+
+    @Benchmark
+    public BufferedImage hideMessage() throws Exception {
+        return ImageSteganographyUtil.hideMessage(carrier, message);
+    }
+
+    @Benchmark
+    public String revealMessage() throws Exception {
+        return ImageSteganographyUtil.revealMessage(stegoImage);
+    }
+
+    @Benchmark
+    public BufferedImage hidePayload() throws Exception {
+        return ImageSteganographyUtil.hidePayload(carrier, payload, layout);
+    }
+
+    @Benchmark
+    public byte[] revealPayload() throws Exception {
+        return ImageSteganographyUtil.revealPayload(layeredStegoImage);
+    }
+
+    @Benchmark
+    public BufferedImage hideScatteredPayload() throws Exception {
+        return ImageSteganographyUtil.hidePayload(carrier, payload, layout, scatterKey);
+    }
+
+    @Benchmark
+    public byte[] revealScatteredPayload() throws Exception {
+        return ImageSteganographyUtil.revealPayload(scatteredStegoImage, scatterKey);
+    }
+
+    @Benchmark
+    public int getMaxCapacity() {
+        return ImageSteganographyUtil.getMaxCapacity(carrier);
+    }
+}
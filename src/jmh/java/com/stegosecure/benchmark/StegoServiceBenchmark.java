@@ -0,0 +1,68 @@
+package com.stegosecure.benchmark;
+
+import com.stegosecure.service.StegoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end StegoService hide and reveal on PNG bytes, including decode, AES and encode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class StegoServiceBenchmark {
+
+    @Param({"1024x1024", "4096x4096"})
+    public String imageSize;
+
+    @Param({"3BYTE_BGR", "4BYTE_ABGR"})
+    public String imageType;
+
+    @Param({"64", "4096"})
+    public int payloadSize;
+
+    @Param({"fast", "balanced"})
+    public String profile;
+
+    private static final String KEY = "benchmark-passphrase-123";
+
+    private final StegoService stegoService = new StegoService();
+    private byte[] carrierPng;
+    private byte[] stegoPng;
+    private String message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        carrierPng = BenchmarkImages.png(BenchmarkImages.create(imageSize, imageType));
+        message = BenchmarkImages.message(payloadSize);
+        stegoPng = hide();
+    }
+
+    @Benchmark
+    public byte[] hide() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(carrierPng.length);
+        stegoService.prepareHide(carrierPng, message, KEY, profile).writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String reveal() throws Exception {
+        return stegoService.revealMessage(stegoPng, KEY);
+    }
+}
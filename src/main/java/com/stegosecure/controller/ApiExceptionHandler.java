@@ -0,0 +1,90 @@
+package com.stegosecure.controller;
+
+import com.stegosecure.service.ImageTooLargeException;
+import com.stegosecure.service.ServerBusyException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ApiExceptionHandler - JSON error responses for StegoController
+ *
+ * Endpoints declare the body they return on success, e.g. a StreamingResponseBody that Spring
+ * writes asynchronously, and throw on failure; the error map is built here.
+ */
+@RestControllerAdvice(assignableTypes = StegoController.class)
+public class ApiExceptionHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiExceptionHandler.class);
+
+    /**
+     * 400 for invalid input: missing fields, unsupported formats, payloads that do not fit
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e, HttpServletRequest request) {
+        logger.warn("Validation error in {}: {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * 503 with a short Retry-After when the CPU work pool is full or the memory budget stayed exhausted
+     */
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<Map<String, Object>> busy(ServerBusyException e, HttpServletRequest request) {
+        logger.warn("Request to {} rejected: {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * 413 when an image would need more memory than the whole budget; retrying cannot help
+     */
+    @ExceptionHandler(ImageTooLargeException.class)
+    public ResponseEntity<Map<String, Object>> tooLarge(ImageTooLargeException e, HttpServletRequest request) {
+        logger.warn("Request to {} rejected: {}", request.getRequestURI(), e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * 500 for anything else. Spring MVC's own exceptions (missing parameters, upload limits) are
+     * rethrown so they keep their usual status. A streamed body that fails part way has already
+     * sent its status and headers, so that failure is only logged.
+     */
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<Map<String, Object>> failure(Exception e, HttpServletRequest request,
+                                                       HttpServletResponse response) throws Exception {
+        if (e instanceof ErrorResponse) {
+            throw e;
+        }
+        if (response.isCommitted()) {
+            logger.warn("Streaming the response to {} failed: {}", request.getRequestURI(), e.getMessage());
+            return null;
+        }
+        logger.error("Critical error in {}", request.getRequestURI(), e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * Helper method to create consistent error responses
+     */
+    static Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
@@ -0,0 +1,241 @@
+package com.stegosecure.controller;
+
+import com.stegosecure.service.JobService;
+import com.stegosecure.service.ServerBusyException;
+import com.stegosecure.service.StegoJob;
+import com.stegosecure.util.CarrierCodec;
+import com.stegosecure.util.CarrierCodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JobController - Background Job Endpoints
+ * Submits hide/reveal work that outlives a single HTTP request, reports progress and serves results
+ */
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = "*")
+public class JobController {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * Submit a hide job
+     * POST /api/jobs/hide
+     * @param image PNG, BMP or TIFF image file (multipart/form-data)
+     * @param message Secret message to hide (form parameter)
+     * @param key AES encryption key (form parameter)
+     * @param profile Optional PNG encoder profile: fast, balanced or small (form parameter)
+     * @return 202 with the job ID; poll GET /api/jobs/{id} and fetch GET /api/jobs/{id}/result
+     */
+    @PostMapping(value = "/hide", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitHide(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("message") String message,
+            @RequestParam("key") String key,
+            @RequestParam(value = "profile", required = false) String profile) {
+
+        logger.info("POST /api/jobs/hide - HIDE JOB SUBMITTED for file: {}", image.getOriginalFilename());
+
+        if (image.isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Image file is required"));
+        }
+        if (message == null || message.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Message is required"));
+        }
+        if (key == null || key.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Encryption key is required"));
+        }
+        try {
+            return accepted(jobService.submitHide(StegoController.imageSource(image), message.trim(), key.trim(), profile));
+        } catch (ServerBusyException e) {
+            return busyResponse(e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Validation error during hide job submission: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Critical error submitting hide job", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to submit hide job: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Submit a reveal job
+     * POST /api/jobs/reveal
+     * @param image Stego-image PNG, BMP or TIFF file (multipart/form-data)
+     * @param key AES decryption key (form parameter)
+     * @return 202 with the job ID
+     */
+    @PostMapping(value = "/reveal", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitReveal(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("key") String key) {
+
+        logger.info("POST /api/jobs/reveal - REVEAL JOB SUBMITTED for file: {}", image.getOriginalFilename());
+
+        if (image.isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Image file is required"));
+        }
+        if (key == null || key.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(createErrorResponse("Decryption key is required"));
+        }
+        try {
+            return accepted(jobService.submitReveal(StegoController.imageSource(image), key.trim()));
+        } catch (ServerBusyException e) {
+            return busyResponse(e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Validation error during reveal job submission: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Critical error submitting reveal job", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Failed to submit reveal job: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Job status and progress
+     * GET /api/jobs/{id}
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable("id") String id) {
+        StegoJob job = jobService.getJob(id);
+        if (job == null) {
+            return notFound(id);
+        }
+        return ResponseEntity.ok(describe(job));
+    }
+
+    /**
+     * Result of a finished job: the stego-image for hide, the message as JSON for reveal
+     * GET /api/jobs/{id}/result
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getResult(@PathVariable("id") String id) {
+        StegoJob job = jobService.getJob(id);
+        if (job == null) {
+            return notFound(id);
+        }
+        if (job.getState() != StegoJob.State.SUCCEEDED) {
+            Map<String, Object> error = createErrorResponse(job.getState() == StegoJob.State.FAILED
+                    ? "Job failed: " + job.getError()
+                    : "Job is not finished yet");
+            error.put("state", job.getState());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+        try {
+            if (job.getType() == StegoJob.Type.REVEAL) {
+                String revealedMessage;
+                try (InputStream result = jobService.openResult(job)) {
+                    revealedMessage = new String(result.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                Map<String, Object> response = new HashMap<>();
+                response.put("status", "success");
+                response.put("message", revealedMessage);
+                response.put("timestamp", System.currentTimeMillis());
+                response.put("messageLength", revealedMessage.length());
+                return ResponseEntity.ok(response);
+            }
+
+            // A stego-image keeps the format of the upload, which its signature tells
+            CarrierCodec format;
+            try (InputStream result = jobService.openResult(job)) {
+                format = CarrierCodecs.detect(result);
+            }
+            InputStream result = jobService.openResult(job);
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(format.getMediaType()));
+            headers.setContentDispositionFormData("attachment", "encoded_image." + format.getExtension());
+            headers.setContentLength(job.getResultSize());
+            // Copied from the stored file and closed by the resource converter once written
+            return ResponseEntity.ok().headers(headers).body(new InputStreamResource(result));
+
+        } catch (Exception e) {
+            // The result may have been evicted between the state check and opening it
+            logger.warn("Result of job {} unavailable: {}", id, e.getMessage());
+            return notFound(id);
+        }
+    }
+
+    /**
+     * Delete a job and its stored result
+     * DELETE /api/jobs/{id}
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteJob(@PathVariable("id") String id) {
+        if (!jobService.deleteJob(id)) {
+            return notFound(id);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("jobId", id);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<?> accepted(StegoJob job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.getId()))
+                .body(describe(job));
+    }
+
+    private Map<String, Object> describe(StegoJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("jobId", job.getId());
+        response.put("type", job.getType());
+        response.put("state", job.getState());
+        response.put("rowsProcessed", job.getRowsProcessed());
+        response.put("totalRows", job.getTotalRows());
+        response.put("createdAt", job.getCreatedAt().toString());
+        if (job.getFinishedAt() != null) {
+            response.put("finishedAt", job.getFinishedAt().toString());
+        }
+        if (job.getError() != null) {
+            response.put("error", job.getError());
+        }
+        response.put("timestamp", System.currentTimeMillis());
+        return response;
+    }
+
+    private ResponseEntity<?> notFound(String id) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(createErrorResponse("Job " + id + " not found or expired"));
+    }
+
+    private ResponseEntity<?> busyResponse(ServerBusyException e) {
+        logger.warn("Job rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(createErrorResponse(e.getMessage()));
+    }
+
+    /**
+     * Helper method to create consistent error responses
+     */
+    private Map<String, Object> createErrorResponse(String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", message);
+        error.put("timestamp", System.currentTimeMillis());
+        return error;
+    }
+}
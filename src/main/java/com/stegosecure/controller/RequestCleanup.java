@@ -0,0 +1,55 @@
+package com.stegosecure.controller;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RequestCleanup - closes what a streamed response still holds once its request is over
+ *
+ * A streamed endpoint prepares its result, with its memory reservation and open upload, before
+ * returning the body that Spring writes later. If that body never runs, e.g. because the async
+ * request timed out or failed first, nothing else releases them. The servlet container destroys
+ * every request once it is complete, asynchronous ones included, so resources registered here
+ * are closed then. Closing a result that has been written does nothing.
+ */
+@Component
+public class RequestCleanup implements ServletRequestListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestCleanup.class);
+
+    private static final String ATTRIBUTE = RequestCleanup.class.getName() + ".resources";
+
+    /**
+     * Close {@code resource} when {@code request} is destroyed, after any async processing.
+     */
+    static void closeOnCompletion(ServletRequest request, AutoCloseable resource) {
+        @SuppressWarnings("unchecked")
+        List<AutoCloseable> resources = (List<AutoCloseable>) request.getAttribute(ATTRIBUTE);
+        if (resources == null) {
+            resources = new ArrayList<>();
+            request.setAttribute(ATTRIBUTE, resources);
+        }
+        resources.add(resource);
+    }
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        if (!(event.getServletRequest().getAttribute(ATTRIBUTE) instanceof List<?> resources)) {
+            return;
+        }
+        for (Object resource : resources) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                logger.warn("Releasing a request resource failed: {}", e.getMessage());
+            }
+        }
+    }
+}
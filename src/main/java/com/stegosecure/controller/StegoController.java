@@ -1,17 +1,39 @@
 package com.stegosecure.controller;
 
+import com.stegosecure.service.BatchItem;
+import com.stegosecure.service.BatchItems;
+import com.stegosecure.service.BatchResultWriter;
+import com.stegosecure.service.BatchService;
+import com.stegosecure.service.CpuWorkPool;
+import com.stegosecure.service.ImageSource;
+import com.stegosecure.service.MemoryBudget;
+import com.stegosecure.service.RevealedFile;
+import com.stegosecure.service.StegoImageOutput;
 import com.stegosecure.service.StegoService;
+import com.stegosecure.util.CarrierCodec;
+import com.stegosecure.util.CarrierCodecs;
+import com.stegosecure.util.KeyCacheStats;
+import com.stegosecure.util.RowProgress;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -29,6 +51,21 @@ public class StegoController {
     @Autowired
     private StegoService stegoService;
 
+    @Autowired
+    private BatchService batchService;
+
+    @Autowired
+    private CpuWorkPool cpuWorkPool;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    private static final String UNSUPPORTED_IMAGE = "Only " + CarrierCodecs.names() + " images are supported";
+
+    // Largest image accepted from a batch zip archive
+    @Value("${stego.batch.max-entry-size:52428800}")
+    private long batchMaxEntryBytes = 52428800;
+
     /**
      * Test endpoint to verify server is running
      * GET /api/test
@@ -44,7 +81,15 @@ public class StegoController {
         response.put("endpoints", new String[]{
                 "POST /api/hide - Hide message in image",
                 "POST /api/reveal - Reveal message from image",
+                "POST /api/hide-file - Hide file in image",
+                "POST /api/reveal-file - Reveal file from image",
+                "POST /api/batch/hide - Hide messages in many images",
+                "POST /api/batch/reveal - Reveal messages from many images",
+                "POST /api/jobs/hide - Hide message in a background job",
+                "POST /api/jobs/reveal - Reveal message in a background job",
+                "GET /api/jobs/{id} - Job progress; /result for its output",
                 "POST /api/capacity - Check image capacity",
+                "GET /api/stats - Key cache statistics",
                 "GET /api/test - Test endpoint"
         });
 
@@ -55,174 +100,388 @@ public class StegoController {
     /**
      * Hide a message in an image
      * POST /api/hide
-     * @param image PNG image file (multipart/form-data)
+     * @param image PNG, BMP or TIFF image file (multipart/form-data)
      * @param message Secret message to hide (form parameter)
      * @param key AES encryption key (form parameter)
-     * @return Stego-image as downloadable PNG file
+     * @param profile Optional PNG encoder profile: fast, balanced or small (form parameter)
+     * @return Stego-image as a downloadable file in the format of the upload, streamed into the response
      */
     @PostMapping(value = "/hide", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> hideMessage(
+    public ResponseEntity<StreamingResponseBody> hideMessage(
             @RequestParam("image") MultipartFile image,
             @RequestParam("message") String message,
-            @RequestParam("key") String key) {
+            @RequestParam("key") String key,
+            @RequestParam(value = "profile", required = false) String profile,
+            HttpServletRequest request) throws Exception {
 
         logger.info("POST /api/hide - HIDE MESSAGE API CALLED for file: {}", image.getOriginalFilename());
 
-        try {
-            // Input validation
-            if (image.isEmpty()) {
-                logger.warn("Hide request failed: Empty image file provided.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Image file is required"));
-            }
-            if (message == null || message.trim().isEmpty()) {
-                logger.warn("Hide request failed: Message is empty.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Message is required"));
-            }
-            if (key == null || key.trim().isEmpty()) {
-                logger.warn("Hide request failed: Encryption key is empty.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Encryption key is required"));
-            }
-            String contentType = image.getContentType();
-            if (contentType == null || !contentType.equals("image/png")) {
-                logger.warn("Hide request failed: Invalid file type '{}'", contentType);
-                return ResponseEntity.badRequest().body(createErrorResponse("Only PNG images are supported"));
-            }
+        // Input validation
+        requireImage(image);
+        require(message != null && !message.trim().isEmpty(), "Message is required");
+        require(key != null && !key.trim().isEmpty(), "Encryption key is required");
 
-            logger.info("Input validation passed for hide request.");
+        logger.debug("Input validation passed for hide request.");
 
-            // Hide message using service
-            byte[] stegoImageBytes = stegoService.hideMessage(image.getBytes(), message.trim(), key.trim());
+        // The stego-image keeps the format of the upload, whatever its declared content type
+        CarrierCodec format = stegoService.detectFormat(imageSource(image));
 
-            // Prepare response headers for file download
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            headers.setContentDispositionFormData("attachment", "encoded_image.png");
-            headers.setContentLength(stegoImageBytes.length);
+        // Validate and encrypt now; the stego-image itself is streamed into the response
+        StegoImageOutput stegoImage = cpuWorkPool.render(
+                () -> stegoService.prepareHide(imageSource(image), message.trim(), key.trim(), profile, RowProgress.NONE));
+        RequestCleanup.closeOnCompletion(request, stegoImage);
 
-            logger.info("HIDE MESSAGE API COMPLETED SUCCESSFULLY. Returning stego-image of size {} bytes.", stegoImageBytes.length);
+        StreamingResponseBody body = outputStream -> {
+            stegoImage.writeTo(outputStream);
+            logger.info("HIDE MESSAGE API COMPLETED SUCCESSFULLY. Stego-image streamed for file: {}", image.getOriginalFilename());
+        };
 
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(stegoImageBytes);
+        return ResponseEntity.ok()
+                .headers(stegoImageHeaders(format))
+                .body(body);
+    }
+
+    /**
+     * Hide a binary file in an image
+     * POST /api/hide-file
+     * @param image PNG, BMP or TIFF image file (multipart/form-data)
+     * @param file File to hide, encrypted with streaming AES-GCM (multipart/form-data)
+     * @param key Passphrase for the file key (form parameter)
+     * @param profile Optional PNG encoder profile: fast, balanced or small (form parameter)
+     * @return Stego-image as a downloadable file in the format of the upload, streamed into the response
+     */
+    @PostMapping(value = "/hide-file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> hideFile(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("key") String key,
+            @RequestParam(value = "profile", required = false) String profile,
+            HttpServletRequest request) throws Exception {
+
+        logger.info("POST /api/hide-file - HIDE FILE API CALLED for image: {}, file size: {}", image.getOriginalFilename(), file.getSize());
+
+        // Input validation
+        requireImage(image);
+        require(!file.isEmpty(), "File to hide is required");
+        require(key != null && !key.trim().isEmpty(), "Encryption key is required");
 
-        } catch (IllegalArgumentException e) {
-            logger.warn("Validation error during hide request: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        CarrierCodec format = stegoService.detectFormat(imageSource(image));
+
+        // The upload is read from its multipart storage while the stego-image is streamed
+        InputStream fileStream = file.getInputStream();
+        RequestCleanup.closeOnCompletion(request, fileStream);
+        StegoImageOutput stegoImage;
+        try {
+            stegoImage = cpuWorkPool.render(
+                    () -> stegoService.prepareHideFile(imageSource(image), fileStream, file.getSize(), key.trim(), profile));
         } catch (Exception e) {
-            logger.error("Critical error in hide message API", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Failed to hide message: " + e.getMessage()));
+            fileStream.close();
+            throw e;
         }
+        RequestCleanup.closeOnCompletion(request, stegoImage);
+
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream ignored = fileStream) {
+                stegoImage.writeTo(outputStream);
+            }
+            logger.info("HIDE FILE API COMPLETED SUCCESSFULLY. Stego-image streamed for image: {}", image.getOriginalFilename());
+        };
+
+        return ResponseEntity.ok()
+                .headers(stegoImageHeaders(format))
+                .body(body);
+    }
+
+    /**
+     * Reveal a hidden file from a stego-image
+     * POST /api/reveal-file
+     * @param image Stego-image PNG, BMP or TIFF file (multipart/form-data)
+     * @param key Passphrase used when hiding (form parameter)
+     * @return The decrypted file as application/octet-stream, streamed into the response
+     */
+    @PostMapping(value = "/reveal-file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> revealFile(
+            @RequestParam("image") MultipartFile image,
+            @RequestParam("key") String key,
+            HttpServletRequest request) throws Exception {
+
+        logger.info("POST /api/reveal-file - REVEAL FILE API CALLED for image: {}", image.getOriginalFilename());
+
+        requireImage(image);
+        require(key != null && !key.trim().isEmpty(), "Decryption key is required");
+
+        // The key is verified here; the rest of the file is decrypted into the response
+        RevealedFile revealedFile = cpuWorkPool.execute(() -> stegoService.revealFile(imageSource(image), key.trim()));
+        RequestCleanup.closeOnCompletion(request, revealedFile);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDispositionFormData("attachment", "revealed_file.bin");
+        headers.setContentLength(revealedFile.getSize());
+
+        StreamingResponseBody body = outputStream -> {
+            revealedFile.writeTo(outputStream);
+            logger.info("REVEAL FILE API COMPLETED SUCCESSFULLY. {} bytes streamed", revealedFile.getSize());
+        };
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
     }
 
     /**
      * Reveal a hidden message from a stego-image
      * POST /api/reveal
-     * @param image Stego-image PNG file (multipart/form-data)
+     * @param image Stego-image PNG, BMP or TIFF file (multipart/form-data)
      * @param key AES decryption key (form parameter)
      * @return JSON response with revealed message
      */
     @PostMapping(value = "/reveal", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> revealMessage(
+    public ResponseEntity<Map<String, Object>> revealMessage(
             @RequestParam("image") MultipartFile image,
-            @RequestParam("key") String key) {
+            @RequestParam("key") String key) throws Exception {
 
         logger.info("POST /api/reveal - REVEAL MESSAGE API CALLED for file: {}", image.getOriginalFilename());
 
-        try {
-            // Input validation
-            if (image.isEmpty()) {
-                logger.warn("Reveal request failed: Empty image file provided.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Image file is required"));
-            }
-            if (key == null || key.trim().isEmpty()) {
-                logger.warn("Reveal request failed: Decryption key is empty.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Decryption key is required"));
-            }
-            String contentType = image.getContentType();
-            if (contentType == null || !contentType.equals("image/png")) {
-                logger.warn("Reveal request failed: Invalid file type '{}'", contentType);
-                return ResponseEntity.badRequest().body(createErrorResponse("Only PNG images are supported"));
-            }
+        // Input validation
+        requireImage(image);
+        require(key != null && !key.trim().isEmpty(), "Decryption key is required");
+
+        logger.debug("Input validation passed for reveal request.");
 
-            logger.info("Input validation passed for reveal request.");
+        // Reveal message using service
+        String revealedMessage = cpuWorkPool.execute(() -> stegoService.revealMessage(imageSource(image), key.trim()));
 
-            // Reveal message using service
-            String revealedMessage = stegoService.revealMessage(image.getBytes(), key.trim());
+        // Create JSON response
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("message", revealedMessage);
+        response.put("timestamp", System.currentTimeMillis());
+        response.put("messageLength", revealedMessage.length());
 
-            // Create JSON response
-            Map<String, Object> response = new HashMap<>();
-            response.put("status", "success");
-            response.put("message", revealedMessage);
-            response.put("timestamp", System.currentTimeMillis());
-            response.put("messageLength", revealedMessage.length());
+        logger.info("REVEAL MESSAGE API COMPLETED SUCCESSFULLY. Revealed message length: {}", revealedMessage.length());
 
-            logger.info("REVEAL MESSAGE API COMPLETED SUCCESSFULLY. Revealed message length: {}", revealedMessage.length());
+        return ResponseEntity.ok(response);
+    }
 
-            return ResponseEntity.ok(response);
+    /**
+     * Hide messages in many images
+     * POST /api/batch/hide
+     * Images come either as repeated {@code image} parts or as one zip {@code archive}.
+     * {@code message} and {@code key} may be given once for all images or once per image, in order.
+     * @param format zip (stego-images plus results.ndjson, default) or ndjson (one JSON line per image)
+     * @param profile Optional PNG encoder profile: fast, balanced or small (form parameter)
+     * @return Results streamed in request order; failed items are reported, not fatal
+     */
+    @PostMapping(value = "/batch/hide", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> hideBatch(
+            MultipartHttpServletRequest request,
+            @RequestParam(value = "format", defaultValue = "zip") String format,
+            @RequestParam(value = "profile", required = false) String profile) {
+
+        logger.info("POST /api/batch/hide - BATCH HIDE API CALLED");
+        List<String> messages = parameterValues(request, "message");
+        require(!messages.isEmpty(), "At least one message is required");
+        return batchResponse(request, format, messages, "stego_images.zip",
+                (items, writer) -> batchService.hideBatch(items, profile, writer));
+    }
 
-        } catch (IllegalArgumentException e) {
-            logger.warn("Validation error during reveal request: {}", e.getMessage());
-            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
-        } catch (Exception e) {
-            logger.error("Critical error in reveal message API", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Failed to reveal message: " + e.getMessage()));
-        }
+    /**
+     * Reveal messages from many stego-images
+     * POST /api/batch/reveal
+     * Images come either as repeated {@code image} parts or as one zip {@code archive};
+     * {@code key} may be given once for all images or once per image, in order.
+     * @param format ndjson (one JSON line per image, default) or zip (one .txt per message plus results.ndjson)
+     * @return Results streamed in request order; failed items are reported, not fatal
+     */
+    @PostMapping(value = "/batch/reveal", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> revealBatch(
+            MultipartHttpServletRequest request,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+
+        logger.info("POST /api/batch/reveal - BATCH REVEAL API CALLED");
+        return batchResponse(request, format, Collections.emptyList(), "revealed_messages.zip",
+                batchService::revealBatch);
     }
 
     /**
      * Get image capacity information
      * POST /api/capacity
-     * @param image PNG image file (multipart/form-data)
+     * @param image PNG, BMP or TIFF image file (multipart/form-data)
      * @return JSON response with capacity information
      */
     @PostMapping(value = "/capacity", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> getImageCapacity(@RequestParam("image") MultipartFile image) {
+    public ResponseEntity<Map<String, Object>> getImageCapacity(@RequestParam("image") MultipartFile image) throws Exception {
         logger.info("POST /api/capacity - CAPACITY CHECK API CALLED for file: {}", image.getOriginalFilename());
 
-        try {
-            // Input validation
-            if (image.isEmpty()) {
-                logger.warn("Capacity check failed: Empty image file provided.");
-                return ResponseEntity.badRequest().body(createErrorResponse("Image file is required"));
-            }
-            String contentType = image.getContentType();
-            if (contentType == null || !contentType.equals("image/png")) {
-                logger.warn("Capacity check failed: Invalid file type '{}'", contentType);
-                return ResponseEntity.badRequest().body(createErrorResponse("Only PNG images are supported"));
-            }
+        // Input validation
+        requireImage(image);
 
-            logger.info("Input validation passed for capacity check.");
+        logger.debug("Input validation passed for capacity check.");
 
-            // Get capacity using service
-            int capacityInCharacters = stegoService.getImageCapacity(image.getBytes());
+        // Only the image header is read, so there is no pixel work to hand to the CPU pool
+        int capacityInCharacters;
+        try (InputStream imageStream = image.getInputStream()) {
+            capacityInCharacters = stegoService.getImageCapacity(imageStream);
+        }
 
-            // Create JSON response
-            Map<String, Object> response = new HashMap<>();
-            response.put("status", "success");
-            response.put("capacityCharacters", capacityInCharacters);
-            response.put("timestamp", System.currentTimeMillis());
+        // Create JSON response
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("capacityCharacters", capacityInCharacters);
+        response.put("timestamp", System.currentTimeMillis());
 
-            logger.info("Capacity check completed: {} characters", capacityInCharacters);
+        logger.info("Capacity check completed: {} characters", capacityInCharacters);
 
-            return ResponseEntity.ok(response);
+        return ResponseEntity.ok(response);
+    }
 
-        } catch (Exception e) {
-            logger.error("Critical error in capacity check API", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(createErrorResponse("Failed to check capacity: " + e.getMessage()));
+    /**
+     * Key cache statistics
+     * GET /api/stats
+     * @return JSON response with hit/miss/eviction counters of the derived AES key cache, CPU pool load
+     *         and memory budget reservations
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        KeyCacheStats keyCache = stegoService.getKeyCacheStats();
+
+        Map<String, Object> keyCacheResponse = new HashMap<>();
+        keyCacheResponse.put("hits", keyCache.getHits());
+        keyCacheResponse.put("misses", keyCache.getMisses());
+        keyCacheResponse.put("hitRate", keyCache.getHitRate());
+        keyCacheResponse.put("evictions", keyCache.getEvictions());
+        keyCacheResponse.put("expirations", keyCache.getExpirations());
+        keyCacheResponse.put("size", keyCache.getSize());
+        keyCacheResponse.put("maxSize", keyCache.getMaxSize());
+
+        Map<String, Object> cpuPoolResponse = new HashMap<>();
+        cpuPoolResponse.put("enabled", cpuWorkPool.isEnabled());
+        cpuPoolResponse.put("threads", cpuWorkPool.getThreads());
+        cpuPoolResponse.put("active", cpuWorkPool.getActiveCount());
+        cpuPoolResponse.put("queued", cpuWorkPool.getQueueDepth());
+        cpuPoolResponse.put("queueCapacity", cpuWorkPool.getQueueCapacity());
+        cpuPoolResponse.put("rejected", cpuWorkPool.getRejectedCount());
+
+        Map<String, Object> memoryBudgetResponse = new HashMap<>();
+        memoryBudgetResponse.put("enabled", memoryBudget.isEnabled());
+        memoryBudgetResponse.put("maxBytes", memoryBudget.getMaxBytes());
+        memoryBudgetResponse.put("reservedBytes", memoryBudget.getReservedBytes());
+        memoryBudgetResponse.put("waiting", memoryBudget.getWaitingCount());
+        memoryBudgetResponse.put("rejected", memoryBudget.getRejectedCount());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("keyCache", keyCacheResponse);
+        response.put("cpuPool", cpuPoolResponse);
+        response.put("memoryBudget", memoryBudgetResponse);
+        response.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(response);
+    }
+
+    @FunctionalInterface
+    private interface BatchOperation {
+        void run(Iterator<BatchItem> items, BatchResultWriter writer) throws IOException;
+    }
+
+    /**
+     * Validate the common batch inputs and stream the operation's results in the requested format.
+     */
+    private ResponseEntity<StreamingResponseBody> batchResponse(MultipartHttpServletRequest request, String format,
+                                                                List<String> messages, String zipName,
+                                                                BatchOperation operation) {
+        List<String> keys = parameterValues(request, "key");
+        List<MultipartFile> images = request.getFiles("image");
+        MultipartFile archive = request.getFile("archive");
+        require(!keys.isEmpty(), "At least one key is required");
+        require(images.isEmpty() != (archive == null), "Provide either 'image' files or one zip 'archive'");
+        boolean zip = "zip".equalsIgnoreCase(format);
+        require(zip || "ndjson".equalsIgnoreCase(format), "Unknown format '" + format + "'; use zip or ndjson");
+
+        HttpHeaders headers = new HttpHeaders();
+        if (zip) {
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDispositionFormData("attachment", zipName);
+        } else {
+            headers.setContentType(MediaType.APPLICATION_NDJSON);
         }
+
+        StreamingResponseBody body = outputStream -> {
+            BatchResultWriter writer = zip ? BatchResultWriter.zip(outputStream) : BatchResultWriter.ndjson(outputStream);
+            if (archive != null) {
+                try (InputStream archiveStream = archive.getInputStream()) {
+                    operation.run(BatchItems.fromZip(archiveStream, messages, keys, batchMaxEntryBytes), writer);
+                }
+            } else {
+                operation.run(multipartItems(images, messages, keys), writer);
+            }
+            logger.info("BATCH API COMPLETED. Results streamed as {}", zip ? "zip" : "ndjson");
+        };
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Items over uploaded parts; each part is read only when the batch asks for it.
+     */
+    private static Iterator<BatchItem> multipartItems(List<MultipartFile> images, List<String> messages, List<String> keys) {
+        Iterator<MultipartFile> files = images.iterator();
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return files.hasNext();
+            }
+
+            @Override
+            public BatchItem next() {
+                MultipartFile file = files.next();
+                return BatchItems.item(index++, file.getOriginalFilename(), imageSource(file), messages, keys);
+            }
+        };
+    }
+
+    /**
+     * All values of a form parameter as sent. Binding a List through {@code @RequestParam}
+     * would split a single value on commas, which breaks messages that contain them.
+     */
+    private static List<String> parameterValues(MultipartHttpServletRequest request, String name) {
+        String[] values = request.getParameterValues(name);
+        return values == null ? Collections.emptyList() : Arrays.asList(values);
+    }
+
+    /**
+     * Reject the request with 400 unless {@code condition} holds
+     */
+    private static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /**
+     * A non-empty upload whose declared content type is one of the carrier formats
+     */
+    private static void requireImage(MultipartFile image) {
+        require(!image.isEmpty(), "Image file is required");
+        require(CarrierCodecs.forMediaType(image.getContentType()) != null, UNSUPPORTED_IMAGE);
+    }
+
+    /**
+     * Download headers for a stego-image: the media type and file extension of its format
+     */
+    private static HttpHeaders stegoImageHeaders(CarrierCodec format) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(format.getMediaType()));
+        headers.setContentDispositionFormData("attachment", "encoded_image." + format.getExtension());
+        return headers;
     }
 
     /**
-     * Helper method to create consistent error responses
+     * Reads an upload from wherever the multipart resolver put it, a temp file or its in-memory
+     * buffer, instead of copying it into a byte array. Valid until the request completes.
      */
-    private Map<String, Object> createErrorResponse(String message) {
-        Map<String, Object> error = new HashMap<>();
-        error.put("status", "error");
-        error.put("message", message);
-        error.put("timestamp", System.currentTimeMillis());
-        return error;
+    static ImageSource imageSource(MultipartFile image) {
+        return ImageSource.of(image.getSize(), image::getInputStream);
     }
 }
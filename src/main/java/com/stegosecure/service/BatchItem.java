@@ -0,0 +1,52 @@
+package com.stegosecure.service;
+
+/**
+ * One image of a batch request with the message and key that apply to it.
+ * An item that could not be read carries an input error instead of an image,
+ * so it is reported in the results rather than failing the batch.
+ */
+public final class BatchItem {
+    private final int index;
+    private final String name;
+    private final ImageSource image;
+    private final String message;
+    private final String key;
+    private final String inputError;
+
+    BatchItem(int index, String name, ImageSource image, String message, String key, String inputError) {
+        this.index = index;
+        this.name = name;
+        this.image = image;
+        this.message = message;
+        this.key = key;
+        this.inputError = inputError;
+    }
+
+    /** Position of the item in the request, from 0. */
+    public int getIndex() {
+        return index;
+    }
+
+    /** File name the image was uploaded with. */
+    public String getName() {
+        return name;
+    }
+
+    public ImageSource getImage() {
+        return image;
+    }
+
+    /** Message to hide, or null for reveal. */
+    public String getMessage() {
+        return message;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /** Why the item could not be read, or null. */
+    public String getInputError() {
+        return inputError;
+    }
+}
@@ -0,0 +1,148 @@
+package com.stegosecure.service;
+
+import com.stegosecure.util.CarrierCodec;
+import com.stegosecure.util.CarrierCodecs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Builds the items of a batch request.
+ *
+ * Messages and keys are given as lists: a single value applies to every item, otherwise
+ * value {@code i} belongs to item {@code i}. Items are produced lazily, so an image is only
+ * read once the batch has room for it.
+ */
+public final class BatchItems {
+
+    private BatchItems() {
+    }
+
+    /**
+     * An item whose message and key are picked from the request lists.
+     */
+    public static BatchItem item(int index, String name, byte[] image, List<String> messages, List<String> keys) {
+        return item(index, name, ImageSource.of(image), messages, keys);
+    }
+
+    /**
+     * An item read from {@code image} when it is processed, e.g. an upload still in multipart storage.
+     */
+    public static BatchItem item(int index, String name, ImageSource image, List<String> messages, List<String> keys) {
+        return new BatchItem(index, baseName(name, index, image), image, pick(messages, index), pick(keys, index), null);
+    }
+
+    /**
+     * An item that could not be read; it is reported as failed.
+     */
+    public static BatchItem unreadable(int index, String name, String reason) {
+        return new BatchItem(index, baseName(name, index, null), null, null, null, reason);
+    }
+
+    /**
+     * The files of a zip archive in archive order, skipping directories.
+     * Entries larger than {@code maxEntryBytes} become failed items instead of being buffered.
+     * A corrupt archive ends the iteration with an {@link UncheckedIOException}.
+     */
+    public static Iterator<BatchItem> fromZip(InputStream archive, List<String> messages, List<String> keys,
+                                              long maxEntryBytes) {
+        ZipInputStream zip = new ZipInputStream(archive);
+        return new Iterator<>() {
+            private ZipEntry next;
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    while (next == null) {
+                        ZipEntry entry = zip.getNextEntry();
+                        if (entry == null) {
+                            return false;
+                        }
+                        if (!entry.isDirectory()) {
+                            next = entry;
+                        }
+                    }
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public BatchItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ZipEntry entry = next;
+                next = null;
+                int itemIndex = index++;
+                try {
+                    byte[] image = readLimited(zip, maxEntryBytes);
+                    if (image == null) {
+                        return unreadable(itemIndex, entry.getName(),
+                                "❌ Image exceeds the batch entry limit of " + maxEntryBytes + " bytes");
+                    }
+                    return item(itemIndex, entry.getName(), image, messages, keys);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private static String pick(List<String> values, int index) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        if (values.size() == 1) {
+            return values.get(0);
+        }
+        return index < values.size() ? values.get(index) : null;
+    }
+
+    /**
+     * Last path segment of an upload or entry name, so results never carry directories.
+     * Without one the item is named by its index, with the extension of its detected format.
+     */
+    private static String baseName(String name, int index, ImageSource image) {
+        String base = name == null ? "" : name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        return base.isBlank() ? "image_" + index + extension(image) : base;
+    }
+
+    /** ".png", ".bmp" or ".tiff" from the image signature; empty if it is unknown or cannot be read. */
+    private static String extension(ImageSource image) {
+        if (image == null) {
+            return "";
+        }
+        try (InputStream imageStream = image.open()) {
+            byte[] signature = new byte[CarrierCodecs.SIGNATURE_LENGTH];
+            CarrierCodec codec = CarrierCodecs.detect(signature, imageStream.readNBytes(signature, 0, signature.length));
+            return codec == null ? "" : "." + codec.getExtension();
+        } catch (IOException e) {
+            return ""; // reported when the item itself is processed
+        }
+    }
+
+    /** Reads the current zip entry, or returns null once it grows past {@code limit} bytes. */
+    private static byte[] readLimited(InputStream in, long limit) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        long total = 0;
+        for (int read; (read = in.read(chunk)) >= 0; ) {
+            total += read;
+            if (total > limit) {
+                return null; // the rest of the entry is skipped by the next getNextEntry
+            }
+            buffer.write(chunk, 0, read);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,58 @@
+package com.stegosecure.service;
+
+/**
+ * Outcome of one batch item: a stego-image, a revealed message, or an error.
+ */
+public final class BatchResult {
+    private final int index;
+    private final String name;
+    private final byte[] image;
+    private final String message;
+    private final String error;
+
+    private BatchResult(int index, String name, byte[] image, String message, String error) {
+        this.index = index;
+        this.name = name;
+        this.image = image;
+        this.message = message;
+        this.error = error;
+    }
+
+    static BatchResult image(BatchItem item, byte[] image) {
+        return new BatchResult(item.getIndex(), item.getName(), image, null, null);
+    }
+
+    static BatchResult message(BatchItem item, String message) {
+        return new BatchResult(item.getIndex(), item.getName(), null, message, null);
+    }
+
+    static BatchResult failure(int index, String name, String error) {
+        return new BatchResult(index, name, null, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /** Stego-image PNG of a hide item, or null. */
+    public byte[] getImage() {
+        return image;
+    }
+
+    /** Revealed message of a reveal item, or null. */
+    public String getMessage() {
+        return message;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,30 @@
+package com.stegosecure.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streams batch results to the client as they complete, in request order.
+ */
+public interface BatchResultWriter {
+
+    void write(BatchResult result) throws IOException;
+
+    /** Completes the output after the last result; does not close the underlying stream. */
+    void finish() throws IOException;
+
+    /**
+     * One JSON object per line and result, flushed as it is written; stego-images are Base64.
+     */
+    static BatchResultWriter ndjson(OutputStream outputStream) {
+        return new NdjsonBatchResultWriter(outputStream);
+    }
+
+    /**
+     * A zip holding each successful result as a file, followed by {@code results.ndjson}
+     * with the status of every item.
+     */
+    static BatchResultWriter zip(OutputStream outputStream) {
+        return new ZipBatchResultWriter(outputStream);
+    }
+}
@@ -0,0 +1,208 @@
+package com.stegosecure.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import com.stegosecure.util.RowProgress;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BatchService - hide or reveal many images in one request
+ *
+ * Items run on a fixed worker pool with a bounded queue. Each batch keeps at most
+ * {@code stego.batch.max-in-flight} items submitted and reads the next image only when the
+ * oldest result has been written, so memory stays bounded however large the batch. When the
+ * shared queue is full the submitting thread runs the item itself, which slows that batch's
+ * intake rather than rejecting it. Results are written in request order; an item that fails
+ * is reported in its result and the batch carries on.
+ */
+@Service
+public class BatchService implements MeterBinder {
+
+    private static final RejectedExecutionHandler CALLER_RUNS = new ThreadPoolExecutor.CallerRunsPolicy();
+
+    @Autowired
+    private StegoService stegoService;
+
+    // Worker threads; 0 means one per available processor
+    @Value("${stego.batch.threads:0}")
+    private int threads;
+
+    @Value("${stego.batch.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    // Items a single batch may have submitted at once; 0 means twice the worker threads
+    @Value("${stego.batch.max-in-flight:0}")
+    private int maxInFlight;
+
+    @Value("${stego.batch.max-items:1000}")
+    private int maxItems = 1000;
+
+    private ThreadPoolExecutor executor;
+    private final LongAdder callerRuns = new LongAdder();
+
+    @PostConstruct
+    void start() {
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (maxInFlight <= 0) {
+            maxInFlight = threads * 2;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "stego-batch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, pool) -> {
+                    callerRuns.increment();
+                    CALLER_RUNS.rejectedExecution(task, pool);
+                });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Publishes the worker pool as {@code executor.*} meters tagged {@code name=stego-batch}, plus
+     * how often a full queue made the submitting thread run an item itself.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "stego-batch", Tags.empty()).bindTo(registry);
+        FunctionCounter.builder("executor.caller.runs", callerRuns, LongAdder::sum)
+                .description("Items run on the submitting thread because the queue was full")
+                .tag("name", "stego-batch")
+                .register(registry);
+    }
+
+    /**
+     * Hide each item's message in its image and stream the stego-images.
+     * @param items Images with their messages and keys, read lazily
+     * @param encoderProfile PNG encoder profile for every item, or null for the configured one
+     * @param writer Destination of the results
+     * @throws IOException If writing the results fails
+     */
+    public void hideBatch(Iterator<BatchItem> items, String encoderProfile, BatchResultWriter writer) throws IOException {
+        run(items, writer, item -> {
+            if (item.getMessage() == null || item.getMessage().trim().isEmpty()) {
+                throw new IllegalArgumentException("❌ Message is required");
+            }
+            ByteArrayOutputStream stegoImage = new ByteArrayOutputStream((int) item.getImage().size());
+            stegoService.prepareHide(item.getImage(), item.getMessage().trim(), item.getKey().trim(), encoderProfile, RowProgress.NONE)
+                    .writeTo(stegoImage);
+            return BatchResult.image(item, stegoImage.toByteArray());
+        });
+    }
+
+    /**
+     * Reveal the message of each item and stream the plaintexts.
+     * @param items Stego-images with their keys, read lazily
+     * @param writer Destination of the results
+     * @throws IOException If writing the results fails
+     */
+    public void revealBatch(Iterator<BatchItem> items, BatchResultWriter writer) throws IOException {
+        run(items, writer, item -> BatchResult.message(item, stegoService.revealMessage(item.getImage(), item.getKey().trim())));
+    }
+
+    private void run(Iterator<BatchItem> items, BatchResultWriter writer, ItemTask task) throws IOException {
+        Deque<Future<BatchResult>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            while (true) {
+                BatchItem item;
+                try {
+                    if (!items.hasNext()) {
+                        break;
+                    }
+                    item = items.next();
+                } catch (UncheckedIOException e) {
+                    drain(inFlight, writer);
+                    writer.write(BatchResult.failure(submitted, null,
+                            "❌ Batch input could not be read: " + e.getCause().getMessage()));
+                    break;
+                }
+                if (submitted == maxItems) {
+                    drain(inFlight, writer);
+                    writer.write(BatchResult.failure(item.getIndex(), item.getName(),
+                            "❌ Batch limit of " + maxItems + " items reached; this and later items were not processed"));
+                    break;
+                }
+                if (inFlight.size() >= maxInFlight) {
+                    writer.write(await(inFlight.poll()));
+                }
+                inFlight.add(executor.submit(() -> process(item, task)));
+                submitted++;
+            }
+            drain(inFlight, writer);
+        } finally {
+            // Only non-empty if writing failed, e.g. because the client went away
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        writer.finish();
+    }
+
+    private static BatchResult process(BatchItem item, ItemTask task) {
+        if (item.getInputError() != null) {
+            return BatchResult.failure(item.getIndex(), item.getName(), item.getInputError());
+        }
+        if (item.getKey() == null || item.getKey().trim().isEmpty()) {
+            return BatchResult.failure(item.getIndex(), item.getName(), "❌ Encryption key is required");
+        }
+        try {
+            return task.apply(item);
+        } catch (Exception e) {
+            return BatchResult.failure(item.getIndex(), item.getName(), e.getMessage());
+        }
+    }
+
+    private static void drain(Deque<Future<BatchResult>> inFlight, BatchResultWriter writer) throws IOException {
+        while (!inFlight.isEmpty()) {
+            writer.write(await(inFlight.poll()));
+        }
+    }
+
+    private static BatchResult await(Future<BatchResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch interrupted");
+        } catch (ExecutionException e) {
+            // process() reports failures as results, so only an Error can get here
+            throw new IllegalStateException("Batch item failed unexpectedly", e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    private interface ItemTask {
+        BatchResult apply(BatchItem item) throws Exception;
+    }
+}
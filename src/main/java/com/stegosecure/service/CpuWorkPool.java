@@ -0,0 +1,242 @@
+package com.stegosecure.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CpuWorkPool - keeps pixel and crypto work off the request threads
+ *
+ * Disabled (the default), work runs on the calling request thread as before. Enabled, it runs
+ * on a fixed pool sized to the processors, so slow uploads and downloads occupy only request
+ * threads while the cores stay busy with embedding. The queue is bounded; once it is full new
+ * work is refused with a {@link ServerBusyException} instead of piling up latency. A rendered
+ * image is spilled to a temp file that the request thread then streams, so a pool thread never
+ * waits on a client and no encoded image is held on the heap.
+ */
+@Component
+public class CpuWorkPool implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(CpuWorkPool.class);
+
+    private static final int SPILL_BUFFER = 64 * 1024;
+
+    private final boolean enabled;
+    private final int threads;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    @Autowired
+    public CpuWorkPool(@Value("${stego.cpu-pool.enabled:false}") boolean enabled,
+                       @Value("${stego.cpu-pool.threads:0}") int threads,
+                       @Value("${stego.cpu-pool.queue-capacity:64}") int queueCapacity,
+                       @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this(enabled, threads, queueCapacity);
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            logger.warn("spring.threads.virtual.enabled needs Java 21 or later; running on Java {}, so requests stay on platform threads",
+                    Runtime.version().feature());
+        }
+    }
+
+    CpuWorkPool(boolean enabled, int threads, int queueCapacity) {
+        this.enabled = enabled;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        if (!enabled) {
+            this.executor = null;
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "stego-cpu-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("CPU work pool enabled: {} threads, queue capacity {}", this.threads, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run {@code task} on the pool and wait for it, or on the calling thread when the pool is disabled.
+     * If the caller is interrupted while waiting, a result that holds resources, such as a
+     * {@link StegoImageOutput}, is closed once the task produces it rather than dropped.
+     * @throws ServerBusyException If the pool's queue is full
+     * @throws Exception Whatever the task throws
+     */
+    public <T> T execute(Callable<T> task) throws Exception {
+        if (executor == null) {
+            return task.call();
+        }
+        // Claimed by the task when it has a result, or by the caller when it stops waiting
+        AtomicBoolean handedOver = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                T result = task.call();
+                if (!handedOver.compareAndSet(false, true)) {
+                    closeUnclaimed(result);
+                }
+                return result;
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServerBusyException("❌ Server is busy (" + queueCapacity + " requests already queued), please retry shortly");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (handedOver.compareAndSet(false, true)) {
+                future.cancel(true);
+            } else {
+                // The task has its result and is only returning it; the interrupt has been consumed, so this waits
+                closeUnclaimed(future.get());
+            }
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static void closeUnclaimed(Object result) {
+        if (result instanceof AutoCloseable resource) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                logger.warn("Closing an abandoned result failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Produce a stego-image. Disabled, the image is streamed into the response as it is encoded.
+     * Enabled, it is prepared and encoded on the pool into a temp file, which releases the memory
+     * reservation and the pool thread before the response is written; the returned output copies
+     * the file and deletes it once written or closed.
+     * @throws ServerBusyException If the pool's queue is full
+     */
+    public StegoImageOutput render(Callable<StegoImageOutput> prepare) throws Exception {
+        if (executor == null) {
+            return prepare.call();
+        }
+        return execute(() -> spill(prepare.call()));
+    }
+
+    private static StegoImageOutput spill(StegoImageOutput prepared) throws IOException {
+        Path file;
+        try (prepared) {
+            file = Files.createTempFile("stego-", ".render");
+            try (OutputStream spilled = new BufferedOutputStream(Files.newOutputStream(file), SPILL_BUFFER)) {
+                prepared.writeTo(spilled);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(file);
+                throw e;
+            }
+        }
+        return new StegoImageOutput() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                try {
+                    Files.copy(file, outputStream);
+                } finally {
+                    close();
+                }
+            }
+
+            @Override
+            public void close() {
+                deleteQuietly(file);
+            }
+        };
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete rendered image {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Publishes the pool as {@code executor.*} meters tagged {@code name=stego-cpu}, plus refusals.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (executor != null) {
+            new ExecutorServiceMetrics(executor, "stego-cpu", Tags.empty()).bindTo(registry);
+        }
+        Gauge.builder("stego.cpu-pool.enabled", this, pool -> pool.enabled ? 1 : 0)
+                .description("Whether pixel and crypto work runs on the CPU pool")
+                .register(registry);
+        FunctionCounter.builder("executor.rejected", this, CpuWorkPool::getRejectedCount)
+                .description("Tasks refused because the queue was full")
+                .tag("name", "stego-cpu")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /** Tasks running right now. */
+    public int getActiveCount() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    /** Tasks waiting for a thread. */
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** Tasks refused because the queue was full. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
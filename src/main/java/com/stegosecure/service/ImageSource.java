@@ -0,0 +1,55 @@
+package com.stegosecure.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An uploaded image that can be read more than once without being copied into the heap.
+ *
+ * Hide reads the image header first and the pixels later, while the response is written, so a
+ * source is opened once per pass. A multipart upload opens its temp file (or in-memory part)
+ * afresh each time; a job reads its spilled input file.
+ */
+public interface ImageSource {
+
+    /**
+     * A new stream positioned at the first byte of the image; the caller closes it.
+     */
+    InputStream open() throws IOException;
+
+    /** Size of the image in bytes. */
+    long size();
+
+    static ImageSource of(byte[] bytes) {
+        return of(bytes.length, () -> new ByteArrayInputStream(bytes));
+    }
+
+    static ImageSource of(Path path) throws IOException {
+        return of(Files.size(path), () -> Files.newInputStream(path));
+    }
+
+    /**
+     * @param opener Opens the image, e.g. {@code multipartFile::getInputStream}
+     */
+    static ImageSource of(long size, Opener opener) {
+        return new ImageSource() {
+            @Override
+            public InputStream open() throws IOException {
+                return opener.open();
+            }
+
+            @Override
+            public long size() {
+                return size;
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Opener {
+        InputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,12 @@
+package com.stegosecure.service;
+
+/**
+ * Thrown when an image would need more working memory than the whole memory budget, so it
+ * could never be admitted; answered with 413.
+ */
+public class ImageTooLargeException extends RuntimeException {
+
+    public ImageTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,271 @@
+package com.stegosecure.service;
+
+import com.stegosecure.util.CarrierCodecs;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JobService - hide and reveal in the background for images too large to wait on
+ *
+ * A submitted job gets an ID at once. Its uploaded image is copied to the job directory
+ * and read from there by the worker, so neither queued nor running jobs hold the upload in
+ * memory; the result is written to the same directory. Jobs and their files are evicted
+ * {@code stego.jobs.ttl} after they finish, whether or not the result was fetched. Job state
+ * lives in memory, so files left by a previous run are removed at startup.
+ */
+@Service
+public class JobService implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+
+    private static final String INPUT_SUFFIX = ".in";
+    private static final String RESULT_SUFFIX = ".out";
+
+    @Autowired
+    private StegoService stegoService;
+
+    @Value("${stego.jobs.threads:2}")
+    private int threads = 2;
+
+    @Value("${stego.jobs.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    @Value("${stego.jobs.ttl:30m}")
+    private Duration ttl = Duration.ofMinutes(30);
+
+    // Defaults to stego-jobs under java.io.tmpdir
+    @Value("${stego.jobs.dir:}")
+    private String directory;
+
+    private final Map<String, StegoJob> jobs = new ConcurrentHashMap<>();
+    private Path jobDirectory;
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService sweeper;
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    void start() throws IOException {
+        jobDirectory = directory == null || directory.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "stego-jobs")
+                : Paths.get(directory);
+        Files.createDirectories(jobDirectory);
+        purgeDirectory();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "stego-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        long sweepMillis = Math.max(1000, Math.min(ttl.toMillis(), Duration.ofMinutes(1).toMillis()));
+        sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "stego-job-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> evictExpired(Instant.now()), sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        logger.info("Job store at {} with {} workers and a TTL of {}", jobDirectory, threads, ttl);
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Publishes the worker pool as {@code executor.*} meters tagged {@code name=stego-jobs}, plus
+     * refused submissions and the number of jobs held.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "stego-jobs", Tags.empty()).bindTo(registry);
+        FunctionCounter.builder("executor.rejected", rejected, LongAdder::sum)
+                .description("Jobs refused because the queue was full")
+                .tag("name", "stego-jobs")
+                .register(registry);
+        Gauge.builder("stego.jobs", jobs, Map::size)
+                .description("Jobs held in any state, including finished ones awaiting eviction")
+                .register(registry);
+    }
+
+    /**
+     * Queue a hide job.
+     * @throws IllegalArgumentException If the image is not a PNG, BMP or TIFF
+     * @throws ServerBusyException If the job queue is full
+     */
+    public StegoJob submitHide(ImageSource image, String message, String encryptionKey, String encoderProfile) throws IOException {
+        return submit(StegoJob.Type.HIDE, image, (job, input, result) -> {
+            try (OutputStream outputStream = Files.newOutputStream(result)) {
+                stegoService.prepareHide(input, message, encryptionKey, encoderProfile, job::progress).writeTo(outputStream);
+            }
+        });
+    }
+
+    /**
+     * Queue a reveal job; the revealed message is stored as UTF-8 text.
+     * @throws IllegalArgumentException If the image is not a PNG, BMP or TIFF
+     * @throws ServerBusyException If the job queue is full
+     */
+    public StegoJob submitReveal(ImageSource image, String encryptionKey) throws IOException {
+        return submit(StegoJob.Type.REVEAL, image, (job, input, result) ->
+                Files.write(result, stegoService.revealMessage(input, encryptionKey).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return The job, or null if it is unknown or has been evicted
+     */
+    public StegoJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Opens the stored result of a job that has succeeded.
+     */
+    public InputStream openResult(StegoJob job) throws IOException {
+        if (job.getState() != StegoJob.State.SUCCEEDED) {
+            throw new IllegalStateException("❌ Job " + job.getId() + " has no result (state " + job.getState() + ")");
+        }
+        return Files.newInputStream(resultPath(job.getId()));
+    }
+
+    /**
+     * Forget a job and delete its files. A running job finishes but its result is discarded.
+     * @return Whether the job existed
+     */
+    public boolean deleteJob(String id) {
+        StegoJob job = jobs.remove(id);
+        deleteFiles(id);
+        return job != null;
+    }
+
+    /** Jobs currently known, in any state. */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Evict finished jobs whose TTL has passed.
+     */
+    void evictExpired(Instant now) {
+        for (StegoJob job : jobs.values()) {
+            Instant finishedAt = job.getFinishedAt();
+            if (finishedAt != null && !finishedAt.plus(ttl).isAfter(now)) {
+                deleteJob(job.getId());
+            }
+        }
+    }
+
+    private StegoJob submit(StegoJob.Type type, ImageSource image, JobTask task) throws IOException {
+        int totalRows;
+        try (InputStream imageStream = image.open()) {
+            totalRows = CarrierCodecs.readInfo(imageStream).getHeight(); // not a PNG, BMP or TIFF -> 400
+        }
+        StegoJob job = new StegoJob(UUID.randomUUID().toString(), type, totalRows, Instant.now());
+        Path input = inputPath(job.getId());
+        try (InputStream imageStream = image.open()) {
+            Files.copy(imageStream, input);
+        }
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            deleteJob(job.getId());
+            throw new ServerBusyException("❌ Job queue is full (" + queueCapacity + " jobs waiting), please retry shortly");
+        }
+        logger.info("Job {} ({}) queued, {} rows", job.getId(), type, totalRows);
+        return job;
+    }
+
+    private void run(StegoJob job, JobTask task) {
+        if (!jobs.containsKey(job.getId())) {
+            return; // deleted while queued
+        }
+        job.started();
+        Path input = inputPath(job.getId());
+        Path result = resultPath(job.getId());
+        try {
+            task.run(job, ImageSource.of(input), result);
+            Files.deleteIfExists(input);
+            job.succeeded(Files.size(result), Instant.now());
+            logger.info("Job {} succeeded", job.getId());
+        } catch (Exception e) {
+            deleteQuietly(input);
+            deleteQuietly(result);
+            job.failed(e.getMessage(), Instant.now());
+            logger.warn("Job {} failed: {}", job.getId(), e.getMessage());
+        }
+        if (!jobs.containsKey(job.getId())) {
+            deleteFiles(job.getId()); // deleted while running
+        }
+    }
+
+    private Path inputPath(String id) {
+        return jobDirectory.resolve(id + INPUT_SUFFIX);
+    }
+
+    private Path resultPath(String id) {
+        return jobDirectory.resolve(id + RESULT_SUFFIX);
+    }
+
+    private void deleteFiles(String id) {
+        deleteQuietly(inputPath(id));
+        deleteQuietly(resultPath(id));
+    }
+
+    private void purgeDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(jobDirectory, "*.{in,out}")) {
+            files.forEach(JobService::deleteQuietly);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete job file {}: {}", path, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobTask {
+        void run(StegoJob job, ImageSource input, Path result) throws Exception;
+    }
+}
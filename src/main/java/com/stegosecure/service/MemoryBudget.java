@@ -0,0 +1,221 @@
+package com.stegosecure.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MemoryBudget - admission control for the heap that hides and reveals need
+ *
+ * The multipart limit bounds compressed bytes, but a 10 MB PNG can decode to hundreds of MB.
+ * Before an image is decoded the service estimates the request's working memory from the
+ * image header and reserves it here. The budget is a fair semaphore counted in KiB, so
+ * requests are admitted in arrival order. One that does not fit waits up to {@code max-wait}
+ * and is then refused with a {@link ServerBusyException}. One that could never fit is refused
+ * at once with an {@link ImageTooLargeException}. A reservation is held until the result has
+ * been written, or closed because it never will be.
+ */
+@Component
+public class MemoryBudget implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(MemoryBudget.class);
+
+    private static final long UNIT = 1024;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxWaitNanos;
+    private final int totalUnits;
+    private final Semaphore units;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder tooLarge = new LongAdder();
+
+    @Autowired
+    public MemoryBudget(@Value("${stego.memory-budget.enabled:true}") boolean enabled,
+                        @Value("${stego.memory-budget.max-bytes:0}") long maxBytes,
+                        @Value("${stego.memory-budget.max-wait:5s}") Duration maxWait) {
+        this(enabled, maxBytes > 0 ? maxBytes : Runtime.getRuntime().maxMemory() / 2, maxWait.toNanos());
+        if (enabled) {
+            logger.info("Memory budget enabled: {} MB for images in flight, waiting up to {} ms",
+                    megabytes(this.maxBytes), maxWait.toMillis());
+        }
+    }
+
+    MemoryBudget(boolean enabled, long maxBytes, long maxWaitNanos) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.maxWaitNanos = maxWaitNanos;
+        this.totalUnits = toUnits(maxBytes);
+        this.units = new Semaphore(totalUnits, true);
+    }
+
+    /**
+     * A budget that admits everything, for services constructed outside Spring.
+     */
+    static MemoryBudget unlimited() {
+        return new MemoryBudget(false, 0, 0);
+    }
+
+    /**
+     * Reserve {@code bytes} of working memory, waiting for other requests to release theirs if needed.
+     * Disabled, this returns a reservation of nothing at once.
+     * @throws ImageTooLargeException If {@code bytes} is more than the whole budget
+     * @throws ServerBusyException If the reservation could not be made within the maximum wait
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        if (!enabled) {
+            return new Reservation(0);
+        }
+        int requested = toUnits(bytes);
+        if (requested > totalUnits) {
+            tooLarge.increment();
+            throw new ImageTooLargeException("❌ Image too large! Processing it needs about " + megabytes(bytes)
+                    + " MB of memory, but the server allows " + megabytes(maxBytes) + " MB");
+        }
+        if (!units.tryAcquire(requested, maxWaitNanos, TimeUnit.NANOSECONDS)) {
+            timedOut.increment();
+            throw new ServerBusyException("❌ Server is busy (" + megabytes(getReservedBytes())
+                    + " MB of image memory in use), please retry shortly");
+        }
+        admitted.increment();
+        return new Reservation(requested);
+    }
+
+    /**
+     * Publishes reserved and total bytes, waiting requests and outcomes as {@code stego.memory.*}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stego.memory.reserved", this, MemoryBudget::getReservedBytes)
+                .description("Working memory reserved by requests in flight")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("stego.memory.budget", this, budget -> budget.enabled ? budget.maxBytes : 0)
+                .description("Working memory requests may reserve in total; 0 when admission control is off")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("stego.memory.waiting", this, MemoryBudget::getWaitingCount)
+                .description("Requests waiting for a reservation")
+                .register(registry);
+        FunctionCounter.builder("stego.memory.reservations", admitted, LongAdder::sum)
+                .description("Reservations granted")
+                .register(registry);
+        FunctionCounter.builder("stego.memory.rejections", timedOut, LongAdder::sum)
+                .description("Requests refused a reservation")
+                .tag("reason", "busy")
+                .register(registry);
+        FunctionCounter.builder("stego.memory.rejections", tooLarge, LongAdder::sum)
+                .description("Requests refused a reservation")
+                .tag("reason", "too-large")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /** Bytes reserved right now, in whole KiB. */
+    public long getReservedBytes() {
+        return (totalUnits - (long) units.availablePermits()) * UNIT;
+    }
+
+    /** Requests waiting for a reservation. */
+    public int getWaitingCount() {
+        return units.getQueueLength();
+    }
+
+    /** Requests refused because they waited too long or could never fit. */
+    public long getRejectedCount() {
+        return timedOut.sum() + tooLarge.sum();
+    }
+
+    private static int toUnits(long bytes) {
+        return (int) Math.min(Integer.MAX_VALUE, (Math.max(0, bytes) + UNIT - 1) / UNIT);
+    }
+
+    private static long megabytes(long bytes) {
+        return (bytes + (1 << 20) - 1) >> 20;
+    }
+
+    /**
+     * Working memory held by one request; closing it more than once releases it once.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final int reserved;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int reserved) {
+            this.reserved = reserved;
+        }
+
+        public long getBytes() {
+            return reserved * UNIT;
+        }
+
+        /**
+         * An output that releases this reservation once it has been written, failed to be, or
+         * been closed unwritten.
+         */
+        StegoImageOutput releaseAfter(StegoImageOutput output) {
+            return new StegoImageOutput() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    try {
+                        output.writeTo(outputStream);
+                    } finally {
+                        close();
+                    }
+                }
+
+                @Override
+                public void close() {
+                    try {
+                        output.close();
+                    } finally {
+                        Reservation.this.close();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Run {@code prepare} under this reservation and keep it until the output has been
+         * written; released straight away if {@code prepare} fails.
+         */
+        StegoImageOutput hold(Callable<StegoImageOutput> prepare) throws Exception {
+            try {
+                return releaseAfter(prepare.call());
+            } catch (Exception e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                units.release(reserved);
+            }
+        }
+    }
+}
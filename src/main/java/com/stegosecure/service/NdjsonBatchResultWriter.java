@@ -0,0 +1,59 @@
+package com.stegosecure.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes each batch result as one line of JSON.
+ */
+final class NdjsonBatchResultWriter implements BatchResultWriter {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final OutputStream outputStream;
+
+    NdjsonBatchResultWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void write(BatchResult result) throws IOException {
+        Map<String, Object> line = statusLine(result);
+        if (result.getImage() != null) {
+            line.put("image", Base64.getEncoder().encodeToString(result.getImage()));
+        }
+        if (result.getMessage() != null) {
+            line.put("message", result.getMessage());
+        }
+        writeLine(outputStream, line);
+        outputStream.flush();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        outputStream.flush();
+    }
+
+    /** Index, name and status of a result, without its payload. */
+    static Map<String, Object> statusLine(BatchResult result) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", result.getIndex());
+        line.put("name", result.getName());
+        line.put("status", result.isSuccess() ? "success" : "error");
+        if (!result.isSuccess()) {
+            line.put("error", result.getError());
+        }
+        return line;
+    }
+
+    static void writeLine(OutputStream outputStream, Map<String, Object> line) throws IOException {
+        MAPPER.writeValue(outputStream, line);
+        outputStream.write('\n');
+    }
+}
@@ -0,0 +1,218 @@
+package com.stegosecure.service;
+
+import com.stegosecure.util.AESUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * RevealCache - skips decoding and scanning a stego-image that was revealed recently
+ *
+ * Entries are addressed by the SHA-256 of the image bytes and hold the payload as it was
+ * embedded, i.e. still encrypted. A repeated reveal therefore only has to decrypt, a wrong
+ * key still fails, and no plaintext or key material is ever kept. The cache is an LRU bounded
+ * by the total payload bytes it holds; entries expire {@code ttl} after they were extracted
+ * however often they are hit.
+ *
+ * Where the payload sits in the image can depend on the key (scattered payloads), so callers
+ * pass a scope, e.g. the scatter key, that is hashed into the entry's address together with the
+ * image. Only the digest is kept.
+ *
+ * Looking an image up costs one extra read of it for the hash, which a miss does not earn back,
+ * so images larger than {@code maxImageBytes} bypass the cache and are only read by the loader.
+ */
+@Component
+public class RevealCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "reveal-payloads";
+
+    /** Extracts the payload on a miss. */
+    @FunctionalInterface
+    public interface PayloadLoader {
+        byte[] load() throws Exception;
+    }
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxImageBytes;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Autowired
+    public RevealCache(@Value("${stego.reveal-cache.enabled:true}") boolean enabled,
+                       @Value("${stego.reveal-cache.max-bytes:33554432}") long maxBytes,
+                       @Value("${stego.reveal-cache.max-image-bytes:8388608}") long maxImageBytes,
+                       @Value("${stego.reveal-cache.ttl:10m}") Duration ttl) {
+        this(enabled, maxBytes, maxImageBytes, ttl.toNanos(), System::nanoTime);
+    }
+
+    RevealCache(boolean enabled, long maxBytes, long maxImageBytes, long ttlNanos, LongSupplier clock) {
+        this.enabled = enabled && maxBytes > 0;
+        this.maxBytes = maxBytes;
+        this.maxImageBytes = maxImageBytes;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * A cache that always loads, for services constructed outside Spring.
+     */
+    static RevealCache disabled() {
+        return new RevealCache(false, 0, 0, 0, System::nanoTime);
+    }
+
+    /**
+     * The payload of {@code image}, from the cache or from {@code loader}. The image is read
+     * once to hash it; on a miss the loader reads it again. An image larger than
+     * {@code maxImageBytes} goes straight to the loader. Callers must not modify the result.
+     * Loading runs outside the lock; if two threads miss at once both load the same payload.
+     */
+    public byte[] get(ImageSource image, PayloadLoader loader) throws Exception {
+        return get(image, new byte[0], loader);
+    }
+
+    /**
+     * As above, for a payload that was extracted with {@code scope}; the same image under another
+     * scope is a different entry.
+     */
+    public byte[] get(ImageSource image, byte[] scope, PayloadLoader loader) throws Exception {
+        if (!enabled || image.size() > maxImageBytes) {
+            return loader.load();
+        }
+        ByteBuffer id = ByteBuffer.wrap(sha256(image, scope));
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (clock.getAsLong() - entry.createdNanos < ttlNanos) {
+                    hits.increment();
+                    return entry.payload;
+                }
+                remove(id);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        byte[] payload = loader.load();
+        if (payload.length <= maxBytes) {
+            put(id, payload);
+        }
+        return payload;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Payload bytes held right now. */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Publishes hits, misses, evictions and size with Micrometer's {@code cache.*} names,
+     * tagged {@code cache=reveal-payloads}.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "cache.gets", "result", "hit", hits);
+        counter(registry, "cache.gets", "result", "miss", misses);
+        counter(registry, "cache.evictions", "cause", "size", evictions);
+        counter(registry, "cache.evictions", "cause", "expired", expirations);
+        Gauge.builder("cache.size", this, RevealCache::getSize)
+                .tag("cache", CACHE_NAME)
+                .register(registry);
+        Gauge.builder("cache.bytes", this, RevealCache::getBytes)
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private synchronized void put(ByteBuffer id, byte[] payload) {
+        remove(id);
+        entries.put(id, new Entry(payload, clock.getAsLong()));
+        bytes += payload.length;
+        removeExpired();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().payload.length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private void remove(ByteBuffer id) {
+        Entry removed = entries.remove(id);
+        if (removed != null) {
+            bytes -= removed.payload.length;
+        }
+    }
+
+    /** Drops expired entries; called on insert so stale payloads do not hold the byte budget. */
+    private void removeExpired() {
+        long now = clock.getAsLong();
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (now - entry.createdNanos >= ttlNanos) {
+                bytes -= entry.payload.length;
+                iterator.remove();
+                expirations.increment();
+            }
+        }
+    }
+
+    private static byte[] sha256(ImageSource image, byte[] scope) throws IOException {
+        MessageDigest digest = AESUtil.sha256();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream imageStream = image.open()) {
+            int read;
+            while ((read = imageStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest(scope);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String tag, String value, LongAdder count) {
+        FunctionCounter.builder(name, count, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .tag(tag, value)
+                .register(registry);
+    }
+
+    private static final class Entry {
+        final byte[] payload;
+        final long createdNanos;
+
+        Entry(byte[] payload, long createdNanos) {
+            this.payload = payload;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
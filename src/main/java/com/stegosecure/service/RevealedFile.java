@@ -0,0 +1,34 @@
+package com.stegosecure.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A hidden file that has been located and whose key has been verified, ready to be written.
+ * The file is decrypted while it is written, so it must be written at most once, or closed
+ * if it will not be written.
+ */
+public final class RevealedFile implements Closeable {
+    private final long size;
+    private final StegoImageOutput content;
+
+    RevealedFile(long size, StegoImageOutput content) {
+        this.size = size;
+        this.content = content;
+    }
+
+    /** Size of the decrypted file in bytes. */
+    public long getSize() {
+        return size;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        content.writeTo(outputStream);
+    }
+
+    @Override
+    public void close() {
+        content.close();
+    }
+}
@@ -0,0 +1,11 @@
+package com.stegosecure.service;
+
+/**
+ * Thrown when work cannot be queued because the server is at capacity; answered with 503.
+ */
+public class ServerBusyException extends RuntimeException {
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
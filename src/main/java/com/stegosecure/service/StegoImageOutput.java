@@ -0,0 +1,21 @@
+package com.stegosecure.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A stego-image that has been validated and is ready to be written.
+ * Writing may stream the image, so it must be done at most once. An output that will not be
+ * written must be closed instead, which releases what was held for it, such as its memory
+ * reservation; closing one that has been written does nothing.
+ */
+@FunctionalInterface
+public interface StegoImageOutput extends Closeable {
+
+    void writeTo(OutputStream outputStream) throws IOException;
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,97 @@
+package com.stegosecure.service;
+
+import java.time.Instant;
+
+/**
+ * A hide or reveal request running in the background. State and progress are updated by the
+ * worker and read by status requests, so every mutable field is volatile.
+ */
+public final class StegoJob {
+
+    public enum Type { HIDE, REVEAL }
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final Type type;
+    private final int totalRows;
+    private final Instant createdAt;
+    private volatile State state = State.QUEUED;
+    private volatile int rowsProcessed;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile long resultSize;
+
+    StegoJob(String id, Type type, int totalRows, Instant createdAt) {
+        this.id = id;
+        this.type = type;
+        this.totalRows = totalRows;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /** Rows of the image processed so far. */
+    public int getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    /** Height of the image. */
+    public int getTotalRows() {
+        return totalRows;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /** When the job succeeded or failed, or null while it is queued or running. */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /** Why the job failed, or null. */
+    public String getError() {
+        return error;
+    }
+
+    /** Size of the stored result in bytes, once the job has succeeded. */
+    public long getResultSize() {
+        return resultSize;
+    }
+
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED;
+    }
+
+    void started() {
+        state = State.RUNNING;
+    }
+
+    void progress(int rows) {
+        rowsProcessed = rows;
+    }
+
+    void succeeded(long size, Instant now) {
+        resultSize = size;
+        rowsProcessed = totalRows;
+        finishedAt = now;
+        state = State.SUCCEEDED;
+    }
+
+    void failed(String reason, Instant now) {
+        error = reason;
+        finishedAt = now;
+        state = State.FAILED;
+    }
+}
@@ -0,0 +1,133 @@
+package com.stegosecure.service;
+
+import com.stegosecure.util.AESUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * StegoMetrics - Micrometer meters for the hide/reveal pipeline
+ *
+ * Every stage of a request is timed as {@code stego.stage} tagged with the operation
+ * (hide, hide-file, reveal, reveal-file) and the stage:
+ * <ul>
+ *   <li>header - reading the image signature and header (IHDR for PNG)</li>
+ *   <li>admission - waiting for the working memory to be reserved from the {@link MemoryBudget}</li>
+ *   <li>decode - decoding the whole image into memory</li>
+ *   <li>encrypt / decrypt - AES on the payload</li>
+ *   <li>capacity - checking the payload fits and choosing the LSB layout</li>
+ *   <li>embed / extract - the LSB loop on a decoded image</li>
+ *   <li>encode - writing a decoded image back out in its original format</li>
+ *   <li>stream - streamed hides, where inflate, embed and deflate are interleaved row by row</li>
+ *   <li>in-place - BMP hides: copying the upload, embedding into the mapped copy and sending it</li>
+ * </ul>
+ * Image and payload sizes are recorded as {@code stego.image.size} and {@code stego.payload.size}
+ * histograms, and the derived key cache is exposed with Micrometer's {@code cache.*} names.
+ */
+@Component
+public class StegoMetrics {
+
+    static final String STAGE_TIMER = "stego.stage";
+
+    private static final String KEY_CACHE = "derived-keys";
+
+    private final MeterRegistry registry;
+
+    @Autowired
+    public StegoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        bindKeyCache();
+    }
+
+    /**
+     * Meters kept in a private registry, for services constructed outside Spring.
+     */
+    static StegoMetrics detached() {
+        return new StegoMetrics(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Run one stage of a request and record how long it took, whether or not it succeeded.
+     */
+    public <T> T time(String operation, String stage, Callable<T> work) throws Exception {
+        long startNanos = System.nanoTime();
+        try {
+            return work.call();
+        } finally {
+            record(operation, stage, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Record a stage that was timed by the caller, e.g. one that runs while the response is written.
+     */
+    public void record(String operation, String stage, long elapsedNanos) {
+        Timer.builder(STAGE_TIMER)
+                .description("Time spent in one stage of a hide or reveal request")
+                .tag("operation", operation)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Size of the uploaded image. */
+    public void recordImageSize(String operation, long bytes) {
+        sizeSummary("stego.image.size", "Size of the carrier image", operation).record(bytes);
+    }
+
+    /** Size of the payload as embedded, i.e. after encryption. */
+    public void recordPayloadSize(String operation, long bytes) {
+        sizeSummary("stego.payload.size", "Size of the embedded payload", operation).record(bytes);
+    }
+
+    /** A payload did not fit in its image even at the deepest allowed LSB layout. */
+    public void capacityRejected(String operation) {
+        registry.counter("stego.capacity.rejections", "operation", operation).increment();
+    }
+
+    /** A payload was found but could not be decrypted, usually because the key was wrong. */
+    public void decryptFailed(String operation) {
+        registry.counter("stego.decrypt.failures", "operation", operation).increment();
+    }
+
+    private DistributionSummary sizeSummary(String name, String description, String operation) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(64d)
+                .maximumExpectedValue(256d * 1024 * 1024)
+                .register(registry);
+    }
+
+    private void bindKeyCache() {
+        keyCacheCounter("cache.gets", "result", "hit", cache -> AESUtil.getKeyCacheStats().getHits());
+        keyCacheCounter("cache.gets", "result", "miss", cache -> AESUtil.getKeyCacheStats().getMisses());
+        keyCacheCounter("cache.evictions", "cause", "size", cache -> AESUtil.getKeyCacheStats().getEvictions());
+        keyCacheCounter("cache.evictions", "cause", "expired", cache -> AESUtil.getKeyCacheStats().getExpirations());
+        Gauge.builder("cache.size", AESUtil.class, cache -> AESUtil.getKeyCacheStats().getSize())
+                .tag("cache", KEY_CACHE)
+                .register(registry);
+        Gauge.builder("cache.max.size", AESUtil.class, cache -> AESUtil.getKeyCacheStats().getMaxSize())
+                .tag("cache", KEY_CACHE)
+                .register(registry);
+    }
+
+    private void keyCacheCounter(String name, String tag, String value, ToDoubleFunction<Class<AESUtil>> count) {
+        FunctionCounter.builder(name, AESUtil.class, count)
+                .tag("cache", KEY_CACHE)
+                .tag(tag, value)
+                .register(registry);
+    }
+}
@@ -1,7 +1,21 @@
 package com.stegosecure.service;
 
 import com.stegosecure.util.AESUtil;
+import com.stegosecure.util.CarrierCodec;
+import com.stegosecure.util.CarrierCodecs;
+import com.stegosecure.util.CarrierInfo;
 import com.stegosecure.util.ImageSteganographyUtil;
+import com.stegosecure.util.KeyCacheStats;
+import com.stegosecure.util.LsbLayout;
+import com.stegosecure.util.PngEncoderSettings;
+import com.stegosecure.util.PngFilterStrategy;
+import com.stegosecure.util.RowProgress;
+import com.stegosecure.util.StegoHeader;
+import com.stegosecure.util.StreamingAesGcm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
@@ -9,6 +23,16 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
  * StegoService - The Core Business Logic
@@ -16,6 +40,51 @@ import java.io.IOException;
  */
 @Service
 public class StegoService {
+    // Message text and keys are never logged; DEBUG carries sizes, dimensions and timings only
+    private static final Logger logger = LoggerFactory.getLogger(StegoService.class);
+
+    // Operation tags of the pipeline metrics
+    private static final String HIDE = "hide";
+    private static final String HIDE_FILE = "hide-file";
+    private static final String REVEAL = "reveal";
+    private static final String REVEAL_FILE = "reveal-file";
+
+    // Replaced by the application's registry; services built with 'new' keep their meters to themselves
+    @Autowired
+    private StegoMetrics metrics = StegoMetrics.detached();
+
+    // Payloads of recently revealed images; services built with 'new' always decode
+    @Autowired
+    private RevealCache revealCache = RevealCache.disabled();
+
+    // Admission control for working memory; services built with 'new' admit everything
+    @Autowired
+    private MemoryBudget memoryBudget = MemoryBudget.unlimited();
+
+    // PNG output encoder: a named profile, optionally with individual settings overridden
+    @Value("${stego.png.profile:balanced}")
+    private String pngProfile = "balanced";
+
+    @Value("${stego.png.compression-level:#{null}}")
+    private Integer pngCompressionLevel;
+
+    @Value("${stego.png.filter:#{null}}")
+    private PngFilterStrategy pngFilter;
+
+    @Value("${stego.png.fast-tail:#{null}}")
+    private Boolean pngFastTail;
+
+    // Deepest LSB layout hide may fall back to when one bit per channel is not enough
+    @Value("${stego.lsb.max-depth:4}")
+    private int lsbMaxDepth = LsbLayout.MAX_DEPTH;
+
+    @Value("${stego.lsb.use-alpha:false}")
+    private boolean lsbUseAlpha;
+
+    // Opt-in: scatter message bits over the whole image with a permutation keyed by the AES key;
+    // every row then carries payload, which gives up the fast paths that stop at the payload's end
+    @Value("${stego.lsb.scatter:false}")
+    private boolean lsbScatter;
 
     /**
      * Hide an encrypted message inside a PNG image
@@ -26,73 +95,301 @@ public class StegoService {
      * @throws Exception If hiding process fails
      */
     public byte[] hideMessage(byte[] imageBytes, String message, String encryptionKey) throws Exception {
-        try {
-            System.out.println("\n🚀 HIDE MESSAGE SERVICE STARTED");
-            System.out.println("📝 Message to hide: \"" + message + "\"");
-            System.out.println("🔑 Using encryption key: " + encryptionKey);
-            System.out.println("📦 Original image size: " + imageBytes.length + " bytes");
-
-            // Step 1: Convert byte array to BufferedImage
-            System.out.println("\n📸 Step 1: Loading image...");
-            BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(imageBytes));
-
-            if (originalImage == null) {
-                throw new IllegalArgumentException("❌ Invalid image format! Please use PNG files.");
-            }
+        StegoImageOutput stegoImage = prepareHide(imageBytes, message, encryptionKey);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(imageBytes.length);
+        stegoImage.writeTo(outputStream);
+        return outputStream.toByteArray();
+    }
 
-            System.out.println("✅ Image loaded successfully: " + originalImage.getWidth() + "x" + originalImage.getHeight());
-            System.out.println("🎨 Image type: " + getImageTypeString(originalImage.getType()));
+    /**
+     * Validate, encrypt and capacity-check a hide request without producing the image yet.
+     * 8-bit RGB/RGBA PNGs are streamed scanline by scanline when the result is written, so
+     * the decoded image is never held in memory. Uncompressed 24-bit BMPs are copied once and
+     * embedded in place, also when the result is written. Other PNGs, BMPs and TIFFs are decoded
+     * and embedded here. The stego-image keeps the format of the original.
+     * @param imageBytes Original PNG, BMP or TIFF image as byte array
+     * @param message Plain text message to hide
+     * @param encryptionKey AES encryption key
+     * @return Writer for the stego-image (same format as the original)
+     * @throws Exception If the request is invalid or hiding fails
+     */
+    public StegoImageOutput prepareHide(byte[] imageBytes, String message, String encryptionKey) throws Exception {
+        return prepareHide(imageBytes, message, encryptionKey, null);
+    }
 
-            // Step 2: Encrypt the message using AES
-            System.out.println("\n🔒 Step 2: Encrypting message...");
-            String encryptedMessage = AESUtil.encrypt(message, encryptionKey);
-            System.out.println("✅ Message encrypted successfully");
-            System.out.println("📏 Encrypted message length: " + encryptedMessage.length() + " characters");
+    /**
+     * @param encoderProfile PNG encoder profile (fast, balanced, small) for this request, or null for the configured one
+     */
+    public StegoImageOutput prepareHide(byte[] imageBytes, String message, String encryptionKey,
+                                        String encoderProfile) throws Exception {
+        return prepareHide(imageBytes, message, encryptionKey, encoderProfile, RowProgress.NONE);
+    }
 
-            // Step 3: Check if image has enough capacity
-            System.out.println("\n📊 Step 3: Checking image capacity...");
-            int maxCapacity = ImageSteganographyUtil.getMaxCapacity(originalImage);
-            int requiredBits = encryptedMessage.length() * 8; // 8 bits per character
+    /**
+     * @param progress Told how many rows have been written while the result is written; decoded
+     *                 (non-streamable) PNGs report every row at once when encoding finishes
+     */
+    public StegoImageOutput prepareHide(byte[] imageBytes, String message, String encryptionKey,
+                                        String encoderProfile, RowProgress progress) throws Exception {
+        return prepareHide(ImageSource.of(imageBytes), message, encryptionKey, encoderProfile, progress);
+    }
 
-            System.out.println("📈 Image capacity: " + maxCapacity + " bits (" + (maxCapacity/8) + " characters)");
-            System.out.println("📉 Required space: " + requiredBits + " bits (" + encryptedMessage.length() + " characters)");
+    /**
+     * @param image Original image; read once for its header now and again while the result is written,
+     *              so it must stay readable until then
+     */
+    public StegoImageOutput prepareHide(ImageSource image, String message, String encryptionKey,
+                                        String encoderProfile, RowProgress progress) throws Exception {
+        long startNanos = System.nanoTime();
+        PngEncoderSettings settings = resolveEncoderSettings(encoderProfile); // unknown profile -> 400
+        try {
+            // Step 1: Read the image header (format, dimensions and pixel layout only)
+            metrics.recordImageSize(HIDE, image.size());
+            CarrierInfo header = metrics.time(HIDE, "header", () -> readInfo(image));
 
-            if (requiredBits > maxCapacity) {
+            // Step 2: Encrypt the message using AES
+            byte[] encryptedMessage = metrics.time(HIDE, "encrypt",
+                    () -> AESUtil.encrypt(message.getBytes(StandardCharsets.UTF_8), encryptionKey));
+            metrics.recordPayloadSize(HIDE, encryptedMessage.length);
+            byte[] scatterKey = lsbScatter ? AESUtil.deriveScatterKey(encryptionKey) : null;
+
+            // Step 3: Check if image has enough capacity, going deeper than one LSB only if needed
+            LsbLayout layout = metrics.time(HIDE, "capacity",
+                    () -> selectLayout(header.getWidth(), header.getHeight(), header.hasAlpha(), encryptedMessage.length));
+            if (layout == null) {
+                metrics.capacityRejected(HIDE);
+                int maxCapacity = ImageSteganographyUtil.getMaxCapacity(header, maxLayout(header.hasAlpha()));
+                int requiredBits = encryptedMessage.length * 8; // ciphertext is embedded as raw bytes
                 throw new IllegalArgumentException("❌ Message too large! Need " + requiredBits + " bits, but image only has " + maxCapacity + " bits available");
             }
 
-            System.out.println("✅ Image has sufficient capacity");
+            logger.debug("hide: image={} bytes={} payload={} layout={} scattered={} encoder={}",
+                    header, image.size(), encryptedMessage.length, layout, lsbScatter, settings);
+
+            // Reserve the working memory of the chosen path; it is held until the stego-image is written
+            MemoryBudget.Reservation reservation = metrics.time(HIDE, "admission",
+                    () -> memoryBudget.reserve(header.hideWorkingBytes(encryptedMessage.length, scatterKey != null)));
+            return reservation.hold(() -> {
+                if (header.isMappable()) {
+                    // Step 4+5 happen while the response is written: a copy of the BMP is modified in place and sent
+                    return outputStream -> {
+                        long inPlaceNanos = System.nanoTime();
+                        try {
+                            writeInPlace(image, outputStream, copy -> ImageSteganographyUtil.hidePayload(
+                                    copy, encryptedMessage, layout, scatterKey, progress));
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IOException("Hide message operation failed: " + e.getMessage(), e);
+                        } finally {
+                            metrics.record(HIDE, "in-place", System.nanoTime() - inPlaceNanos);
+                        }
+                        reportHideLatency(settings, startNanos, "in place");
+                    };
+                }
 
-            // Step 4: Hide encrypted message in image using LSB
-            System.out.println("\n🎭 Step 4: Hiding encrypted message in image...");
-            BufferedImage stegoImage = ImageSteganographyUtil.hideMessage(originalImage, encryptedMessage);
-            System.out.println("✅ Message hidden successfully in stego-image");
+                if (header.isStreamable()) {
+                    // Step 4+5 happen while the response is written: scanlines are embedded and re-encoded on the fly
+                    return outputStream -> {
+                        long streamNanos = System.nanoTime();
+                        try (InputStream imageStream = image.open()) {
+                            ImageSteganographyUtil.hidePayload(imageStream, outputStream, encryptedMessage, settings, layout,
+                                    scatterKey, progress);
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IOException("Hide message operation failed: " + e.getMessage(), e);
+                        } finally {
+                            metrics.record(HIDE, "stream", System.nanoTime() - streamNanos);
+                        }
+                        reportHideLatency(settings, startNanos, "streamed");
+                    };
+                }
 
-            // Step 5: Convert BufferedImage back to byte array (PNG format)
-            System.out.println("\n💾 Step 5: Converting stego-image to PNG bytes...");
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            boolean success = ImageIO.write(stegoImage, "PNG", outputStream);
+                // Step 4: Hide encrypted message in image using LSB
+                BufferedImage originalImage = metrics.time(HIDE, "decode", () -> decode(header.getCodec(), image));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("hide: decoded image type={}", getImageTypeString(originalImage.getType()));
+                }
+                BufferedImage stegoImage = metrics.time(HIDE, "embed",
+                        () -> ImageSteganographyUtil.hidePayload(originalImage, encryptedMessage, layout, scatterKey));
+
+                // Step 5: Encode the BufferedImage in the original format when the result is written
+                return outputStream -> {
+                    long encodeNanos = System.nanoTime();
+                    try {
+                        header.getCodec().encode(stegoImage, outputStream, settings);
+                    } finally {
+                        metrics.record(HIDE, "encode", System.nanoTime() - encodeNanos);
+                    }
+                    progress.rowsProcessed(stegoImage.getHeight());
+                    reportHideLatency(settings, startNanos, "decoded");
+                };
+            });
+
+        } catch (ServerBusyException | ImageTooLargeException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.debug("hide failed: {}", e.getMessage());
+            throw new Exception("Hide message operation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param imageBytes Original PNG image as byte array
+     */
+    public StegoImageOutput prepareHideFile(byte[] imageBytes, InputStream file, long fileSize, String encryptionKey,
+                                            String encoderProfile) throws Exception {
+        return prepareHideFile(ImageSource.of(imageBytes), file, fileSize, encryptionKey, encoderProfile);
+    }
 
-            if (!success) {
-                throw new IOException("❌ Failed to write PNG image");
+    /**
+     * Validate, encrypt and capacity-check a request to hide a binary file.
+     * The file is encrypted with streaming AES-GCM and embedded while the result is written,
+     * so memory use does not grow with the file size.
+     * @param image Original image; must stay readable until the result has been written
+     * @param file File contents; must stay readable until the result has been written
+     * @param fileSize Exact number of bytes in {@code file}
+     * @param encryptionKey Passphrase for the file key
+     * @param encoderProfile PNG encoder profile for this request, or null for the configured one
+     * @return Writer for the stego-image (same format as the original)
+     * @throws Exception If the request is invalid or hiding fails
+     */
+    public StegoImageOutput prepareHideFile(ImageSource image, InputStream file, long fileSize, String encryptionKey,
+                                            String encoderProfile) throws Exception {
+        long startNanos = System.nanoTime();
+        PngEncoderSettings settings = resolveEncoderSettings(encoderProfile); // unknown profile -> 400
+        try {
+            // Step 1: Read the image header and check capacity against the exact ciphertext size
+            metrics.recordImageSize(HIDE_FILE, image.size());
+            CarrierInfo header = metrics.time(HIDE_FILE, "header", () -> readInfo(image));
+            long encryptedSize = StreamingAesGcm.ciphertextLength(fileSize);
+            metrics.recordPayloadSize(HIDE_FILE, encryptedSize);
+            long requiredBits = encryptedSize * 8;
+            int maxCapacity = ImageSteganographyUtil.getMaxCapacity(header, maxLayout(header.hasAlpha()));
+            logger.debug("hide-file: image={} bytes={} file={} payload={} capacityBits={}",
+                    header, image.size(), fileSize, encryptedSize, maxCapacity);
+            LsbLayout layout = metrics.time(HIDE_FILE, "capacity",
+                    () -> selectLayout(header.getWidth(), header.getHeight(), header.hasAlpha(), encryptedSize));
+            if (layout == null) {
+                metrics.capacityRejected(HIDE_FILE);
+                throw new IllegalArgumentException("❌ File too large! Need " + requiredBits + " bits, but image only has " + maxCapacity + " bits available");
             }
 
-            byte[] stegoImageBytes = outputStream.toByteArray();
-            System.out.println("✅ Stego-image created successfully");
-            System.out.println("📦 Final stego-image size: " + stegoImageBytes.length + " bytes");
+            // Step 2: Derive the file key now; the file itself is encrypted as it is embedded
+            // Encryption of the contents is part of the stream/embed stage
+            InputStream encryptedFile = metrics.time(HIDE_FILE, "encrypt", () -> StreamingAesGcm.encrypt(file, fileSize, encryptionKey));
+
+            MemoryBudget.Reservation reservation = metrics.time(HIDE_FILE, "admission",
+                    () -> memoryBudget.reserve(header.hideWorkingBytes(encryptedSize, false)));
+            return reservation.hold(() -> {
+                if (header.isMappable()) {
+                    return outputStream -> {
+                        long inPlaceNanos = System.nanoTime();
+                        try {
+                            writeInPlace(image, outputStream, copy -> ImageSteganographyUtil.hideFile(
+                                    copy, encryptedFile, encryptedSize, layout));
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IOException("Hide file operation failed: " + e.getMessage(), e);
+                        } finally {
+                            metrics.record(HIDE_FILE, "in-place", System.nanoTime() - inPlaceNanos);
+                        }
+                        reportHideLatency(settings, startNanos, "in place");
+                    };
+                }
+
+                if (header.isStreamable()) {
+                    return outputStream -> {
+                        long streamNanos = System.nanoTime();
+                        try (InputStream imageStream = image.open()) {
+                            ImageSteganographyUtil.hideFile(imageStream, outputStream, encryptedFile, encryptedSize, settings, layout);
+                        } catch (IOException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IOException("Hide file operation failed: " + e.getMessage(), e);
+                        } finally {
+                            metrics.record(HIDE_FILE, "stream", System.nanoTime() - streamNanos);
+                        }
+                        reportHideLatency(settings, startNanos, "streamed");
+                    };
+                }
+
+                BufferedImage originalImage = metrics.time(HIDE_FILE, "decode", () -> decode(header.getCodec(), image));
+                BufferedImage stegoImage = metrics.time(HIDE_FILE, "embed",
+                        () -> ImageSteganographyUtil.hideFile(originalImage, encryptedFile, encryptedSize, layout));
+                return outputStream -> {
+                    long encodeNanos = System.nanoTime();
+                    try {
+                        header.getCodec().encode(stegoImage, outputStream, settings);
+                    } finally {
+                        metrics.record(HIDE_FILE, "encode", System.nanoTime() - encodeNanos);
+                    }
+                    reportHideLatency(settings, startNanos, "decoded");
+                };
+            });
+
+        } catch (ServerBusyException | ImageTooLargeException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.debug("hide-file failed: {}", e.getMessage());
+            throw new Exception("Hide file operation failed: " + e.getMessage(), e);
+        }
+    }
 
-            // Summary
-            System.out.println("\n🎉 HIDE MESSAGE SERVICE COMPLETED SUCCESSFULLY!");
-            System.out.println("🔐 Security: Message encrypted with AES-128");
-            System.out.println("🎭 Steganography: Hidden using LSB technique");
-            System.out.println("👁️ Visibility: Changes are invisible to human eye");
-            System.out.println("=" + "=".repeat(60));
+    /**
+     * Locate a hidden file and verify the key against its first encrypted segment.
+     * @param stegoImageBytes Stego-image as byte array
+     * @param encryptionKey Passphrase used when hiding the file
+     * @return The file, decrypted as it is written
+     * @throws Exception If the image holds no file or the key is wrong
+     */
+    public RevealedFile revealFile(byte[] stegoImageBytes, String encryptionKey) throws Exception {
+        return revealFile(ImageSource.of(stegoImageBytes), encryptionKey);
+    }
 
-            return stegoImageBytes;
+    /**
+     * @param stegoImage Stego-image; fully decoded before this returns
+     */
+    public RevealedFile revealFile(ImageSource stegoImage, String encryptionKey) throws Exception {
+        try {
+            metrics.recordImageSize(REVEAL_FILE, stegoImage.size());
+            CarrierInfo info = metrics.time(REVEAL_FILE, "header", () -> readInfo(stegoImage));
+            // The decoded image is read from until the file has been written, so the reservation lasts as long
+            MemoryBudget.Reservation reservation = metrics.time(REVEAL_FILE, "admission",
+                    () -> memoryBudget.reserve(info.revealWorkingBytes()));
+            try {
+                BufferedImage image = metrics.time(REVEAL_FILE, "decode", () -> decode(info.getCodec(), stegoImage));
+                StegoHeader header = ImageSteganographyUtil.readHeader(image);
+                if (header == null || !header.isEncryptedFile()) {
+                    throw new IllegalArgumentException("❌ No hidden file found in the image");
+                }
+                long encryptedSize = header.getPayloadLength();
+                metrics.recordPayloadSize(REVEAL_FILE, encryptedSize);
+                // Only the first segment is decrypted here, which verifies the key; the rest as the file is written
+                InputStream file;
+                try {
+                    file = metrics.time(REVEAL_FILE, "decrypt",
+                            () -> StreamingAesGcm.decrypt(ImageSteganographyUtil.revealFile(image), encryptedSize, encryptionKey));
+                } catch (Exception e) {
+                    metrics.decryptFailed(REVEAL_FILE);
+                    throw e;
+                }
+                logger.debug("reveal-file: image={}x{} bytes={} file={}",
+                        image.getWidth(), image.getHeight(), stegoImage.size(), StreamingAesGcm.plaintextLength(encryptedSize));
+                return new RevealedFile(StreamingAesGcm.plaintextLength(encryptedSize),
+                        reservation.releaseAfter(outputStream -> file.transferTo(outputStream)));
+            } catch (Exception e) {
+                reservation.close();
+                throw e;
+            }
 
+        } catch (ServerBusyException | ImageTooLargeException e) {
+            throw e;
         } catch (Exception e) {
-            System.out.println("❌ HIDE MESSAGE SERVICE FAILED: " + e.getMessage());
-            throw new Exception("Hide message operation failed: " + e.getMessage(), e);
+            logger.debug("reveal-file failed: {}", e.getMessage());
+            throw new Exception("Reveal file operation failed: " + e.getMessage(), e);
         }
     }
 
@@ -104,70 +401,191 @@ public class StegoService {
      * @throws Exception If reveal process fails
      */
     public String revealMessage(byte[] stegoImageBytes, String encryptionKey) throws Exception {
-        try {
-            System.out.println("\n🔍 REVEAL MESSAGE SERVICE STARTED");
-            System.out.println("🔑 Using decryption key: " + encryptionKey);
-            System.out.println("📦 Stego-image size: " + stegoImageBytes.length + " bytes");
-
-            // Step 1: Convert byte array to BufferedImage
-            System.out.println("\n📸 Step 1: Loading stego-image...");
-            BufferedImage stegoImage = ImageIO.read(new ByteArrayInputStream(stegoImageBytes));
-
-            if (stegoImage == null) {
-                throw new IllegalArgumentException("❌ Invalid image format! Please use PNG files.");
-            }
-
-            System.out.println("✅ Stego-image loaded successfully: " + stegoImage.getWidth() + "x" + stegoImage.getHeight());
-            System.out.println("🎨 Image type: " + getImageTypeString(stegoImage.getType()));
+        return revealMessage(ImageSource.of(stegoImageBytes), encryptionKey);
+    }
 
-            // Step 2: Extract encrypted message from image using LSB
-            System.out.println("\n🔍 Step 2: Extracting hidden message from image...");
-            String encryptedMessage = ImageSteganographyUtil.revealMessage(stegoImage);
-            System.out.println("✅ Encrypted message extracted successfully");
-            System.out.println("📏 Extracted encrypted message length: " + encryptedMessage.length() + " characters");
+    /**
+     * @param source Stego-image, decoded straight from its stream
+     */
+    public String revealMessage(ImageSource source, String encryptionKey) throws Exception {
+        try {
+            // Steps 1+2: Decode the stego-image and extract the encrypted message, unless it was revealed recently
+            metrics.recordImageSize(REVEAL, source.size());
+            // A scattered payload is found through the key, so the cache entry is scoped to it
+            byte[] scatterKey = AESUtil.deriveScatterKey(encryptionKey);
+            byte[] encryptedMessage = revealCache.get(source, scatterKey, () -> extractPayload(source, scatterKey));
+            metrics.recordPayloadSize(REVEAL, encryptedMessage.length);
 
             // Step 3: Decrypt the extracted message using AES
-            System.out.println("\n🔓 Step 3: Decrypting extracted message...");
-            String originalMessage = AESUtil.decrypt(encryptedMessage, encryptionKey);
-            System.out.println("✅ Message decrypted successfully");
-            System.out.println("📝 Original message: \"" + originalMessage + "\"");
-
-            // Summary
-            System.out.println("\n🎉 REVEAL MESSAGE SERVICE COMPLETED SUCCESSFULLY!");
-            System.out.println("🔍 Steganography: Message extracted using LSB technique");
-            System.out.println("🔓 Security: Message decrypted with AES-128");
-            System.out.println("✅ Result: Original message recovered perfectly");
-            System.out.println("=" + "=".repeat(60));
-
-            return originalMessage;
+            byte[] decryptedMessage;
+            try {
+                decryptedMessage = metrics.time(REVEAL, "decrypt", () -> AESUtil.decrypt(encryptedMessage, encryptionKey));
+            } catch (Exception e) {
+                metrics.decryptFailed(REVEAL);
+                throw e;
+            }
+            return new String(decryptedMessage, StandardCharsets.UTF_8);
 
+        } catch (ServerBusyException | ImageTooLargeException e) {
+            throw e;
         } catch (Exception e) {
-            System.out.println("❌ REVEAL MESSAGE SERVICE FAILED: " + e.getMessage());
+            logger.debug("reveal failed: {}", e.getMessage());
             throw new Exception("Reveal message operation failed: " + e.getMessage(), e);
         }
     }
 
+    private byte[] extractPayload(ImageSource source, byte[] scatterKey) throws Exception {
+        CarrierInfo info = metrics.time(REVEAL, "header", () -> readInfo(source));
+        try (MemoryBudget.Reservation ignored = metrics.time(REVEAL, "admission",
+                () -> memoryBudget.reserve(info.revealWorkingBytes()))) {
+            BufferedImage stegoImage = metrics.time(REVEAL, "decode", () -> decode(info.getCodec(), source));
+            if (logger.isDebugEnabled()) {
+                logger.debug("reveal: image={}x{} type={} bytes={}", stegoImage.getWidth(), stegoImage.getHeight(),
+                        getImageTypeString(stegoImage.getType()), source.size());
+            }
+
+            byte[] encryptedMessage = metrics.time(REVEAL, "extract", () -> ImageSteganographyUtil.revealPayload(stegoImage, scatterKey));
+            logger.debug("reveal: payload={}", encryptedMessage.length);
+            return encryptedMessage;
+        }
+    }
+
     /**
      * Get image capacity for hiding messages
      * @param imageBytes Image as byte array
-     * @return Maximum number of characters that can be hidden
+     * @return Maximum message length in bytes (UTF-8) that still fits once encrypted, at the deepest allowed LSB depth
      * @throws Exception If capacity calculation fails
      */
     public int getImageCapacity(byte[] imageBytes) throws Exception {
-        try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageBytes));
-            if (image == null) {
-                throw new IllegalArgumentException("❌ Invalid image format!");
-            }
+        return getImageCapacity(new ByteArrayInputStream(imageBytes));
+    }
 
-            int capacityInBits = ImageSteganographyUtil.getMaxCapacity(image);
-            return capacityInBits / 8; // Convert bits to characters
+    /**
+     * Get image capacity from the image header alone; no pixels are decoded, and for a PNG
+     * nothing past the signature and IHDR chunk (the first 33 bytes) is read.
+     * @param image PNG, BMP or TIFF stream, positioned at the signature
+     * @return Maximum message length in bytes (UTF-8) that still fits once encrypted, at the deepest allowed LSB depth
+     * @throws IllegalArgumentException If the format is not supported or the header is malformed
+     * @throws Exception If capacity calculation fails
+     */
+    public int getImageCapacity(InputStream image) throws Exception {
+        try {
+            CarrierInfo header = CarrierCodecs.readInfo(image);
+            int capacityInBits = ImageSteganographyUtil.getMaxCapacity(header, maxLayout(header.hasAlpha()));
+            // The ciphertext is embedded as raw bytes, so only AES padding stands between capacity and message size
+            return Math.max(0, AESUtil.maxPlaintextLength(capacityInBits / 8));
 
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Failed to calculate image capacity: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new Exception("Failed to calculate image capacity: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Format of an uploaded image, identified by its signature; hide writes the stego-image in
+     * the same format.
+     * @throws IllegalArgumentException If the format is not supported
+     */
+    public CarrierCodec detectFormat(ImageSource image) throws IOException {
+        try (InputStream imageStream = image.open()) {
+            return CarrierCodecs.detect(imageStream);
+        }
+    }
+
+    /**
+     * Counters of the derived AES key cache
+     * @return Hits, misses, evictions and current size
+     */
+    public KeyCacheStats getKeyCacheStats() {
+        return AESUtil.getKeyCacheStats();
+    }
+
+    /**
+     * Shallowest allowed LSB layout that fits the payload, or null if even the deepest does not.
+     */
+    private LsbLayout selectLayout(int width, int height, boolean hasAlpha, long payloadBytes) {
+        return ImageSteganographyUtil.selectLayout(width, height, hasAlpha, payloadBytes, lsbMaxDepth, lsbUseAlpha);
+    }
+
+    /**
+     * Deepest layout hide may use on an image, which bounds what it can carry.
+     */
+    private LsbLayout maxLayout(boolean hasAlpha) {
+        return LsbLayout.of(lsbMaxDepth, lsbUseAlpha && hasAlpha);
+    }
+
+    /**
+     * Resolve the PNG encoder settings for a request: the named profile, then any
+     * individual overrides from application.properties.
+     */
+    private PngEncoderSettings resolveEncoderSettings(String requestedProfile) {
+        String profile = requestedProfile != null && !requestedProfile.isBlank() ? requestedProfile : pngProfile;
+        PngEncoderSettings settings = PngEncoderSettings.forProfile(profile);
+        if (pngCompressionLevel != null) {
+            settings = settings.withCompressionLevel(pngCompressionLevel);
+        }
+        if (pngFilter != null) {
+            settings = settings.withFilterStrategy(pngFilter);
+        }
+        if (pngFastTail != null) {
+            settings = settings.withFastTail(pngFastTail);
+        }
+        return settings;
+    }
+
+    private void reportHideLatency(PngEncoderSettings settings, long startNanos, String path) {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        logger.debug("hide: completed in {} ms, profile={} {}", elapsedMillis, settings.getProfile(), path);
+    }
+
+    /**
+     * Copies the image once to a temp file, has {@code embedding} change its pixel bytes in place
+     * and transfers the file to {@code outputStream}; nothing is decoded or re-encoded.
+     */
+    private static void writeInPlace(ImageSource image, OutputStream outputStream, InPlaceEmbedding embedding) throws Exception {
+        Path copy = Files.createTempFile("stego-", ".bmp");
+        try {
+            try (InputStream imageStream = image.open()) {
+                Files.copy(imageStream, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            embedding.embed(copy);
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ)) {
+                // Not closed: that would close the response stream
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long size = channel.size();
+                for (long position = 0; position < size; ) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @FunctionalInterface
+    private interface InPlaceEmbedding {
+        void embed(Path copy) throws Exception;
+    }
+
+    private static CarrierInfo readInfo(ImageSource image) throws IOException {
+        try (InputStream imageStream = image.open()) {
+            return CarrierCodecs.readInfo(imageStream);
+        }
+    }
+
+    /**
+     * Decode the whole image with the codec its header was read by.
+     */
+    private static BufferedImage decode(CarrierCodec codec, ImageSource image) throws IOException {
+        try (InputStream imageStream = image.open()) {
+            return codec.decode(imageStream);
+        }
+    }
+
     /**
      * Helper method to get human-readable image type
      * @param imageType BufferedImage type constant
@@ -188,7 +606,7 @@ public class StegoService {
 
     // 🧪 TESTING METHOD
     public void testStegoService() {
-        System.out.println("\n🧪 Testing Complete StegoService...");
+        logger.info("🧪 Testing Complete StegoService...");
 
         try {
             // Create test image
@@ -208,43 +626,33 @@ public class StegoService {
             ImageIO.write(testImage, "PNG", baos);
             byte[] imageBytes = baos.toByteArray();
 
-            System.out.println("🖼️  Created test image: 200x200 pixels (" + imageBytes.length + " bytes)");
+            logger.info("🖼️ Created test image: 200x200 pixels ({} bytes)", imageBytes.length);
 
             // Test data
             String testMessage = "This is a secret message that will be encrypted and hidden in the image!";
             String testKey = "mySecretPassword123";
 
-            System.out.println("📝 Test Message: " + testMessage);
-            System.out.println("🔑 Test Key: " + testKey);
-
             // Test capacity
             int capacity = getImageCapacity(imageBytes);
-            System.out.println("📊 Image capacity: " + capacity + " characters");
+            logger.info("📊 Image capacity: {} characters", capacity);
 
             // Test hide message
             byte[] stegoImageBytes = hideMessage(imageBytes, testMessage, testKey);
-            System.out.println("🔒 Message hidden in stego-image (" + stegoImageBytes.length + " bytes)");
+            logger.info("🔒 Message hidden in stego-image ({} bytes)", stegoImageBytes.length);
 
             // Test reveal message
             String revealedMessage = revealMessage(stegoImageBytes, testKey);
-            System.out.println("🔓 Revealed message: " + revealedMessage);
 
             // Verify
             boolean success = testMessage.equals(revealedMessage);
-            System.out.println("✅ Complete StegoService Test: " + (success ? "PASSED" : "FAILED"));
-
             if (success) {
-                System.out.println("🎉 StegoService is working perfectly!");
-                System.out.println("🔐 Encryption + 🎭 Steganography = 💪 Complete Security!");
+                logger.info("✅ Complete StegoService Test: PASSED");
             } else {
-                System.out.println("❌ Something went wrong with the complete service");
+                logger.warn("❌ Complete StegoService Test: FAILED, revealed message differs");
             }
 
         } catch (Exception e) {
-            System.out.println("❌ StegoService Test Failed: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ StegoService Test Failed", e);
         }
-
-        System.out.println("=" + "=".repeat(60));
     }
-}
\ No newline at end of file
+}
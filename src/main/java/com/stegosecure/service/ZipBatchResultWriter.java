@@ -0,0 +1,56 @@
+package com.stegosecure.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes successful results as zip entries and the status of every item as {@code results.ndjson}.
+ * Entry names are prefixed with the item index, so duplicate upload names cannot collide.
+ */
+final class ZipBatchResultWriter implements BatchResultWriter {
+    static final String RESULTS_ENTRY = "results.ndjson";
+
+    private final ZipOutputStream zip;
+    private final ByteArrayOutputStream statusLines = new ByteArrayOutputStream();
+
+    ZipBatchResultWriter(OutputStream outputStream) {
+        this.zip = new ZipOutputStream(outputStream);
+    }
+
+    @Override
+    public void write(BatchResult result) throws IOException {
+        Map<String, Object> line = NdjsonBatchResultWriter.statusLine(result);
+        if (result.getImage() != null) {
+            String entryName = result.getIndex() + "_" + result.getName();
+            // PNG data is already deflated; compressing it again only costs CPU
+            putEntry(entryName, result.getImage(), Deflater.NO_COMPRESSION);
+            line.put("file", entryName);
+        }
+        if (result.getMessage() != null) {
+            String entryName = result.getIndex() + "_" + result.getName() + ".txt";
+            putEntry(entryName, result.getMessage().getBytes(StandardCharsets.UTF_8), Deflater.DEFAULT_COMPRESSION);
+            line.put("file", entryName);
+        }
+        NdjsonBatchResultWriter.writeLine(statusLines, line);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        putEntry(RESULTS_ENTRY, statusLines.toByteArray(), Deflater.DEFAULT_COMPRESSION);
+        zip.finish();
+    }
+
+    private void putEntry(String name, byte[] content, int level) throws IOException {
+        zip.setLevel(level);
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+        zip.flush();
+    }
+}
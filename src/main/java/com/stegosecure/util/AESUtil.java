@@ -1,57 +1,228 @@
 package com.stegosecure.util;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 /**
  * AES Encryption/Decryption Utility class
  * Handles all Crypto operations for secure message in image transfer
+ *
+ * Derived keys are cached by a fingerprint of the passphrase, and each thread reuses its own
+ * Cipher and MessageDigest instead of looking them up from the provider on every call.
  */
 
 public class AESUtil {
     private static final String ALGO = "AES";
     private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final int BLOCK_SIZE = 16;
+    // Domain separation so a cache fingerprint is never the key material itself
+    private static final byte[] FINGERPRINT_PREFIX = "stegosecure-key-cache:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STREAM_FINGERPRINT_PREFIX = "stegosecure-stream-key:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SCATTER_KEY_LABEL = "stegosecure-scatter-key".getBytes(StandardCharsets.UTF_8);
+    private static final String HMAC = "HmacSHA256";
+    private static final String PBKDF2 = "PBKDF2WithHmacSHA256";
+    static final int PBKDF2_ITERATIONS = 65_536;
+
+    static final int KEY_CACHE_MAX_ENTRIES = 256;
+    static final long KEY_CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final DerivedKeyCache KEY_CACHE =
+            new DerivedKeyCache(KEY_CACHE_MAX_ENTRIES, KEY_CACHE_TTL_NANOS, System::nanoTime);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 =
+            ThreadLocal.withInitial(() -> newInstance(() -> MessageDigest.getInstance("SHA-256")));
+    private static final ThreadLocal<Cipher> CIPHER =
+            ThreadLocal.withInitial(() -> newInstance(() -> Cipher.getInstance(TRANSFORMATION)));
+    private static final ThreadLocal<Mac> HMAC_SHA_256 =
+            ThreadLocal.withInitial(() -> newInstance(() -> Mac.getInstance(HMAC)));
+
     private static SecretKeySpec createSecretKey(String key) throws Exception {
         try {
-            // Hash the key using SHA-256 to get consistent 256-bit output
-            MessageDigest sha = MessageDigest.getInstance("SHA-256");
-            byte[] keyBytes = sha.digest(key.getBytes(StandardCharsets.UTF_8));
-            // Use only first 16 bytes (128 bits) for AES-128
-            keyBytes = Arrays.copyOf(keyBytes, 16);
-            return new SecretKeySpec(keyBytes, ALGO);
+            MessageDigest sha = SHA_256.get();
+            byte[] passphrase = key.getBytes(StandardCharsets.UTF_8);
+            sha.update(FINGERPRINT_PREFIX);
+            byte[] fingerprint = sha.digest(passphrase);
+            return KEY_CACHE.get(fingerprint, () -> {
+                // Hash the key using SHA-256 to get consistent 256-bit output
+                byte[] keyBytes = sha.digest(passphrase);
+                // Use only first 16 bytes (128 bits) for AES-128
+                keyBytes = Arrays.copyOf(keyBytes, 16);
+                return new SecretKeySpec(keyBytes, ALGO);
+            });
+        } catch (Exception e) {     throw new Exception("---- AES Key creation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Derives the 256-bit key of a {@link StreamingAesGcm} message with PBKDF2 over the passphrase
+     * and the message's salt. PBKDF2 is deliberately slow, so the result is cached like the
+     * message keys; revealing the same image again then skips the derivation.
+     */
+    static SecretKeySpec deriveStreamKey(String key, byte[] salt, int offset, int length) throws Exception {
+        try {
+            byte[] saltBytes = Arrays.copyOfRange(salt, offset, offset + length);
+            MessageDigest sha = SHA_256.get();
+            sha.update(STREAM_FINGERPRINT_PREFIX);
+            sha.update(saltBytes);
+            byte[] fingerprint = sha.digest(key.getBytes(StandardCharsets.UTF_8));
+            return KEY_CACHE.get(fingerprint, () -> {
+                char[] passphrase = key.toCharArray();
+                PBEKeySpec spec = new PBEKeySpec(passphrase, saltBytes, PBKDF2_ITERATIONS, 256);
+                try {
+                    byte[] keyBytes = SecretKeyFactory.getInstance(PBKDF2).generateSecret(spec).getEncoded();
+                    return new SecretKeySpec(keyBytes, ALGO);
+                } finally {
+                    spec.clearPassword();
+                    Arrays.fill(passphrase, '\0');
+                }
+            });
         } catch (Exception e) {     throw new Exception("---- AES Key creation failed: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * The 256-bit key that scatters a message's bits over the image
+     * ({@link ImageSteganographyUtil#hidePayload(java.awt.image.BufferedImage, byte[], LsbLayout, byte[])}).
+     * It is an HMAC of a fixed label under the message's AES key, so it comes from the same cached
+     * key and says nothing about the AES key itself.
+     */
+    public static byte[] deriveScatterKey(String key) throws Exception {
+        try {
+            Mac mac = HMAC_SHA_256.get();
+            mac.init(new SecretKeySpec(createSecretKey(key).getEncoded(), HMAC));
+            return mac.doFinal(SCATTER_KEY_LABEL);
+        } catch (Exception e) {     throw new Exception("---- AES Key creation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * This thread's SHA-256 digest, reset and ready for use. The caller must finish with
+     * {@code digest()} before calling back into this class, which shares the same instance.
+     */
+    public static MessageDigest sha256() {
+        MessageDigest sha = SHA_256.get();
+        sha.reset();
+        return sha;
+    }
+
+    /**
+     * Hit/miss/eviction counters of the derived key cache.
+     */
+    public static KeyCacheStats getKeyCacheStats() {
+        return KEY_CACHE.stats();
+    }
+
+    /**
+     * Drops every cached key, e.g. after a passphrase has been rotated.
+     */
+    public static void clearKeyCache() {
+        KEY_CACHE.clear();
+    }
+
+    @FunctionalInterface
+    private interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    private static <T> T newInstance(Factory<T> factory) {
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES provider unavailable: " + e.getMessage(), e);
+        }
+    }
     // ENCRYPTION
     public static String encrypt(String p_text, String key) throws Exception{
+        // returning as base 64 string
+        return Base64.getEncoder().encodeToString(encrypt(p_text.getBytes(StandardCharsets.UTF_8), key));
+    }
+    // DECRYPTION
+    public static String decrypt(String enc_text, String key) throws Exception{
+        byte[] enc_bytes;
+        try {
+            // decoding Base 64 string message from encrypt function
+            enc_bytes = Base64.getDecoder().decode(enc_text);
+        } catch (IllegalArgumentException e) {    throw new Exception("#### AES Decryption failed"+e.getMessage());
+        }
+        return new String(decrypt(enc_bytes, key), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encrypts raw bytes; the result is the ciphertext itself, without Base64 encoding.
+     */
+    public static byte[] encrypt(byte[] plaintext, String key) throws Exception {
         try {
             SecretKeySpec secretkey = createSecretKey(key); // proper 16 bits aes key from user's string
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE,secretkey);
-            byte[] encryptedBytes = cipher.doFinal(p_text.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encryptedBytes);
-            // returning as base 64 string
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, secretkey);
+            return cipher.doFinal(plaintext);
         }
         catch (Exception e){    throw new Exception("##### AES Encryption failed :  " + e.getMessage());
         }
     }
-    // DECRYPTION
-    public static String decrypt(String enc_text, String key) throws Exception{
-        try{
+
+    public static byte[] decrypt(byte[] ciphertext, String key) throws Exception {
+        try {
             SecretKeySpec secretkey = createSecretKey(key); // creates the same secret key as CREATED in the encrypted function
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE,secretkey);
-            // decoding Base 64 string message from encrypt function
-            byte[] enc_bytes = Base64.getDecoder().decode(enc_text);
-            // decrypting the message
-            byte[] dec_bytes = cipher.doFinal(enc_bytes);
-            return new String(dec_bytes);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, secretkey);
+            return cipher.doFinal(ciphertext);
+        }
+        catch (Exception e){    throw new Exception("#### AES Decryption failed"+e.getMessage());}
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code plaintext} into {@code ciphertext}, advancing both buffers.
+     * {@code ciphertext} needs {@link #ciphertextLength(int)} bytes remaining.
+     * @return number of bytes written
+     */
+    public static int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext, String key) throws Exception {
+        try {
+            SecretKeySpec secretkey = createSecretKey(key);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, secretkey);
+            return cipher.doFinal(plaintext, ciphertext);
+        }
+        catch (Exception e){    throw new Exception("##### AES Encryption failed :  " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decrypts the remaining bytes of {@code ciphertext} into {@code plaintext}, advancing both buffers.
+     * {@code plaintext} needs as many bytes remaining as the ciphertext has.
+     * @return number of bytes written
+     */
+    public static int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext, String key) throws Exception {
+        try {
+            SecretKeySpec secretkey = createSecretKey(key);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, secretkey);
+            return cipher.doFinal(ciphertext, plaintext);
         }
         catch (Exception e){    throw new Exception("#### AES Decryption failed"+e.getMessage());}
     }
 
+    /**
+     * Size of the ciphertext for a plaintext of the given size: PKCS#5 always pads to the next full block.
+     */
+    public static int ciphertextLength(int plaintextLength) {
+        return (plaintextLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    /**
+     * Largest plaintext whose ciphertext fits in {@code ciphertextCapacity} bytes, or -1 if not even an empty one fits.
+     */
+    public static int maxPlaintextLength(int ciphertextCapacity) {
+        return (ciphertextCapacity / BLOCK_SIZE) * BLOCK_SIZE - 1;
+    }
+
 
 
 
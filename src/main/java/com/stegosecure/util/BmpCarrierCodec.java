@@ -0,0 +1,67 @@
+package com.stegosecure.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+/**
+ * BMP: uncompressed 24-bit files are recognised from their own header and can be embedded in
+ * place (see {@link MappedBmpEmbedder}); every other BMP variant, and all decoding and encoding,
+ * goes through ImageIO.
+ */
+final class BmpCarrierCodec implements CarrierCodec {
+
+    private static final byte[] SIGNATURE = {'B', 'M'};
+
+    private final CarrierCodec imageIO = new ImageIOCarrierCodec("bmp", "image/bmp", "bmp", false, SIGNATURE);
+
+    @Override
+    public String getName() {
+        return imageIO.getName();
+    }
+
+    @Override
+    public String getMediaType() {
+        return imageIO.getMediaType();
+    }
+
+    @Override
+    public String getExtension() {
+        return imageIO.getExtension();
+    }
+
+    @Override
+    public boolean matches(byte[] signature, int length) {
+        return CarrierCodecs.startsWith(signature, length, SIGNATURE);
+    }
+
+    /** Reads the first {@link BmpHeader#LENGTH} bytes, or the whole info header for other variants. */
+    @Override
+    public CarrierInfo readInfo(InputStream image) throws IOException {
+        byte[] data = image.readNBytes(BmpHeader.LENGTH);
+        BmpHeader header = BmpHeader.parse(data, data.length);
+        if (header != null && header.isDirect()) {
+            return CarrierInfo.of(this, header);
+        }
+        CarrierInfo info = imageIO.readInfo(new SequenceInputStream(new ByteArrayInputStream(data), image));
+        return CarrierInfo.of(this, info.getWidth(), info.getHeight(), info.hasAlpha());
+    }
+
+    @Override
+    public BufferedImage decode(InputStream image) throws IOException {
+        return imageIO.decode(image);
+    }
+
+    @Override
+    public void encode(BufferedImage image, OutputStream out, PngEncoderSettings settings) throws IOException {
+        imageIO.encode(image, out, settings);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
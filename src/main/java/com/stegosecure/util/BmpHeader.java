@@ -0,0 +1,93 @@
+package com.stegosecure.util;
+
+/**
+ * The BMP file header and the start of the info header, read without touching any pixel data.
+ *
+ * Only what locates the pixel array is kept. Rows are stored bottom-up unless the height is
+ * negative, each padded to a multiple of four bytes; a 24-bit uncompressed pixel is B, G, R.
+ */
+final class BmpHeader {
+
+    /** File header plus the info header up to and including the compression field. */
+    static final int LENGTH = 14 + 20;
+
+    private static final int BI_RGB = 0;
+
+    private final long pixelOffset;
+    private final int infoSize;
+    private final int width;
+    private final int height;
+    private final boolean bottomUp;
+    private final int planes;
+    private final int bitCount;
+    private final int compression;
+
+    private BmpHeader(byte[] data) {
+        this.pixelOffset = readInt(data, 10) & 0xFFFFFFFFL;
+        this.infoSize = readInt(data, 14);
+        this.width = readInt(data, 18);
+        int rawHeight = readInt(data, 22);
+        this.bottomUp = rawHeight > 0;
+        this.height = rawHeight == Integer.MIN_VALUE ? 0 : Math.abs(rawHeight);
+        this.planes = readShort(data, 26);
+        this.bitCount = readShort(data, 28);
+        this.compression = readInt(data, 30);
+    }
+
+    /**
+     * Parses the first {@code length} bytes of a file.
+     * @return the header, or null if the data is shorter than {@link #LENGTH} or lacks the "BM" signature
+     */
+    static BmpHeader parse(byte[] data, int length) {
+        if (length < LENGTH || data[0] != 'B' || data[1] != 'M') {
+            return null;
+        }
+        return new BmpHeader(data);
+    }
+
+    /**
+     * Whether the pixel array can be addressed in place: a BITMAPINFOHEADER (or later) file
+     * with uncompressed 24-bit pixels that fits into a single mapping.
+     */
+    boolean isDirect() {
+        return infoSize >= 40 && width > 0 && height > 0 && planes == 1 && bitCount == 24
+                && compression == BI_RGB && pixelOffset >= LENGTH
+                && (long) rowStride() * height <= Integer.MAX_VALUE;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    long getPixelOffset() {
+        return pixelOffset;
+    }
+
+    /** Bytes per stored row: three per pixel, padded to a multiple of four. */
+    int rowStride() {
+        return (int) Math.min(Integer.MAX_VALUE, ((long) width * 3 + 3) & ~3L);
+    }
+
+    /** Size of the pixel array in bytes. */
+    long pixelBytes() {
+        return (long) rowStride() * height;
+    }
+
+    /** Offset into the pixel array of image row {@code y}, counted from the top. */
+    long rowOffset(int y) {
+        return (long) (bottomUp ? height - 1 - y : y) * rowStride();
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+}
@@ -0,0 +1,52 @@
+package com.stegosecure.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An image format that can carry a payload: recognises its files, reads their dimensions from
+ * the header alone, and decodes and encodes pixels losslessly.
+ *
+ * Built-in codecs are listed in {@link CarrierCodecs}; further ones are picked up with
+ * {@link java.util.ServiceLoader} from {@code META-INF/services/com.stegosecure.util.CarrierCodec}.
+ * Only lossless formats qualify, since every low bit of every sample has to survive a round trip.
+ */
+public interface CarrierCodec {
+
+    /** Short lower-case name, e.g. {@code png}. */
+    String getName();
+
+    /** Media type of the format, e.g. {@code image/png}. */
+    String getMediaType();
+
+    /** File extension without the dot, e.g. {@code png}. */
+    String getExtension();
+
+    /**
+     * Whether a file starting with {@code signature} is in this format.
+     * @param length bytes of {@code signature} that were available, at most {@link CarrierCodecs#SIGNATURE_LENGTH}
+     */
+    boolean matches(byte[] signature, int length);
+
+    /**
+     * Dimensions and alpha of an image read from its header, without decoding any pixels.
+     * @param image stream positioned at the first byte of the file
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    CarrierInfo readInfo(InputStream image) throws IOException;
+
+    /**
+     * Decodes the whole image, preferably into a TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR image whose
+     * samples the embedder can address in place.
+     * @throws IllegalArgumentException if the data is not a readable image of this format
+     */
+    BufferedImage decode(InputStream image) throws IOException;
+
+    /**
+     * Writes {@code image} losslessly in this format.
+     * @param settings deflate and filter settings where the format has any; other formats ignore them
+     */
+    void encode(BufferedImage image, OutputStream out, PngEncoderSettings settings) throws IOException;
+}
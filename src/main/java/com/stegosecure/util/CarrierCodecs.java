@@ -0,0 +1,153 @@
+package com.stegosecure.util;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+/**
+ * The carrier formats this application reads and writes.
+ *
+ * Formats are recognised by their signature, never by file name or declared content type, so a
+ * stego-image always comes back in the format that was uploaded.
+ */
+public final class CarrierCodecs {
+
+    /** Bytes {@link #detect(byte[], int)} looks at; the PNG signature is the longest. */
+    public static final int SIGNATURE_LENGTH = 8;
+
+    public static final CarrierCodec PNG = new PngCarrierCodec();
+    public static final CarrierCodec BMP = new BmpCarrierCodec();
+    public static final CarrierCodec TIFF = new ImageIOCarrierCodec("tiff", "image/tiff", "tiff", true,
+            new byte[]{'I', 'I', 42, 0}, new byte[]{'M', 'M', 0, 42});
+
+    private static final List<CarrierCodec> CODECS = load();
+
+    private CarrierCodecs() {
+    }
+
+    private static List<CarrierCodec> load() {
+        List<CarrierCodec> codecs = new ArrayList<>(List.of(PNG, BMP, TIFF));
+        for (CarrierCodec codec : ServiceLoader.load(CarrierCodec.class)) {
+            codecs.add(codec);
+        }
+        return Collections.unmodifiableList(codecs);
+    }
+
+    /** Built-in codecs first, then any registered through {@link ServiceLoader}. */
+    public static List<CarrierCodec> all() {
+        return CODECS;
+    }
+
+    /**
+     * The codec for a declared content type, accepting the common aliases {@code image/x-ms-bmp}
+     * and {@code image/x-bmp}.
+     * @return the codec, or null if the type is not supported
+     */
+    public static CarrierCodec forMediaType(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        String type = mediaType.toLowerCase(Locale.ROOT);
+        int parameters = type.indexOf(';');
+        if (parameters >= 0) {
+            type = type.substring(0, parameters);
+        }
+        type = type.trim();
+        if (type.equals("image/x-ms-bmp") || type.equals("image/x-bmp")) {
+            return BMP;
+        }
+        for (CarrierCodec codec : CODECS) {
+            if (codec.getMediaType().equals(type)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the codec whose signature starts {@code signature}, or null if none does
+     */
+    public static CarrierCodec detect(byte[] signature, int length) {
+        for (CarrierCodec codec : CODECS) {
+            if (codec.matches(signature, length)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads up to {@link #SIGNATURE_LENGTH} bytes of {@code image} and identifies the format.
+     * The stream is left past the signature; open a fresh one to read the image.
+     * @throws IllegalArgumentException if no codec recognises the data
+     */
+    public static CarrierCodec detect(InputStream image) throws IOException {
+        byte[] signature = new byte[SIGNATURE_LENGTH];
+        return require(signature, image.readNBytes(signature, 0, signature.length));
+    }
+
+    /**
+     * Identifies the format and reads the image header with its codec.
+     * @param image stream positioned at the first byte of the file
+     * @throws IllegalArgumentException if the format is not supported or the header is malformed
+     */
+    public static CarrierInfo readInfo(InputStream image) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(image, SIGNATURE_LENGTH);
+        return sniff(in).readInfo(in);
+    }
+
+    /**
+     * Identifies the format and decodes the whole image with its codec.
+     * @throws IllegalArgumentException if the format is not supported or the data is malformed
+     */
+    public static BufferedImage decode(InputStream image) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(image, SIGNATURE_LENGTH);
+        return sniff(in).decode(in);
+    }
+
+    /** Detects the format and pushes the signature back, so the codec reads from the first byte. */
+    private static CarrierCodec sniff(PushbackInputStream in) throws IOException {
+        byte[] signature = new byte[SIGNATURE_LENGTH];
+        int length = in.readNBytes(signature, 0, signature.length);
+        in.unread(signature, 0, length);
+        return require(signature, length);
+    }
+
+    private static CarrierCodec require(byte[] signature, int length) {
+        CarrierCodec codec = detect(signature, length);
+        if (codec == null) {
+            throw new IllegalArgumentException("❌ Invalid image format! Please use " + names() + " files.");
+        }
+        return codec;
+    }
+
+    /** Upper-case names of the supported formats, e.g. "PNG, BMP or TIFF". */
+    public static String names() {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < CODECS.size(); i++) {
+            if (i > 0) {
+                names.append(i == CODECS.size() - 1 ? " or " : ", ");
+            }
+            names.append(CODECS.get(i).getName().toUpperCase(Locale.ROOT));
+        }
+        return names.toString();
+    }
+
+    static boolean startsWith(byte[] data, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package com.stegosecure.util;
+
+/**
+ * What a {@link CarrierCodec} reads from an image header: enough to choose an LSB layout and
+ * check capacity before any pixel is decoded.
+ */
+public final class CarrierInfo {
+    // Working memory estimates: see hideWorkingBytes
+    private static final long DECODED_BYTES_PER_PIXEL = 4;
+    private static final long STREAMED_ROWS = 8;
+    private static final long IO_BUFFER_BYTES = 64 * 1024;
+
+    private final CarrierCodec codec;
+    private final int width;
+    private final int height;
+    private final boolean alpha;
+    private final PngHeader pngHeader;
+    private final BmpHeader bmpHeader;
+
+    private CarrierInfo(CarrierCodec codec, int width, int height, boolean alpha, PngHeader pngHeader,
+                        BmpHeader bmpHeader) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("❌ Invalid " + codec.getName().toUpperCase() + ": bad dimensions "
+                    + width + "x" + height);
+        }
+        this.codec = codec;
+        this.width = width;
+        this.height = height;
+        this.alpha = alpha;
+        this.pngHeader = pngHeader;
+        this.bmpHeader = bmpHeader;
+    }
+
+    public static CarrierInfo of(CarrierCodec codec, int width, int height, boolean alpha) {
+        return new CarrierInfo(codec, width, height, alpha, null, null);
+    }
+
+    static CarrierInfo of(CarrierCodec codec, PngHeader header) {
+        return new CarrierInfo(codec, header.getWidth(), header.getHeight(), header.hasAlpha(), header, null);
+    }
+
+    static CarrierInfo of(CarrierCodec codec, BmpHeader header) {
+        return new CarrierInfo(codec, header.getWidth(), header.getHeight(), false, null, header);
+    }
+
+    public CarrierCodec getCodec() {
+        return codec;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Whether decoded pixels keep an alpha channel that an RGBA layout could use. */
+    public boolean hasAlpha() {
+        return alpha;
+    }
+
+    /**
+     * Whether {@link ImageSteganographyUtil#hidePayload(java.io.InputStream, java.io.OutputStream, byte[],
+     * PngEncoderSettings, LsbLayout, byte[], RowProgress)} can embed into this image row by row
+     * instead of decoding it.
+     */
+    public boolean isStreamable() {
+        return pngHeader != null && StreamingPngEmbedder.supports(pngHeader);
+    }
+
+    /**
+     * Whether {@link ImageSteganographyUtil#hidePayload(java.nio.file.Path, byte[], LsbLayout, byte[], RowProgress)}
+     * can embed into a copy of this file in place, changing only the pixel bytes that carry payload.
+     */
+    public boolean isMappable() {
+        return bmpHeader != null && MappedBmpEmbedder.supports(bmpHeader);
+    }
+
+    /**
+     * Estimated heap a hide needs on this image, from the header alone. A streamed or in-place
+     * hide holds a few rows, I/O buffers and, for a scattered payload, its sorted slot table.
+     * A decoded hide holds the decoded image and the copy the payload is embedded into.
+     * @param payloadLength Bytes to embed
+     * @param scattered Whether the payload is scattered with a keyed permutation
+     */
+    public long hideWorkingBytes(long payloadLength, boolean scattered) {
+        if (isMappable()) {
+            return (long) width * PixelRaster.CHANNELS + IO_BUFFER_BYTES;
+        }
+        if (isStreamable()) {
+            long slotTable = scattered
+                    ? Math.min(payloadLength * 8, StreamingPngEmbedder.ScatteredSegment.SORTED_LIMIT_BITS) * Long.BYTES
+                    : 0;
+            return STREAMED_ROWS * width * DECODED_BYTES_PER_PIXEL + 2 * IO_BUFFER_BYTES + slotTable;
+        }
+        return decodedBytes() + (long) width * height * (alpha ? 4 : PixelRaster.CHANNELS);
+    }
+
+    /** Estimated heap a reveal needs on this image: the decoded image. */
+    public long revealWorkingBytes() {
+        return decodedBytes();
+    }
+
+    /**
+     * Decoders produce 3 or 4 bytes per pixel for 8-bit images, or TYPE_INT_RGB after a
+     * conversion; 16-bit images take more, so this is an estimate rather than a bound.
+     */
+    private long decodedBytes() {
+        return (long) width * height * DECODED_BYTES_PER_PIXEL;
+    }
+
+    @Override
+    public String toString() {
+        return codec.getName() + " " + width + "x" + height + (alpha ? " alpha" : "");
+    }
+}
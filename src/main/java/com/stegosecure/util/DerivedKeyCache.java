@@ -0,0 +1,110 @@
+package com.stegosecure.util;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time-expiring LRU cache of derived AES keys.
+ *
+ * Entries are looked up by a fingerprint of the passphrase, never the passphrase itself,
+ * and expire {@code ttlNanos} after they were derived regardless of how often they are hit,
+ * so a key does not stay in memory indefinitely just because it is popular.
+ */
+final class DerivedKeyCache {
+
+    /** Derives a key on a cache miss. */
+    @FunctionalInterface
+    interface KeyDeriver {
+        SecretKeySpec derive() throws Exception;
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    DerivedKeyCache(int maxEntries, long ttlNanos, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Key cache needs at least one entry, got " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached key for {@code fingerprint}, deriving and caching it on a miss.
+     * Derivation runs outside the lock; if two threads miss at once both derive the same key.
+     */
+    SecretKeySpec get(byte[] fingerprint, KeyDeriver deriver) throws Exception {
+        ByteBuffer id = ByteBuffer.wrap(fingerprint);
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (clock.getAsLong() - entry.createdNanos < ttlNanos) {
+                    hits.increment();
+                    return entry.key;
+                }
+                entries.remove(id);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        SecretKeySpec key = deriver.derive();
+        synchronized (this) {
+            entries.put(id, new Entry(key, clock.getAsLong()));
+            removeExpired();
+            while (entries.size() > maxEntries) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+        return key;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    KeyCacheStats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new KeyCacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size, maxEntries);
+    }
+
+    /** Drops expired entries; called on insert so the map cannot fill up with stale keys. */
+    private void removeExpired() {
+        long now = clock.getAsLong();
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue().createdNanos >= ttlNanos) {
+                iterator.remove();
+                expirations.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final SecretKeySpec key;
+        final long createdNanos;
+
+        Entry(SecretKeySpec key, long createdNanos) {
+            this.key = key;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
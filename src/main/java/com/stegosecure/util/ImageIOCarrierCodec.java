@@ -0,0 +1,200 @@
+package com.stegosecure.util;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * A lossless format read and written with the JDK's ImageIO plugins (BMP, TIFF).
+ *
+ * Dimensions come from the reader's header parsing. 8-bit RGB(A) files are decoded straight into
+ * a TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR destination, the layout the embedder addresses in place;
+ * anything else (palettes, grey, 16-bit) is left to ImageIO and converted by the embedder's copy.
+ * Output is always uncompressed.
+ */
+final class ImageIOCarrierCodec implements CarrierCodec {
+
+    private final String name;
+    private final String mediaType;
+    private final String extension;
+    private final boolean keepsAlpha;
+    private final byte[][] signatures;
+
+    /**
+     * @param keepsAlpha whether the writer can store an alpha channel; without it, decoded images are made opaque
+     * @param signatures the leading bytes that identify the format
+     */
+    ImageIOCarrierCodec(String name, String mediaType, String extension, boolean keepsAlpha, byte[]... signatures) {
+        this.name = name;
+        this.mediaType = mediaType;
+        this.extension = extension;
+        this.keepsAlpha = keepsAlpha;
+        this.signatures = signatures;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    @Override
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public boolean matches(byte[] signature, int length) {
+        for (byte[] prefix : signatures) {
+            if (CarrierCodecs.startsWith(signature, length, prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads as far as the first image directory: the file header for BMP, the first IFD for TIFF
+     * (which ImageIO and most other writers put at the front of the file).
+     */
+    @Override
+    public CarrierInfo readInfo(InputStream image) throws IOException {
+        ImageReader reader = reader();
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(image)) {
+            reader.setInput(stream, true, true);
+            return CarrierInfo.of(this, reader.getWidth(0), reader.getHeight(0), keepsAlpha && hasAlpha(reader));
+        } catch (IIOException e) {
+            throw new IllegalArgumentException("❌ Invalid " + label() + ": " + e.getMessage(), e);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Override
+    public BufferedImage decode(InputStream image) throws IOException {
+        ImageReader reader = reader();
+        BufferedImage decoded;
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(image)) {
+            reader.setInput(stream, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            ImageTypeSpecifier raw = reader.getRawImageType(0);
+            if (isByteRgb(raw)) {
+                boolean alpha = raw.getNumBands() == 4;
+                param.setDestination(new BufferedImage(reader.getWidth(0), reader.getHeight(0),
+                        alpha ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR));
+            }
+            decoded = reader.read(0, param);
+        } catch (IIOException e) {
+            throw new IllegalArgumentException("❌ Invalid " + label() + ": " + e.getMessage(), e);
+        } finally {
+            reader.dispose();
+        }
+        return keepsAlpha || !decoded.getColorModel().hasAlpha() ? decoded : opaque(decoded);
+    }
+
+    @Override
+    public void encode(BufferedImage image, OutputStream out, PngEncoderSettings settings) throws IOException {
+        if (!keepsAlpha && image.getColorModel().hasAlpha()) {
+            throw new IllegalArgumentException("❌ " + label() + " output cannot carry an alpha channel");
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(name);
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No ImageIO writer for " + label());
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream stream = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_DISABLED);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private ImageReader reader() {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(name);
+        if (!readers.hasNext()) {
+            throw new IllegalStateException("No ImageIO reader for " + label());
+        }
+        return readers.next();
+    }
+
+    private String label() {
+        return name.toUpperCase();
+    }
+
+    private static boolean hasAlpha(ImageReader reader) throws IOException {
+        ImageTypeSpecifier raw = reader.getRawImageType(0);
+        if (raw == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            raw = types.hasNext() ? types.next() : null;
+        }
+        return raw != null && raw.getColorModel().hasAlpha();
+    }
+
+    /**
+     * Interleaved 8-bit RGB or RGBA samples, which the readers copy band for band into a
+     * TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR destination.
+     */
+    private static boolean isByteRgb(ImageTypeSpecifier type) {
+        if (type == null) {
+            return false;
+        }
+        ColorModel colorModel = type.getColorModel();
+        SampleModel sampleModel = type.getSampleModel();
+        if (!(sampleModel instanceof PixelInterleavedSampleModel)
+                || colorModel.getColorSpace().getType() != ColorSpace.TYPE_RGB
+                || colorModel.isAlphaPremultiplied()) {
+            return false;
+        }
+        int bands = sampleModel.getNumBands();
+        if (bands != 3 && !(bands == 4 && colorModel.hasAlpha())) {
+            return false;
+        }
+        for (int size : sampleModel.getSampleSize()) {
+            if (size != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The colour samples of {@code image} without its alpha channel. */
+    private static BufferedImage opaque(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), data, 0, image.getWidth());
+        return copy;
+    }
+}
@@ -1,45 +1,315 @@
 package com.stegosecure.util;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
 
 /**
  * LSB Steganography - The main code
+ *
+ * Layout of the embedded bitstream (version 1):
+ * <pre>
+ *   magic   4 bytes  0x89 'S' 'T' 'G'  (0x89 can never start a legacy Base64 payload)
+ *   version 1 byte
+ *   flags   1 byte   bit 0 ({@link #FLAG_RAW_PAYLOAD}): payload is raw bytes rather than text;
+ *                    bit 1 ({@link #FLAG_ENCRYPTED_FILE}): payload is a {@link StreamingAesGcm} file;
+ *                    bits 2-3: LSB depth - 1; bit 4: alpha carries payload (see {@link LsbLayout});
+ *                    bit 5 ({@link #FLAG_SCATTERED}): payload bits are scattered with a keyed permutation;
+ *                    the other bits are reserved and must be 0
+ *   length  4 bytes  payload length in bytes, big-endian
+ *   payload length bytes
+ * </pre>
+ * The header itself is always written one bit per R/G/B channel from the first pixel. With
+ * the default layout the payload follows directly at slot {@link #HEADER_BITS}; with any
+ * other layout it starts at pixel {@link #HEADER_PIXELS}, the first pixel the header leaves alone.
+ * A scattered payload is not written in slot order from there: payload bit {@code i} goes to
+ * slot {@code payloadSlot + P(i)}, where P is a {@link SlotPermutation} of all the slots from
+ * the payload slot to the end of the image, keyed by a scatter key derived from the AES key
+ * ({@link AESUtil#deriveScatterKey(String)}). Revealing it needs the same key.
+ * Text payloads (flag 0) are what {@link #hideMessage(BufferedImage, String)} writes; the
+ * service used to embed Base64 ciphertext that way. {@link #hidePayload(BufferedImage, byte[])}
+ * embeds ciphertext directly, a quarter fewer bits for the same message.
+ * Images written before the header existed end their payload with {@code ###EOM###}
+ * and are still decoded through {@link #revealLegacyMessage(BufferedImage)}.
  */
 public class ImageSteganographyUtil {
     private static final String MESSAGE_DELIMITER = "###EOM###";
 
+    static final byte[] HEADER_MAGIC = {(byte) 0x89, 'S', 'T', 'G'};
+    static final int HEADER_VERSION = 1;
+    static final int HEADER_BYTES = HEADER_MAGIC.length + 1 + 1 + 4;
+    static final int HEADER_BITS = HEADER_BYTES * 8;
+    static final int FLAG_RAW_PAYLOAD = 0x01;
+    static final int FLAG_ENCRYPTED_FILE = 0x02;
+    static final int FLAG_LAYOUT_MASK = 0x1C;
+    static final int FLAG_SCATTERED = 0x20;
+    private static final int KNOWN_FLAGS = FLAG_RAW_PAYLOAD | FLAG_ENCRYPTED_FILE | FLAG_LAYOUT_MASK | FLAG_SCATTERED;
+    static final int HEADER_PIXELS = (HEADER_BITS + PixelRaster.CHANNELS - 1) / PixelRaster.CHANNELS;
+    // Bytes of a file payload embedded per step; big enough for ParallelLsb to split
+    private static final int FILE_CHUNK = 1024 * 1024;
+    // Bytes extracted per step while scanning for the legacy delimiter
+    private static final int LEGACY_CHUNK = 1024;
+
     public static int getMaxCapacity(BufferedImage image) {
-        int totalBits = image.getWidth() * image.getHeight() * 3;
-        int delimiterBits = MESSAGE_DELIMITER.getBytes(StandardCharsets.UTF_8).length * 8;
-        return totalBits - delimiterBits;
+        return getMaxCapacity(image.getWidth(), image.getHeight());
+    }
+
+    public static int getMaxCapacity(BufferedImage image, LsbLayout layout) {
+        return getMaxCapacity(image.getWidth(), image.getHeight(), layout);
+    }
+
+    public static int getMaxCapacity(CarrierInfo info, LsbLayout layout) {
+        return getMaxCapacity(info.getWidth(), info.getHeight(), layout);
     }
 
-    private static int setBit(int colorComponent, boolean bit) {
-        return bit ? (colorComponent | 1) : (colorComponent & 0xFE);
+    private static int getMaxCapacity(int width, int height) {
+        return getMaxCapacity(width, height, LsbLayout.DEFAULT);
     }
 
-    private static char getBit(int colorComponent) {
-        return (colorComponent & 1) == 1 ? '1' : '0';
+    private static int getMaxCapacity(int width, int height, LsbLayout layout) {
+        long totalBits = (long) width * height * layout.slotsPerPixel();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, totalBits - payloadSlot(layout)));
     }
 
-    private static String binaryToString(String binaryString) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i <= binaryString.length() - 8; i += 8) {
-            String binaryByte = binaryString.substring(i, i + 8);
-            int charValue = Integer.parseInt(binaryByte, 2);
-            result.append((char) charValue);
+    /**
+     * Picks the shallowest layout that fits {@code payloadBytes}: depth 1 upwards, trying RGB
+     * before RGBA at each depth, so as few pixels and bit planes as possible are changed.
+     * @param alphaAvailable whether the image has an alpha channel
+     * @param maxDepth deepest layout to consider, 1-4
+     * @param useAlpha whether alpha may carry payload at all
+     * @return the layout, or null if the payload does not fit even at {@code maxDepth}
+     */
+    public static LsbLayout selectLayout(int width, int height, boolean alphaAvailable, long payloadBytes,
+                                         int maxDepth, boolean useAlpha) {
+        long requiredBits = payloadBytes * 8;
+        for (int depth = 1; depth <= Math.min(maxDepth, LsbLayout.MAX_DEPTH); depth++) {
+            LsbLayout rgb = LsbLayout.of(depth, false);
+            if (requiredBits <= getMaxCapacity(width, height, rgb)) {
+                return rgb;
+            }
+            LsbLayout rgba = LsbLayout.of(depth, true);
+            if (useAlpha && alphaAvailable && requiredBits <= getMaxCapacity(width, height, rgba)) {
+                return rgba;
+            }
         }
-        return result.toString();
+        return null;
+    }
+
+    /** First slot of the payload, in the slot numbering of {@code layout}. */
+    static long payloadSlot(LsbLayout layout) {
+        return layout.equals(LsbLayout.DEFAULT) ? HEADER_BITS : (long) HEADER_PIXELS * layout.slotsPerPixel();
+    }
+
+    /**
+     * Whether {@link #hidePayload(InputStream, OutputStream, byte[], PngEncoderSettings)} can stream this PNG
+     * (8-bit RGB/RGBA, not interlaced). Other PNGs must be decoded into a BufferedImage.
+     */
+    public static boolean supportsStreaming(PngHeader header) {
+        return StreamingPngEmbedder.supports(header);
+    }
+
+    /**
+     * Streaming variant of {@link #hidePayload(BufferedImage, byte[])}: copies the PNG from
+     * {@code pngIn} to {@code pngOut} scanline by scanline, embedding the payload on the way.
+     */
+    public static void hidePayload(InputStream pngIn, OutputStream pngOut, byte[] payload,
+                                   PngEncoderSettings settings) throws Exception {
+        hidePayload(pngIn, pngOut, payload, settings, LsbLayout.DEFAULT);
+    }
+
+    public static void hidePayload(InputStream pngIn, OutputStream pngOut, byte[] payload,
+                                   PngEncoderSettings settings, LsbLayout layout) throws Exception {
+        hidePayload(pngIn, pngOut, payload, settings, layout, RowProgress.NONE);
+    }
+
+    /**
+     * As above, reporting rows as they are written.
+     */
+    public static void hidePayload(InputStream pngIn, OutputStream pngOut, byte[] payload,
+                                   PngEncoderSettings settings, LsbLayout layout, RowProgress progress) throws Exception {
+        hidePayload(pngIn, pngOut, payload, settings, layout, null, progress);
+    }
+
+    /**
+     * As above, scattering the payload over the whole image when {@code scatterKey} is not null.
+     * Rows are still written in order; only the rows without a single payload bit keep their
+     * original bytes, which with scattering is hardly any.
+     */
+    public static void hidePayload(InputStream pngIn, OutputStream pngOut, byte[] payload, PngEncoderSettings settings,
+                                   LsbLayout layout, byte[] scatterKey, RowProgress progress) throws Exception {
+        embed(pngIn, pngOut, payload, settings, layout, scatterKey, progress);
+    }
+
+    /**
+     * Streams an encrypted file of {@code length} bytes into the PNG. The file is read as the
+     * rows that carry it are reached, so neither it nor the image is ever held in full.
+     */
+    public static void hideFile(InputStream pngIn, OutputStream pngOut, InputStream encryptedFile, long length,
+                                PngEncoderSettings settings) throws Exception {
+        hideFile(pngIn, pngOut, encryptedFile, length, settings, LsbLayout.DEFAULT);
+    }
+
+    public static void hideFile(InputStream pngIn, OutputStream pngOut, InputStream encryptedFile, long length,
+                                PngEncoderSettings settings, LsbLayout layout) throws Exception {
+        int payloadLength = checkFileLength(length);
+        try {
+            StreamingPngEmbedder.embed(pngIn, pngOut, new StreamingPngEmbedder.Segment[]{
+                    new StreamingPngEmbedder.SequentialSegment(new ByteArrayInputStream(
+                            createHeader(payloadLength, FLAG_RAW_PAYLOAD | FLAG_ENCRYPTED_FILE, layout)), HEADER_BYTES, 0),
+                    new StreamingPngEmbedder.SequentialSegment(encryptedFile, payloadLength, payloadSlot(layout), layout)}, settings);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Exception("----- Error hiding file in image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Hides an encrypted file of {@code length} bytes, reading it in chunks.
+     */
+    public static BufferedImage hideFile(BufferedImage originalImage, InputStream encryptedFile, long length) throws Exception {
+        return hideFile(originalImage, encryptedFile, length, LsbLayout.DEFAULT);
+    }
+
+    public static BufferedImage hideFile(BufferedImage originalImage, InputStream encryptedFile, long length,
+                                         LsbLayout layout) throws Exception {
+        int payloadLength = checkFileLength(length);
+        long requiredBits = (long) payloadLength * 8;
+        int maxCapacity = getMaxCapacity(originalImage, layout);
+        if (requiredBits > maxCapacity) {
+            throw new IllegalArgumentException("❌ File too large! Need " + requiredBits + " bits, but image only has " + maxCapacity + " bits available");
+        }
+        try {
+            BufferedImage stegoImage = PixelRaster.copyOf(originalImage);
+            PixelRaster raster = PixelRaster.of(stegoImage);
+            raster.writeBits(createHeader(payloadLength, FLAG_RAW_PAYLOAD | FLAG_ENCRYPTED_FILE, layout), 0, HEADER_BITS, 0);
+            raster = raster.withLayout(layout);
+            byte[] chunk = new byte[(int) Math.min(FILE_CHUNK, Math.max(1, payloadLength))];
+            long slot = payloadSlot(layout);
+            for (long remaining = payloadLength; remaining > 0; ) {
+                int count = (int) Math.min(chunk.length, remaining);
+                int read = encryptedFile.readNBytes(chunk, 0, count);
+                if (read < count) {
+                    throw new EOFException("❌ File ended before its declared length");
+                }
+                ParallelLsb.writeBits(raster, chunk, 0, (long) count * 8, slot);
+                slot += (long) count * 8;
+                remaining -= count;
+            }
+            return stegoImage;
+        } catch (Exception e) {
+            throw new Exception("----- Error hiding file in image: " + e.getMessage(), e);
+        }
+    }
+
+    private static int checkFileLength(long length) {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("❌ File too large! " + length + " bytes cannot be described by the stego header");
+        }
+        return (int) length;
+    }
+
+    private static void embed(InputStream pngIn, OutputStream pngOut, byte[] payload, PngEncoderSettings settings,
+                              LsbLayout layout, byte[] scatterKey, RowProgress progress) throws Exception {
+        try {
+            StreamingPngEmbedder.embed(pngIn, pngOut, segments(payload, FLAG_RAW_PAYLOAD, layout, scatterKey), settings, progress);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Exception("----- Error hiding message in image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * In-place variant of {@link #hidePayload(BufferedImage, byte[], LsbLayout, byte[])} for an
+     * uncompressed 24-bit BMP file: the pixel array is memory-mapped and only the bytes carrying
+     * payload bits change, so nothing is decoded or re-encoded. The file, normally a private copy
+     * of the upload, is modified. Check {@link CarrierInfo#isMappable()} first.
+     */
+    public static void hidePayload(Path bmp, byte[] payload, LsbLayout layout, byte[] scatterKey,
+                                   RowProgress progress) throws Exception {
+        try {
+            MappedBmpEmbedder.embed(bmp, segments(payload, FLAG_RAW_PAYLOAD, layout, scatterKey), progress);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Exception("----- Error hiding message in image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * In-place variant of {@link #hideFile(BufferedImage, InputStream, long, LsbLayout)} for an
+     * uncompressed 24-bit BMP file; the encrypted file is read as the rows that carry it are reached.
+     */
+    public static void hideFile(Path bmp, InputStream encryptedFile, long length, LsbLayout layout) throws Exception {
+        int payloadLength = checkFileLength(length);
+        try {
+            MappedBmpEmbedder.embed(bmp, new StreamingPngEmbedder.Segment[]{
+                    new StreamingPngEmbedder.SequentialSegment(new ByteArrayInputStream(
+                            createHeader(payloadLength, FLAG_RAW_PAYLOAD | FLAG_ENCRYPTED_FILE, layout)), HEADER_BYTES, 0),
+                    new StreamingPngEmbedder.SequentialSegment(encryptedFile, payloadLength, payloadSlot(layout), layout)},
+                    RowProgress.NONE);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new Exception("----- Error hiding file in image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The stego header, always in the first slots in order, then the payload in order or scattered.
+     */
+    private static StreamingPngEmbedder.Segment[] segments(byte[] payload, int flags, LsbLayout layout, byte[] scatterKey) {
+        int headerFlags = scatterKey == null ? flags : flags | FLAG_SCATTERED;
+        StreamingPngEmbedder.Segment payloadSegment = scatterKey == null
+                ? new StreamingPngEmbedder.SequentialSegment(new ByteArrayInputStream(payload), payload.length, payloadSlot(layout), layout)
+                : new StreamingPngEmbedder.ScatteredSegment(payload, payloadSlot(layout), layout, scatterKey);
+        return new StreamingPngEmbedder.Segment[]{
+                new StreamingPngEmbedder.SequentialSegment(new ByteArrayInputStream(createHeader(payload.length, headerFlags, layout)), HEADER_BYTES, 0),
+                payloadSegment};
     }
 
     public static BufferedImage hideMessage(BufferedImage originalImage, String message) throws Exception {
+        return embed(originalImage, message.getBytes(StandardCharsets.UTF_8), 0, LsbLayout.DEFAULT, null);
+    }
+
+    /**
+     * Hides raw bytes, e.g. AES ciphertext, flagged so that {@link #revealPayload(BufferedImage)}
+     * returns them unchanged.
+     */
+    public static BufferedImage hidePayload(BufferedImage originalImage, byte[] payload) throws Exception {
+        return hidePayload(originalImage, payload, LsbLayout.DEFAULT);
+    }
+
+    /**
+     * Hides raw bytes with {@code depth} LSBs per channel (and alpha) as {@code layout} says.
+     */
+    public static BufferedImage hidePayload(BufferedImage originalImage, byte[] payload, LsbLayout layout) throws Exception {
+        return hidePayload(originalImage, payload, layout, null);
+    }
+
+    /**
+     * As above, scattering the payload over the whole image when {@code scatterKey} is not null;
+     * {@link #revealPayload(BufferedImage, byte[])} then needs the same key.
+     */
+    public static BufferedImage hidePayload(BufferedImage originalImage, byte[] payload, LsbLayout layout,
+                                            byte[] scatterKey) throws Exception {
+        return embed(originalImage, payload, FLAG_RAW_PAYLOAD, layout, scatterKey);
+    }
+
+    private static BufferedImage embed(BufferedImage originalImage, byte[] payload, int flags, LsbLayout layout,
+                                       byte[] scatterKey) throws Exception {
         // *** MODIFICATION START ***
         // Check for capacity at the very beginning to fail fast.
-        String messageWithDelimiter = message + MESSAGE_DELIMITER;
-        byte[] messageBytes = messageWithDelimiter.getBytes(StandardCharsets.UTF_8);
-        int requiredBits = messageBytes.length * 8;
-        int maxCapacity = getMaxCapacity(originalImage);
+        long requiredBits = (long) payload.length * 8;
+        int maxCapacity = getMaxCapacity(originalImage, layout);
 
         if (requiredBits > maxCapacity) {
             throw new IllegalArgumentException("❌ Message too large! Need " + requiredBits + " bits, but image only has " + maxCapacity + " bits available");
@@ -47,49 +317,17 @@ public class ImageSteganographyUtil {
         // *** MODIFICATION END ***
 
         try {
-            BufferedImage stegoImage = new BufferedImage(
-                    originalImage.getWidth(),
-                    originalImage.getHeight(),
-                    originalImage.getType()
-            );
-            for (int y = 0; y < originalImage.getHeight(); y++) {
-                for (int x = 0; x < originalImage.getWidth(); x++) {
-                    stegoImage.setRGB(x, y, originalImage.getRGB(x, y));
-                }
-            }
-
-            StringBuilder binaryMessage = new StringBuilder();
-            for (byte b : messageBytes) {
-                String binaryByte = String.format("%8s", Integer.toBinaryString(b & 0xFF)).replace(' ', '0');
-                binaryMessage.append(binaryByte);
-            }
-
-            int messageIndex = 0;
-            outerLoop:
-            for (int y = 0; y < stegoImage.getHeight(); y++) {
-                for (int x = 0; x < stegoImage.getWidth(); x++) {
-                    if (messageIndex >= binaryMessage.length()) {
-                        break outerLoop;
-                    }
-                    int pixel = stegoImage.getRGB(x, y);
-                    int alpha = (pixel >> 24) & 0xFF;
-                    int red = (pixel >> 16) & 0xFF;
-                    int green = (pixel >> 8) & 0xFF;
-                    int blue = pixel & 0xFF;
-
-                    if (messageIndex < binaryMessage.length()) {
-                        red = setBit(red, binaryMessage.charAt(messageIndex++) == '1');
-                    }
-                    if (messageIndex < binaryMessage.length()) {
-                        green = setBit(green, binaryMessage.charAt(messageIndex++) == '1');
-                    }
-                    if (messageIndex < binaryMessage.length()) {
-                        blue = setBit(blue, binaryMessage.charAt(messageIndex++) == '1');
-                    }
-
-                    int newPixel = (alpha << 24) | (red << 16) | (green << 8) | blue;
-                    stegoImage.setRGB(x, y, newPixel);
-                }
+            // One bulk copy of the backing array, then write the bits straight into it
+            BufferedImage stegoImage = PixelRaster.copyOf(originalImage);
+            PixelRaster raster = PixelRaster.of(stegoImage);
+            long bitCount = (long) payload.length * 8;
+            if (scatterKey == null) {
+                raster.writeBits(createHeader(payload.length, flags, layout), 0, HEADER_BITS, 0);
+                ParallelLsb.writeBits(raster.withLayout(layout), payload, 0, bitCount, payloadSlot(layout));
+            } else {
+                raster.writeBits(createHeader(payload.length, flags | FLAG_SCATTERED, layout), 0, HEADER_BITS, 0);
+                ParallelLsb.writeScattered(raster.withLayout(layout), payload, bitCount, payloadSlot(layout),
+                        scatterPermutation(stegoImage, layout, scatterKey));
             }
             return stegoImage;
         } catch (Exception e) {
@@ -98,33 +336,302 @@ public class ImageSteganographyUtil {
         }
     }
 
+    /**
+     * Reveals a payload as text. Raw payloads come back Base64-encoded, which is how
+     * ciphertext used to be embedded, so the result can always go to {@link AESUtil#decrypt(String, String)}.
+     */
     public static String revealMessage(BufferedImage stegoImage) throws Exception {
         try {
-            StringBuilder binaryMessage = new StringBuilder();
-            outerLoop:
-            for (int y = 0; y < stegoImage.getHeight(); y++) {
-                for (int x = 0; x < stegoImage.getWidth(); x++) {
-                    int pixel = stegoImage.getRGB(x, y);
-                    int red = (pixel >> 16) & 0xFF;
-                    int green = (pixel >> 8) & 0xFF;
-                    int blue = pixel & 0xFF;
-
-                    binaryMessage.append(getBit(red));
-                    binaryMessage.append(getBit(green));
-                    binaryMessage.append(getBit(blue));
-
-                    if (binaryMessage.length() % 8 == 0) {
-                        String currentMessage = binaryToString(binaryMessage.toString());
-                        if (currentMessage.contains(MESSAGE_DELIMITER)) {
-                            int delimiterIndex = currentMessage.indexOf(MESSAGE_DELIMITER);
-                            return currentMessage.substring(0, delimiterIndex);
-                        }
-                    }
-                }
+            Payload payload = readPayload(stegoImage, null);
+            if (payload == null) {
+                return revealLegacyMessage(stegoImage);
             }
-            throw new Exception("❌ No valid hidden message found in the image");
+            return payload.raw ? Base64.getEncoder().encodeToString(payload.data)
+                    : new String(payload.data, StandardCharsets.UTF_8);
         } catch (Exception e) {
             throw new Exception("❌ Error revealing message from image: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Reveals a payload as bytes. Text payloads, including legacy delimiter-terminated ones, were
+     * Base64 ciphertext and are decoded, so the result can always go to {@link AESUtil#decrypt(byte[], String)}.
+     */
+    public static byte[] revealPayload(BufferedImage stegoImage) throws Exception {
+        return revealPayload(stegoImage, null);
+    }
+
+    /**
+     * As above, for images whose payload may be scattered. The key is only used if the header
+     * says so; sequential payloads, including every image written before scattering existed,
+     * read the same with or without it.
+     */
+    public static byte[] revealPayload(BufferedImage stegoImage, byte[] scatterKey) throws Exception {
+        try {
+            Payload payload = readPayload(stegoImage, scatterKey);
+            if (payload == null) {
+                return Base64.getDecoder().decode(revealLegacyMessage(stegoImage));
+            }
+            return payload.raw ? payload.data
+                    : Base64.getDecoder().decode(new String(payload.data, StandardCharsets.US_ASCII));
+        } catch (Exception e) {
+            throw new Exception("❌ Error revealing message from image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads and validates the header.
+     * @return the header, or null if the image has none (no message, or a legacy one)
+     */
+    public static StegoHeader readHeader(BufferedImage stegoImage) throws Exception {
+        long totalBits = (long) stegoImage.getWidth() * stegoImage.getHeight() * 3;
+        if (totalBits < HEADER_BITS) {
+            return null;
+        }
+        byte[] header = readBytes(stegoImage, LsbLayout.DEFAULT, 0, HEADER_BYTES);
+        if (!hasValidMagic(header)) {
+            return null;
+        }
+        return parseHeader(header, stegoImage.getWidth(), stegoImage.getHeight());
+    }
+
+    /**
+     * Streams the encrypted file embedded by {@link #hideFile}; its length is the header's payload length.
+     * Bytes are extracted a chunk at a time as the stream is read.
+     */
+    public static InputStream revealFile(BufferedImage stegoImage) throws Exception {
+        StegoHeader header = readHeader(stegoImage);
+        if (header == null || !header.isEncryptedFile()) {
+            throw new IllegalArgumentException("❌ No hidden file found in the image");
+        }
+        LsbLayout layout = header.getLayout();
+        return new LsbInputStream(stegoImage, layout, payloadSlot(layout), header.getPayloadLength());
+    }
+
+    /**
+     * Reads the header and the payload it describes, or returns null if there is no header.
+     */
+    private static Payload readPayload(BufferedImage stegoImage, byte[] scatterKey) throws Exception {
+        StegoHeader header = readHeader(stegoImage);
+        if (header == null) {
+            return null;
+        }
+        if (header.isEncryptedFile()) {
+            throw new IllegalArgumentException("❌ The image holds a hidden file, not a message");
+        }
+        LsbLayout layout = header.getLayout();
+        if (!header.isScattered()) {
+            return new Payload(readBytes(stegoImage, layout, payloadSlot(layout), header.getPayloadLength()), header.isRawPayload());
+        }
+        if (scatterKey == null) {
+            throw new IllegalArgumentException("❌ The message is scattered over the image; its key is needed to read it");
+        }
+        PixelRaster raster = addressable(stegoImage, layout);
+        if (raster == null) {
+            // Random access through getRGB would convert a whole pixel per bit; copy once instead
+            raster = PixelRaster.of(PixelRaster.copyOf(stegoImage), layout);
+        }
+        byte[] data = new byte[header.getPayloadLength()];
+        ParallelLsb.readScattered(raster, data, (long) data.length * 8, payloadSlot(layout),
+                scatterPermutation(stegoImage, layout, scatterKey));
+        return new Payload(data, header.isRawPayload());
+    }
+
+    /** The permutation of every slot from the payload slot to the end of the image. */
+    private static SlotPermutation scatterPermutation(BufferedImage image, LsbLayout layout, byte[] scatterKey) {
+        long slotCount = (long) image.getWidth() * image.getHeight() * layout.slotsPerPixel();
+        return new SlotPermutation(scatterKey, slotCount - payloadSlot(layout));
+    }
+
+    /**
+     * Sequential reader over the payload bytes of an image, extracted a chunk at a time.
+     */
+    private static final class LsbInputStream extends InputStream {
+        private final BufferedImage image;
+        private final PixelRaster raster;
+        private final byte[] single = new byte[1];
+        private long nextBit;
+        private long remaining;
+
+        LsbInputStream(BufferedImage image, LsbLayout layout, long startBit, long length) {
+            this.image = image;
+            this.raster = addressable(image, layout);
+            this.nextBit = startBit;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            int count = (int) Math.min(Math.min(len, FILE_CHUNK), remaining);
+            readInto(image, raster, nextBit, b, off, count);
+            nextBit += (long) count * 8;
+            remaining -= count;
+            return count;
+        }
+    }
+
+    private static final class Payload {
+        final byte[] data;
+        final boolean raw;
+
+        Payload(byte[] data, boolean raw) {
+            this.data = data;
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * Builds the version 1 header for a payload of the given length.
+     */
+    private static byte[] createHeader(int payloadLength, int flags, LsbLayout layout) {
+        byte[] header = new byte[HEADER_BYTES];
+        System.arraycopy(HEADER_MAGIC, 0, header, 0, HEADER_MAGIC.length);
+        int pos = HEADER_MAGIC.length;
+        header[pos++] = (byte) HEADER_VERSION;
+        header[pos++] = (byte) (flags | layout.toFlags());
+        header[pos++] = (byte) (payloadLength >>> 24);
+        header[pos++] = (byte) (payloadLength >>> 16);
+        header[pos++] = (byte) (payloadLength >>> 8);
+        header[pos] = (byte) payloadLength;
+        return header;
+    }
+
+    private static boolean hasValidMagic(byte[] header) {
+        for (int i = 0; i < HEADER_MAGIC.length; i++) {
+            if (header[i] != HEADER_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates a header whose magic already matched and returns the payload length.
+     */
+    private static StegoHeader parseHeader(byte[] header, int width, int height) throws Exception {
+        int pos = HEADER_MAGIC.length;
+        int version = header[pos++] & 0xFF;
+        if (version != HEADER_VERSION) {
+            throw new Exception("❌ Unsupported stego header version: " + version);
+        }
+        int flags = header[pos++] & 0xFF;
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new Exception("❌ Unsupported stego header flags: " + flags);
+        }
+        int length = ((header[pos] & 0xFF) << 24) | ((header[pos + 1] & 0xFF) << 16)
+                | ((header[pos + 2] & 0xFF) << 8) | (header[pos + 3] & 0xFF);
+        LsbLayout layout = LsbLayout.fromFlags(flags);
+        if (length < 0 || (long) length * 8 > getMaxCapacity(width, height, layout)) {
+            throw new Exception("❌ Corrupt stego header: payload length " + length + " exceeds image capacity");
+        }
+        return new StegoHeader(version, flags, length);
+    }
+
+    /**
+     * A raster over {@code image} in {@code layout}, or null for the default layout on a pixel
+     * format PixelRaster cannot address (read through getRGB instead). Deeper layouts on such
+     * images are rare enough that they are read from an addressable copy.
+     */
+    private static PixelRaster addressable(BufferedImage image, LsbLayout layout) {
+        PixelRaster raster = PixelRaster.of(image, layout);
+        if (raster != null || layout.equals(LsbLayout.DEFAULT)) {
+            return raster;
+        }
+        return PixelRaster.of(PixelRaster.copyOf(image), layout);
+    }
+
+    /**
+     * Reads {@code count} bytes starting at the given bit offset of the LSB stream of {@code layout}.
+     */
+    private static byte[] readBytes(BufferedImage image, LsbLayout layout, long startBit, int count) {
+        byte[] result = new byte[count];
+        readInto(image, addressable(image, layout), startBit, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Reads {@code count} bytes of the LSB stream from {@code startBit} into {@code dst} at
+     * {@code offset}, eight bits per byte straight from the backing array, and nothing past them.
+     * @param raster the image from {@link #addressable}, or null to go through getRGB
+     */
+    private static void readInto(BufferedImage image, PixelRaster raster, long startBit, byte[] dst, int offset, int count) {
+        Arrays.fill(dst, offset, offset + count, (byte) 0);
+        long dstBit = (long) offset * 8;
+        long totalBits = (long) count * 8;
+        if (raster != null) {
+            ParallelLsb.readBits(raster, dst, dstBit, totalBits, startBit);
+            return;
+        }
+
+        // Pixel formats PixelRaster cannot address are fetched a row at a time through getRGB
+        int width = image.getWidth();
+        long rowSlots = (long) width * PixelRaster.CHANNELS;
+        int[] row = new int[width];
+        PixelRaster rowRaster = PixelRaster.ofRgb(row, width);
+        long slot = startBit;
+        long end = startBit + totalBits;
+        while (slot < end) {
+            int y = (int) (slot / rowSlots);
+            long rowStart = y * rowSlots;
+            long bits = Math.min(end, rowStart + rowSlots) - slot;
+            image.getRGB(0, y, width, 1, row, 0, width);
+            rowRaster.readBits(dst, dstBit + slot - startBit, bits, slot - rowStart);
+            slot += bits;
+        }
+    }
+
+    /**
+     * Compatibility path for images written before the length header existed,
+     * whose payload is terminated by {@link #MESSAGE_DELIMITER}.
+     */
+    private static String revealLegacyMessage(BufferedImage stegoImage) throws Exception {
+        // Extract a chunk at a time into one buffer and only compare the tail, so the scan stays
+        // linear and stops at the delimiter rather than reading the whole image
+        byte[] delimiter = MESSAGE_DELIMITER.getBytes(StandardCharsets.US_ASCII);
+        PixelRaster raster = addressable(stegoImage, LsbLayout.DEFAULT);
+        long totalBytes = (long) stegoImage.getWidth() * stegoImage.getHeight() * PixelRaster.CHANNELS / 8;
+        byte[] chunk = new byte[LEGACY_CHUNK];
+        byte[] message = new byte[256];
+        int length = 0;
+        for (long read = 0; read < totalBytes; ) {
+            int count = (int) Math.min(chunk.length, totalBytes - read);
+            readInto(stegoImage, raster, read * 8, chunk, 0, count);
+            read += count;
+            for (int i = 0; i < count; i++) {
+                if (length == message.length) {
+                    message = Arrays.copyOf(message, length * 2);
+                }
+                message[length++] = chunk[i];
+                if (endsWith(message, length, delimiter)) {
+                    // Legacy payloads were read back one char per byte
+                    return new String(message, 0, length - delimiter.length, StandardCharsets.ISO_8859_1);
+                }
+            }
+        }
+        throw new Exception("❌ No valid hidden message found in the image");
+    }
+
+    private static boolean endsWith(byte[] data, int length, byte[] suffix) {
+        int offset = length - suffix.length;
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (data[offset + i] != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,53 @@
+package com.stegosecure.util;
+
+/**
+ * Point-in-time counters of the derived AES key cache.
+ */
+public final class KeyCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final int size;
+    private final int maxSize;
+
+    KeyCacheStats(long hits, long misses, long evictions, long expirations, int size, int maxSize) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Entries dropped because the cache was full. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** Entries dropped because they outlived the TTL. */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
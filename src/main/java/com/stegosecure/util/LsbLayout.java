@@ -0,0 +1,76 @@
+package com.stegosecure.util;
+
+/**
+ * How payload bits are spread over a pixel: the number of low bits used per channel (1-4)
+ * and whether alpha is used as a fourth channel after R, G and B.
+ *
+ * Within a pixel the payload fills R, then G, then B (then A), each channel taking
+ * {@code depth} consecutive payload bits with the first of them in the highest of its low
+ * bits. At depth 1 without alpha this is exactly the original one-bit-per-channel layout.
+ */
+public final class LsbLayout {
+    public static final int MAX_DEPTH = 4;
+
+    /** One LSB of R, G and B; the layout of every image written before k-LSB embedding. */
+    public static final LsbLayout DEFAULT = new LsbLayout(1, false);
+
+    private final int depth;
+    private final boolean alpha;
+
+    private LsbLayout(int depth, boolean alpha) {
+        this.depth = depth;
+        this.alpha = alpha;
+    }
+
+    /**
+     * @throws IllegalArgumentException if depth is not between 1 and {@link #MAX_DEPTH}
+     */
+    public static LsbLayout of(int depth, boolean alpha) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("❌ LSB depth must be between 1 and " + MAX_DEPTH + ", got " + depth);
+        }
+        return depth == 1 && !alpha ? DEFAULT : new LsbLayout(depth, alpha);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean usesAlpha() {
+        return alpha;
+    }
+
+    /** Channels carrying payload: 3, or 4 with alpha. */
+    public int channels() {
+        return alpha ? 4 : PixelRaster.CHANNELS;
+    }
+
+    /** Payload bits per pixel. */
+    public int slotsPerPixel() {
+        return channels() * depth;
+    }
+
+    /** Header flag bits recording this layout. */
+    int toFlags() {
+        return (depth - 1) << 2 | (alpha ? 0x10 : 0);
+    }
+
+    static LsbLayout fromFlags(int flags) {
+        return of(((flags >>> 2) & 0x03) + 1, (flags & 0x10) != 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof LsbLayout layout && layout.depth == depth && layout.alpha == alpha;
+    }
+
+    @Override
+    public int hashCode() {
+        return depth * 2 + (alpha ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return depth + "-LSB " + (alpha ? "RGBA" : "RGB");
+    }
+}
@@ -0,0 +1,73 @@
+package com.stegosecure.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Embeds LSB segments into an uncompressed 24-bit BMP file in place.
+ *
+ * The pixel array sits at a fixed offset and needs no decoding, so it is memory-mapped and
+ * only the rows that carry payload bits are touched: each is copied out, written through the
+ * same {@link StreamingPngEmbedder.Segment}s the PNG path uses, and copied back. Nothing else
+ * in the file is read or rewritten. Image rows are numbered from the top as in a decoded
+ * image; the file stores them bottom-up unless its height is negative.
+ */
+final class MappedBmpEmbedder {
+
+    private MappedBmpEmbedder() {
+    }
+
+    /**
+     * Whether {@link #embed} can process a file with this header.
+     */
+    static boolean supports(BmpHeader header) {
+        return header.isDirect();
+    }
+
+    /**
+     * Writes each segment's bits into the R/G/B slots of {@code file}, which is modified in place.
+     * @param segments bit sources, in slot order
+     * @param progress told the row count once, when every row carrying payload has been written
+     */
+    static void embed(Path file, StreamingPngEmbedder.Segment[] segments, RowProgress progress) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer headerBytes = ByteBuffer.allocate(BmpHeader.LENGTH);
+            channel.read(headerBytes, 0);
+            BmpHeader header = BmpHeader.parse(headerBytes.array(), headerBytes.position());
+            if (header == null || !supports(header)) {
+                throw new IllegalArgumentException("❌ BMP layout not supported for in-place embedding");
+            }
+            if (header.getPixelOffset() + header.pixelBytes() > channel.size()) {
+                throw new IllegalArgumentException("❌ Invalid BMP: pixel data is truncated");
+            }
+            int width = header.getWidth();
+            int height = header.getHeight();
+            long lastRow = -1;
+            for (StreamingPngEmbedder.Segment segment : segments) {
+                long availableSlots = (long) width * height * segment.layout.slotsPerPixel();
+                if (segment.endSlot > availableSlots) {
+                    throw new IllegalArgumentException("❌ Message too large! Need " + segment.endSlot
+                            + " bits, but image only has " + availableSlots + " bits available");
+                }
+                segment.bindBgr(width, height);
+                lastRow = Math.max(lastRow, segment.lastRow());
+            }
+
+            MappedByteBuffer pixels = channel.map(FileChannel.MapMode.READ_WRITE, header.getPixelOffset(), header.pixelBytes());
+            byte[] row = new byte[width * PixelRaster.CHANNELS];
+            for (int y = 0; y <= lastRow; y++) {
+                int offset = (int) header.rowOffset(y);
+                pixels.get(offset, row);
+                for (StreamingPngEmbedder.Segment segment : segments) {
+                    segment.write(row, y);
+                }
+                pixels.put(offset, row);
+            }
+            progress.rowsProcessed(height);
+        }
+    }
+}
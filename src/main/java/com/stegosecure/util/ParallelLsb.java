@@ -0,0 +1,164 @@
+package com.stegosecure.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits large LSB reads and writes into bands of consecutive rows and runs them on a ForkJoinPool.
+ *
+ * Every slot maps to a fixed payload bit, so a band only needs its first slot to know where
+ * it starts in the payload. Band boundaries fall on a pixel boundary (no two tasks touch the
+ * same pixel) and on a payload byte boundary (no two tasks touch the same payload byte).
+ * Below {@link #PARALLEL_THRESHOLD_BITS} everything stays on the calling thread.
+ *
+ * Scattered payloads ({@link SlotPermutation}) are read the same way, split on payload byte
+ * boundaries, but written on one thread: neighbouring bits land in arbitrary pixels, and two
+ * slots of one pixel share a packed int (or, deeper than one LSB, a sample byte).
+ */
+final class ParallelLsb {
+
+    /** Payload size from which splitting pays for the task overhead. */
+    static final long PARALLEL_THRESHOLD_BITS = 1L << 20;
+
+    /** Smallest band handed to a single task. */
+    private static final long MIN_BAND_BITS = 1L << 17;
+
+    private ParallelLsb() {
+    }
+
+    static void writeBits(PixelRaster raster, byte[] src, long srcBit, long bitCount, long firstSlot) {
+        if (bitCount < PARALLEL_THRESHOLD_BITS) {
+            raster.writeBits(src, srcBit, bitCount, firstSlot);
+            return;
+        }
+        pool().invoke(new BandTask(raster, src, srcBit, bitCount, firstSlot, true));
+    }
+
+    static void readBits(PixelRaster raster, byte[] dst, long dstBit, long bitCount, long firstSlot) {
+        if (bitCount < PARALLEL_THRESHOLD_BITS) {
+            raster.readBits(dst, dstBit, bitCount, firstSlot);
+            return;
+        }
+        pool().invoke(new BandTask(raster, dst, dstBit, bitCount, firstSlot, false));
+    }
+
+    /**
+     * Writes bit {@code i} of {@code src} into slot {@code firstSlot + permutation.apply(i)}.
+     */
+    static void writeScattered(PixelRaster raster, byte[] src, long bitCount, long firstSlot,
+                               SlotPermutation permutation) {
+        for (long bit = 0; bit < bitCount; bit++) {
+            raster.writeBit(firstSlot + permutation.apply(bit), PixelRaster.bitAt(src, bit));
+        }
+    }
+
+    /**
+     * Reads what {@link #writeScattered} wrote into the zeroed {@code dst}.
+     */
+    static void readScattered(PixelRaster raster, byte[] dst, long bitCount, long firstSlot,
+                              SlotPermutation permutation) {
+        if (bitCount < PARALLEL_THRESHOLD_BITS) {
+            readScattered(raster, dst, 0, bitCount, firstSlot, permutation);
+            return;
+        }
+        pool().invoke(new ScatterReadTask(raster, dst, 0, bitCount, firstSlot, permutation));
+    }
+
+    private static void readScattered(PixelRaster raster, byte[] dst, long fromBit, long toBit, long firstSlot,
+                                      SlotPermutation permutation) {
+        for (long bit = fromBit; bit < toBit; bit++) {
+            dst[(int) (bit >>> 3)] |= (byte) (raster.readBit(firstSlot + permutation.apply(bit)) << (7 - (int) (bit & 7)));
+        }
+    }
+
+    private static ForkJoinPool pool() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * One band of consecutive slots; splits in half until the band is small enough.
+     */
+    private static final class BandTask extends RecursiveAction {
+        private final PixelRaster raster;
+        private final byte[] payload;
+        private final long payloadBit;
+        private final long bitCount;
+        private final long firstSlot;
+        private final boolean write;
+
+        BandTask(PixelRaster raster, byte[] payload, long payloadBit, long bitCount, long firstSlot, boolean write) {
+            this.raster = raster;
+            this.payload = payload;
+            this.payloadBit = payloadBit;
+            this.bitCount = bitCount;
+            this.firstSlot = firstSlot;
+            this.write = write;
+        }
+
+        @Override
+        protected void compute() {
+            long split = bitCount >= 2 * MIN_BAND_BITS ? alignedSplit() : bitCount;
+            if (split <= 0 || split >= bitCount) {
+                if (write) {
+                    raster.writeBits(payload, payloadBit, bitCount, firstSlot);
+                } else {
+                    raster.readBits(payload, payloadBit, bitCount, firstSlot);
+                }
+                return;
+            }
+            invokeAll(
+                    new BandTask(raster, payload, payloadBit, split, firstSlot, write),
+                    new BandTask(raster, payload, payloadBit + split, bitCount - split, firstSlot + split, write));
+        }
+
+        /**
+         * Bit count of the first half, moved forward to the next slot that starts both a pixel
+         * and a payload byte.
+         */
+        private long alignedSplit() {
+            // Boundaries must be a multiple of both the slots per pixel and the byte size
+            int slotsPerPixel = raster.slotsPerPixel();
+            long split = bitCount / 2;
+            for (int i = 0; i < slotsPerPixel * 8; i++, split++) {
+                if ((firstSlot + split) % slotsPerPixel == 0 && (payloadBit + split) % 8 == 0) {
+                    return split;
+                }
+            }
+            return bitCount;
+        }
+    }
+
+    /**
+     * A range of payload bits of a scattered read; halves split on a payload byte boundary.
+     */
+    private static final class ScatterReadTask extends RecursiveAction {
+        private final PixelRaster raster;
+        private final byte[] payload;
+        private final long fromBit;
+        private final long toBit;
+        private final long firstSlot;
+        private final SlotPermutation permutation;
+
+        ScatterReadTask(PixelRaster raster, byte[] payload, long fromBit, long toBit, long firstSlot,
+                        SlotPermutation permutation) {
+            this.raster = raster;
+            this.payload = payload;
+            this.fromBit = fromBit;
+            this.toBit = toBit;
+            this.firstSlot = firstSlot;
+            this.permutation = permutation;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBit - fromBit < 2 * MIN_BAND_BITS) {
+                readScattered(raster, payload, fromBit, toBit, firstSlot, permutation);
+                return;
+            }
+            long split = (fromBit + (toBit - fromBit) / 2) & ~7L;
+            invokeAll(
+                    new ScatterReadTask(raster, payload, fromBit, split, firstSlot, permutation),
+                    new ScatterReadTask(raster, payload, split, toBit, firstSlot, permutation));
+        }
+    }
+}
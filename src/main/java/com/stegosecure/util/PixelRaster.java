@@ -0,0 +1,611 @@
+package com.stegosecure.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Direct LSB access to the backing array of a BufferedImage.
+ *
+ * The embedder addresses the image as a flat sequence of "slots": slot {@code s} is colour
+ * channel {@code s % 3} (R, G, B) of pixel {@code s / 3} in raster order. Working on the
+ * DataBuffer avoids the ColorModel conversion done by getRGB/setRGB for every pixel.
+ *
+ * With an {@link LsbLayout} other than the default, slot {@code s} is instead bit
+ * {@code s % depth} (from the top of the low bits) of channel {@code (s / depth) % channels}
+ * of pixel {@code s / (channels * depth)}, alpha being the fourth channel.
+ */
+abstract class PixelRaster {
+
+    static final int CHANNELS = 3;
+
+    protected final int width;
+    protected final int height;
+    protected final LsbLayout layout;
+    protected final int depth;
+    protected final int slotsPerPixel;
+
+    private PixelRaster(int width, int height, LsbLayout layout) {
+        this.width = width;
+        this.height = height;
+        this.layout = layout;
+        this.depth = layout.getDepth();
+        this.slotsPerPixel = layout.slotsPerPixel();
+    }
+
+    /**
+     * Wraps a supported image with the given layout.
+     * @return the raster view, or null if the image type or raster layout is not supported
+     * @throws IllegalArgumentException if the layout uses alpha and the image has none
+     */
+    static PixelRaster of(BufferedImage image, LsbLayout layout) {
+        PixelRaster raster = of(image);
+        return raster == null ? null : raster.withLayout(layout);
+    }
+
+    /**
+     * The same pixels addressed with another layout.
+     * @throws IllegalArgumentException if the layout uses alpha and the pixels have none
+     */
+    PixelRaster withLayout(LsbLayout newLayout) {
+        if (newLayout.equals(layout)) {
+            return this;
+        }
+        if (newLayout.usesAlpha() && !hasAlpha()) {
+            throw new IllegalArgumentException("❌ " + newLayout + " needs an image with an alpha channel");
+        }
+        return relayout(newLayout);
+    }
+
+    protected abstract PixelRaster relayout(LsbLayout newLayout);
+
+    /** Whether this raster uses the original one-bit RGB layout, which has a dedicated fast path. */
+    protected boolean isDefaultLayout() {
+        return slotsPerPixel == CHANNELS;
+    }
+
+    /**
+     * Wraps the backing array of a supported image type.
+     * @return the raster view, or null if the image type or raster layout is not supported
+     */
+    static PixelRaster of(BufferedImage image) {
+        WritableRaster raster = image.getRaster();
+        if (!isPlainRaster(raster)) {
+            return null;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_ARGB: {
+                int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+                return new IntRaster(data, width, height, image.getType() == BufferedImage.TYPE_INT_ARGB, LsbLayout.DEFAULT);
+            }
+            case BufferedImage.TYPE_3BYTE_BGR:
+            case BufferedImage.TYPE_4BYTE_ABGR: {
+                ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+                // Bands are ordered R, G, B(, A) by the ColorModel regardless of memory order,
+                // so this yields {2, 1, 0} for BGR and {3, 2, 1} for ABGR
+                int[] bandOffsets = model.getBandOffsets();
+                int[] channelOffsets = {bandOffsets[0], bandOffsets[1], bandOffsets[2]};
+                int alphaOffset = bandOffsets.length > 3 ? bandOffsets[3] : -1;
+                byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+                return new ByteRaster(data, width, height, model.getPixelStride(), channelOffsets, alphaOffset, LsbLayout.DEFAULT);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wraps one 8-bit RGB or RGBA PNG scanline whose first sample is at {@code base}.
+     */
+    static PixelRaster ofScanline(byte[] row, int base, int width, int samplesPerPixel) {
+        return ofScanline(row, base, width, samplesPerPixel, LsbLayout.DEFAULT);
+    }
+
+    static PixelRaster ofScanline(byte[] row, int base, int width, int samplesPerPixel, LsbLayout layout) {
+        int alphaOffset = samplesPerPixel > 3 ? base + 3 : -1;
+        if (layout.usesAlpha() && alphaOffset < 0) {
+            throw new IllegalArgumentException("❌ " + layout + " needs an image with an alpha channel");
+        }
+        return new ByteRaster(row, width, 1, samplesPerPixel, new int[]{base, base + 1, base + 2}, alphaOffset, layout);
+    }
+
+    /**
+     * Wraps one row of a 24-bit BMP: {@code width} B, G, R byte triples from index 0.
+     */
+    static PixelRaster ofBgrRow(byte[] row, int width, LsbLayout layout) {
+        if (layout.usesAlpha()) {
+            throw new IllegalArgumentException("❌ " + layout + " needs an image with an alpha channel");
+        }
+        return new ByteRaster(row, width, 1, CHANNELS, new int[]{2, 1, 0}, -1, layout);
+    }
+
+    /**
+     * Wraps {@code width} packed RGB ints, e.g. one row fetched with {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+     */
+    static PixelRaster ofRgb(int[] pixels, int width) {
+        return new IntRaster(pixels, width, 1, false, LsbLayout.DEFAULT);
+    }
+
+    /**
+     * Creates a writable copy of the image whose pixels can be addressed by {@link #of}.
+     * Supported types are duplicated with a single array copy; anything else (grey, indexed,
+     * custom layouts) is converted once to TYPE_INT_RGB or TYPE_INT_ARGB.
+     */
+    static BufferedImage copyOf(BufferedImage source) {
+        int type = source.getType();
+        boolean supported = type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR;
+        if (supported && isPlainRaster(source.getRaster())) {
+            BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), type);
+            DataBuffer from = source.getRaster().getDataBuffer();
+            DataBuffer to = copy.getRaster().getDataBuffer();
+            if (from instanceof DataBufferInt) {
+                int[] src = ((DataBufferInt) from).getData();
+                System.arraycopy(src, 0, ((DataBufferInt) to).getData(), 0, src.length);
+            } else {
+                byte[] src = ((DataBufferByte) from).getData();
+                System.arraycopy(src, 0, ((DataBufferByte) to).getData(), 0, src.length);
+            }
+            return copy;
+        }
+
+        int convertedType = source.getColorModel().hasAlpha()
+                ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(), convertedType);
+        int[] data = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        source.getRGB(0, 0, source.getWidth(), source.getHeight(), data, 0, source.getWidth());
+        return copy;
+    }
+
+    /**
+     * A raster that owns its whole DataBuffer with no offsets, so it can be copied as one array.
+     */
+    private static boolean isPlainRaster(WritableRaster raster) {
+        DataBuffer buffer = raster.getDataBuffer();
+        if (raster.getParent() != null || buffer.getNumBanks() != 1 || buffer.getOffset() != 0
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return false;
+        }
+        if (raster.getSampleModel() instanceof SinglePixelPackedSampleModel model) {
+            return model.getScanlineStride() == raster.getWidth()
+                    && buffer.getSize() == raster.getWidth() * raster.getHeight();
+        }
+        if (raster.getSampleModel() instanceof ComponentSampleModel model) {
+            return model.getScanlineStride() == raster.getWidth() * model.getPixelStride()
+                    && buffer.getSize() == model.getScanlineStride() * raster.getHeight();
+        }
+        return false;
+    }
+
+    /** Total number of addressable slots. */
+    long slotCount() {
+        return (long) width * height * slotsPerPixel;
+    }
+
+    /** Payload bits per pixel under this raster's layout. */
+    int slotsPerPixel() {
+        return slotsPerPixel;
+    }
+
+    /**
+     * Writes {@code bitCount} bits of {@code src}, MSB first from bit {@code srcBit},
+     * into the LSBs of consecutive slots starting at {@code firstSlot}.
+     */
+    abstract void writeBits(byte[] src, long srcBit, long bitCount, long firstSlot);
+
+    /** Whether the pixels carry an alpha sample. */
+    abstract boolean hasAlpha();
+
+    /**
+     * Copies row {@code y} as 8-bit R, G, B(, A) samples, the PNG scanline layout, into {@code dst} at {@code offset}.
+     */
+    abstract void copyRow(int y, byte[] dst, int offset);
+
+    /**
+     * Reads {@code bitCount} LSBs from consecutive slots starting at {@code firstSlot} into
+     * {@code dst}, MSB first from bit {@code dstBit}. The target bits of dst must be zero.
+     */
+    abstract void readBits(byte[] dst, long dstBit, long bitCount, long firstSlot);
+
+    /** Writes {@code bit} (0 or 1) into slot {@code slot}, for payloads that are not laid out in slot order. */
+    abstract void writeBit(long slot, int bit);
+
+    /** The bit held by slot {@code slot}. */
+    abstract int readBit(long slot);
+
+    /**
+     * Bits to read one at a time from {@code firstSlot} before a slot that starts a pixel meets a
+     * bit that starts a payload byte; from there the default layout is read eight pixels (three
+     * whole bytes) per step. Always less than 24, as 3 and 8 are coprime.
+     */
+    protected static long alignment(long dstBit, long firstSlot) {
+        long skip = 0;
+        while ((firstSlot + skip) % CHANNELS != 0 || ((dstBit + skip) & 7) != 0) {
+            skip++;
+        }
+        return skip;
+    }
+
+    /** Which bit of its sample slot {@code within} of a pixel is, counted from the LSB. */
+    protected final int bitOfSample(int within) {
+        return depth - 1 - within % depth;
+    }
+
+    protected static int bitAt(byte[] src, long bit) {
+        return (src[(int) (bit >>> 3)] >>> (7 - (int) (bit & 7))) & 1;
+    }
+
+    /** The {@code count} (at most 8) bits of {@code src} from {@code bit}, MSB first, as an int. */
+    protected static int bitsAt(byte[] src, long bit, int count) {
+        int index = (int) (bit >>> 3);
+        int offset = (int) (bit & 7);
+        int window = (src[index] & 0xFF) << 8;
+        if (offset + count > 8) {
+            window |= src[index + 1] & 0xFF;
+        }
+        return (window >>> (16 - offset - count)) & ((1 << count) - 1);
+    }
+
+    /** ORs the low {@code count} bits of {@code bits} into {@code dst} from {@code bit}, MSB first. */
+    protected static void orBits(byte[] dst, long bit, int count, int bits) {
+        int index = (int) (bit >>> 3);
+        int offset = (int) (bit & 7);
+        int window = bits << (16 - offset - count);
+        dst[index] |= (byte) (window >>> 8);
+        if (offset + count > 8) {
+            dst[index + 1] |= (byte) window;
+        }
+    }
+
+    /**
+     * TYPE_INT_RGB and TYPE_INT_ARGB: one packed int per pixel, R/G/B at bits 16/8/0.
+     */
+    private static final class IntRaster extends PixelRaster {
+        private static final int[] SHIFTS = {16, 8, 0, 24};
+
+        private final int[] data;
+        private final boolean alpha;
+
+        IntRaster(int[] data, int width, int height, boolean alpha, LsbLayout layout) {
+            super(width, height, layout);
+            this.data = data;
+            this.alpha = alpha;
+        }
+
+        @Override
+        protected PixelRaster relayout(LsbLayout newLayout) {
+            return new IntRaster(data, width, height, alpha, newLayout);
+        }
+
+        @Override
+        boolean hasAlpha() {
+            return alpha;
+        }
+
+        @Override
+        void copyRow(int y, byte[] dst, int offset) {
+            int index = y * width;
+            int end = index + width;
+            int at = offset;
+            while (index < end) {
+                int value = data[index++];
+                dst[at++] = (byte) (value >>> 16);
+                dst[at++] = (byte) (value >>> 8);
+                dst[at++] = (byte) value;
+                if (alpha) {
+                    dst[at++] = (byte) (value >>> 24);
+                }
+            }
+        }
+
+        @Override
+        void writeBits(byte[] src, long srcBit, long bitCount, long firstSlot) {
+            if (!isDefaultLayout()) {
+                writeLayered(src, srcBit, bitCount, firstSlot);
+                return;
+            }
+            long pixel = firstSlot / CHANNELS;
+            int channel = (int) (firstSlot % CHANNELS);
+            int index = (int) pixel;
+            long bit = srcBit;
+            long end = srcBit + bitCount;
+            while (bit < end) {
+                int value = data[index];
+                for (; channel < CHANNELS && bit < end; channel++, bit++) {
+                    int shift = SHIFTS[channel];
+                    value = (value & ~(1 << shift)) | (bitAt(src, bit) << shift);
+                }
+                data[index++] = value;
+                channel = 0;
+            }
+        }
+
+        @Override
+        void readBits(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            if (!isDefaultLayout()) {
+                readLayered(dst, dstBit, bitCount, firstSlot);
+                return;
+            }
+            long head = Math.min(bitCount, alignment(dstBit, firstSlot));
+            readSlots(dst, dstBit, head, firstSlot);
+            long groups = (bitCount - head) / 24;
+            int index = (int) ((firstSlot + head) / CHANNELS);
+            int out = (int) ((dstBit + head) >>> 3);
+            for (long group = 0; group < groups; group++, index += 8, out += 3) {
+                int bits = rgb(data[index]) << 21 | rgb(data[index + 1]) << 18 | rgb(data[index + 2]) << 15
+                        | rgb(data[index + 3]) << 12 | rgb(data[index + 4]) << 9 | rgb(data[index + 5]) << 6
+                        | rgb(data[index + 6]) << 3 | rgb(data[index + 7]);
+                dst[out] = (byte) (bits >>> 16);
+                dst[out + 1] = (byte) (bits >>> 8);
+                dst[out + 2] = (byte) bits;
+            }
+            long done = head + groups * 24;
+            readSlots(dst, dstBit + done, bitCount - done, firstSlot + done);
+        }
+
+        /** The R, G and B LSBs of a packed pixel as a 3-bit value, R first. */
+        private static int rgb(int value) {
+            return (value >>> 14) & 4 | (value >>> 7) & 2 | value & 1;
+        }
+
+        /** Default layout, one slot at a time. */
+        private void readSlots(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            int channel = (int) (firstSlot % CHANNELS);
+            int index = (int) (firstSlot / CHANNELS);
+            long bit = dstBit;
+            long end = dstBit + bitCount;
+            while (bit < end) {
+                int value = data[index++];
+                for (; channel < CHANNELS && bit < end; channel++, bit++) {
+                    dst[(int) (bit >>> 3)] |= (byte) (((value >>> SHIFTS[channel]) & 1) << (7 - (int) (bit & 7)));
+                }
+                channel = 0;
+            }
+        }
+
+        @Override
+        void writeBit(long slot, int bit) {
+            int index = (int) (slot / slotsPerPixel);
+            int within = (int) (slot % slotsPerPixel);
+            int shift = SHIFTS[within / depth] + bitOfSample(within);
+            data[index] = (data[index] & ~(1 << shift)) | (bit << shift);
+        }
+
+        @Override
+        int readBit(long slot) {
+            int within = (int) (slot % slotsPerPixel);
+            return (data[(int) (slot / slotsPerPixel)] >>> (SHIFTS[within / depth] + bitOfSample(within))) & 1;
+        }
+
+        /** k-LSB / alpha layouts: up to {@code depth} bits are moved per channel at once. */
+        private void writeLayered(byte[] src, long srcBit, long bitCount, long firstSlot) {
+            int index = (int) (firstSlot / slotsPerPixel);
+            int within = (int) (firstSlot % slotsPerPixel);
+            long bit = srcBit;
+            long end = srcBit + bitCount;
+            while (bit < end) {
+                int value = data[index];
+                while (within < slotsPerPixel && bit < end) {
+                    int channel = within / depth;
+                    int used = within - channel * depth;
+                    int count = (int) Math.min(depth - used, end - bit);
+                    int shift = SHIFTS[channel] + depth - used - count;
+                    int mask = ((1 << count) - 1) << shift;
+                    value = (value & ~mask) | (bitsAt(src, bit, count) << shift);
+                    within += count;
+                    bit += count;
+                }
+                data[index++] = value;
+                within = 0;
+            }
+        }
+
+        private void readLayered(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            int index = (int) (firstSlot / slotsPerPixel);
+            int within = (int) (firstSlot % slotsPerPixel);
+            long bit = dstBit;
+            long end = dstBit + bitCount;
+            while (bit < end) {
+                int value = data[index++];
+                while (within < slotsPerPixel && bit < end) {
+                    int channel = within / depth;
+                    int used = within - channel * depth;
+                    int count = (int) Math.min(depth - used, end - bit);
+                    int shift = SHIFTS[channel] + depth - used - count;
+                    orBits(dst, bit, count, (value >>> shift) & ((1 << count) - 1));
+                    within += count;
+                    bit += count;
+                }
+                within = 0;
+            }
+        }
+    }
+
+    /**
+     * TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR: interleaved bytes, channel positions from the sample model.
+     */
+    private static final class ByteRaster extends PixelRaster {
+        private final byte[] data;
+        private final int pixelStride;
+        private final int[] channelOffsets;
+        private final int alphaOffset;
+        private final int[] layoutOffsets; // R, G, B, then A if present
+
+        ByteRaster(byte[] data, int width, int height, int pixelStride, int[] channelOffsets, int alphaOffset,
+                   LsbLayout layout) {
+            super(width, height, layout);
+            this.data = data;
+            this.pixelStride = pixelStride;
+            this.channelOffsets = channelOffsets;
+            this.alphaOffset = alphaOffset;
+            this.layoutOffsets = new int[]{channelOffsets[0], channelOffsets[1], channelOffsets[2], alphaOffset};
+        }
+
+        @Override
+        protected PixelRaster relayout(LsbLayout newLayout) {
+            return new ByteRaster(data, width, height, pixelStride, channelOffsets, alphaOffset, newLayout);
+        }
+
+        @Override
+        boolean hasAlpha() {
+            return alphaOffset >= 0;
+        }
+
+        @Override
+        void copyRow(int y, byte[] dst, int offset) {
+            int index = y * width * pixelStride;
+            int end = index + width * pixelStride;
+            int red = channelOffsets[0];
+            int green = channelOffsets[1];
+            int blue = channelOffsets[2];
+            int at = offset;
+            for (; index < end; index += pixelStride) {
+                dst[at++] = data[index + red];
+                dst[at++] = data[index + green];
+                dst[at++] = data[index + blue];
+                if (alphaOffset >= 0) {
+                    dst[at++] = data[index + alphaOffset];
+                }
+            }
+        }
+
+        @Override
+        void writeBits(byte[] src, long srcBit, long bitCount, long firstSlot) {
+            if (!isDefaultLayout()) {
+                writeLayered(src, srcBit, bitCount, firstSlot);
+                return;
+            }
+            long pixel = firstSlot / CHANNELS;
+            int channel = (int) (firstSlot % CHANNELS);
+            int index = (int) pixel * pixelStride;
+            long bit = srcBit;
+            long end = srcBit + bitCount;
+            while (bit < end) {
+                for (; channel < CHANNELS && bit < end; channel++, bit++) {
+                    int at = index + channelOffsets[channel];
+                    data[at] = (byte) ((data[at] & 0xFE) | bitAt(src, bit));
+                }
+                index += pixelStride;
+                channel = 0;
+            }
+        }
+
+        @Override
+        void readBits(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            if (!isDefaultLayout()) {
+                readLayered(dst, dstBit, bitCount, firstSlot);
+                return;
+            }
+            long head = Math.min(bitCount, alignment(dstBit, firstSlot));
+            readSlots(dst, dstBit, head, firstSlot);
+            long groups = (bitCount - head) / 24;
+            int index = (int) ((firstSlot + head) / CHANNELS) * pixelStride;
+            int out = (int) ((dstBit + head) >>> 3);
+            byte[] pixels = data;
+            int stride = pixelStride;
+            int red = channelOffsets[0];
+            int green = channelOffsets[1];
+            int blue = channelOffsets[2];
+            for (long group = 0; group < groups; group++, index += 8 * stride, out += 3) {
+                int bits = rgb(pixels, index, red, green, blue) << 21
+                        | rgb(pixels, index + stride, red, green, blue) << 18
+                        | rgb(pixels, index + 2 * stride, red, green, blue) << 15
+                        | rgb(pixels, index + 3 * stride, red, green, blue) << 12
+                        | rgb(pixels, index + 4 * stride, red, green, blue) << 9
+                        | rgb(pixels, index + 5 * stride, red, green, blue) << 6
+                        | rgb(pixels, index + 6 * stride, red, green, blue) << 3
+                        | rgb(pixels, index + 7 * stride, red, green, blue);
+                dst[out] = (byte) (bits >>> 16);
+                dst[out + 1] = (byte) (bits >>> 8);
+                dst[out + 2] = (byte) bits;
+            }
+            long done = head + groups * 24;
+            readSlots(dst, dstBit + done, bitCount - done, firstSlot + done);
+        }
+
+        /** The R, G and B LSBs of the pixel at {@code index} as a 3-bit value, R first. */
+        private static int rgb(byte[] pixels, int index, int red, int green, int blue) {
+            return (pixels[index + red] & 1) << 2 | (pixels[index + green] & 1) << 1 | pixels[index + blue] & 1;
+        }
+
+        /** Default layout, one slot at a time. */
+        private void readSlots(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            int channel = (int) (firstSlot % CHANNELS);
+            int index = (int) (firstSlot / CHANNELS) * pixelStride;
+            long bit = dstBit;
+            long end = dstBit + bitCount;
+            while (bit < end) {
+                for (; channel < CHANNELS && bit < end; channel++, bit++) {
+                    dst[(int) (bit >>> 3)] |= (byte) ((data[index + channelOffsets[channel]] & 1) << (7 - (int) (bit & 7)));
+                }
+                index += pixelStride;
+                channel = 0;
+            }
+        }
+
+        @Override
+        void writeBit(long slot, int bit) {
+            int within = (int) (slot % slotsPerPixel);
+            int at = (int) (slot / slotsPerPixel) * pixelStride + layoutOffsets[within / depth];
+            int shift = bitOfSample(within);
+            data[at] = (byte) ((data[at] & ~(1 << shift)) | (bit << shift));
+        }
+
+        @Override
+        int readBit(long slot) {
+            int within = (int) (slot % slotsPerPixel);
+            int at = (int) (slot / slotsPerPixel) * pixelStride + layoutOffsets[within / depth];
+            return (data[at] >>> bitOfSample(within)) & 1;
+        }
+
+        /** k-LSB / alpha layouts: up to {@code depth} bits are moved per sample at once. */
+        private void writeLayered(byte[] src, long srcBit, long bitCount, long firstSlot) {
+            int index = (int) (firstSlot / slotsPerPixel) * pixelStride;
+            int within = (int) (firstSlot % slotsPerPixel);
+            long bit = srcBit;
+            long end = srcBit + bitCount;
+            while (bit < end) {
+                while (within < slotsPerPixel && bit < end) {
+                    int channel = within / depth;
+                    int used = within - channel * depth;
+                    int count = (int) Math.min(depth - used, end - bit);
+                    int shift = depth - used - count;
+                    int mask = ((1 << count) - 1) << shift;
+                    int at = index + layoutOffsets[channel];
+                    data[at] = (byte) ((data[at] & ~mask) | (bitsAt(src, bit, count) << shift));
+                    within += count;
+                    bit += count;
+                }
+                index += pixelStride;
+                within = 0;
+            }
+        }
+
+        private void readLayered(byte[] dst, long dstBit, long bitCount, long firstSlot) {
+            int index = (int) (firstSlot / slotsPerPixel) * pixelStride;
+            int within = (int) (firstSlot % slotsPerPixel);
+            long bit = dstBit;
+            long end = dstBit + bitCount;
+            while (bit < end) {
+                while (within < slotsPerPixel && bit < end) {
+                    int channel = within / depth;
+                    int used = within - channel * depth;
+                    int count = (int) Math.min(depth - used, end - bit);
+                    int shift = depth - used - count;
+                    orBits(dst, bit, count, (data[index + layoutOffsets[channel]] >>> shift) & ((1 << count) - 1));
+                    within += count;
+                    bit += count;
+                }
+                index += pixelStride;
+                within = 0;
+            }
+        }
+    }
+}
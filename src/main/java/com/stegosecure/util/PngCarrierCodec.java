@@ -0,0 +1,60 @@
+package com.stegosecure.util;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * PNG: the header is the IHDR chunk, 8-bit RGB/RGBA files are streamed instead of decoded, and
+ * decoded images are written back with {@link PngImageEncoder}.
+ */
+final class PngCarrierCodec implements CarrierCodec {
+
+    @Override
+    public String getName() {
+        return "png";
+    }
+
+    @Override
+    public String getMediaType() {
+        return "image/png";
+    }
+
+    @Override
+    public String getExtension() {
+        return "png";
+    }
+
+    @Override
+    public boolean matches(byte[] signature, int length) {
+        return CarrierCodecs.startsWith(signature, length, PngChunkReader.SIGNATURE);
+    }
+
+    /** Reads the signature and IHDR chunk; nothing past the first {@link PngHeader#LENGTH} bytes. */
+    @Override
+    public CarrierInfo readInfo(InputStream image) throws IOException {
+        return CarrierInfo.of(this, PngHeader.read(image));
+    }
+
+    /** ImageIO already decodes 8-bit RGB and RGBA PNGs to TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR. */
+    @Override
+    public BufferedImage decode(InputStream image) throws IOException {
+        BufferedImage decoded = ImageIO.read(image);
+        if (decoded == null) {
+            throw new IllegalArgumentException("❌ Invalid PNG: the image could not be decoded");
+        }
+        return decoded;
+    }
+
+    @Override
+    public void encode(BufferedImage image, OutputStream out, PngEncoderSettings settings) throws IOException {
+        PngImageEncoder.write(image, out, settings);
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,136 @@
+package com.stegosecure.util;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential reader over the chunks of a PNG stream. Chunk data is streamed rather than
+ * buffered, and every chunk's CRC is verified when the chunk is finished.
+ */
+final class PngChunkReader {
+    static final int IHDR = 0x49484452;
+    static final int IDAT = 0x49444154;
+    static final int IEND = 0x49454E44;
+    static final int ICCP = 0x69434350;
+
+    static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final DataInputStream in;
+    private final CRC32 crc = new CRC32();
+    private int type;
+    private int length;
+    private int remaining;
+    private int storedCrc;
+
+    PngChunkReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    void readSignature() throws IOException {
+        byte[] signature = new byte[SIGNATURE.length];
+        try {
+            in.readFully(signature);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("❌ Invalid PNG: file is truncated");
+        }
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (signature[i] != SIGNATURE[i]) {
+                throw new IllegalArgumentException("❌ Invalid image format! Please use PNG files.");
+            }
+        }
+    }
+
+    /**
+     * Reads the length and type of the next chunk.
+     * @return the chunk type as a big-endian int
+     */
+    int nextChunk() throws IOException {
+        try {
+            length = in.readInt();
+            type = in.readInt();
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("❌ Invalid PNG: file is truncated");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("❌ Invalid PNG: negative chunk length");
+        }
+        remaining = length;
+        crc.reset();
+        crc.update(type >>> 24);
+        crc.update(type >>> 16);
+        crc.update(type >>> 8);
+        crc.update(type);
+        return type;
+    }
+
+    int type() {
+        return type;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int remaining() {
+        return remaining;
+    }
+
+    /**
+     * Reads from the current chunk's data.
+     * @return bytes read, or -1 once the chunk data is exhausted
+     */
+    int read(byte[] buffer, int offset, int count) throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = in.read(buffer, offset, Math.min(count, remaining));
+        if (read < 0) {
+            throw new IllegalArgumentException("❌ Invalid PNG: file is truncated");
+        }
+        crc.update(buffer, offset, read);
+        remaining -= read;
+        return read;
+    }
+
+    void readFully(byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = read(buffer, offset, buffer.length - offset);
+            if (read < 0) {
+                throw new IllegalArgumentException("❌ Invalid PNG: chunk is shorter than expected");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Skips any unread data of the current chunk and verifies its CRC.
+     */
+    void finishChunk() throws IOException {
+        byte[] skip = new byte[Math.min(remaining, 8192)];
+        while (remaining > 0) {
+            read(skip, 0, skip.length);
+        }
+        try {
+            storedCrc = in.readInt();
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("❌ Invalid PNG: file is truncated");
+        }
+        if (storedCrc != (int) crc.getValue()) {
+            throw new IllegalArgumentException("❌ Invalid PNG: CRC mismatch in chunk " + typeName(type));
+        }
+    }
+
+    /** CRC of the most recently finished chunk, as stored in the file. */
+    int storedCrc() {
+        return storedCrc;
+    }
+
+    static String typeName(int type) {
+        return new String(new char[]{
+                (char) (type >>> 24 & 0xFF), (char) (type >>> 16 & 0xFF), (char) (type >>> 8 & 0xFF), (char) (type & 0xFF)});
+    }
+}
@@ -0,0 +1,72 @@
+package com.stegosecure.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * Writes PNG chunks to an output stream, computing each chunk's CRC.
+ */
+final class PngChunkWriter {
+    private final DataOutputStream out;
+    private final CRC32 crc = new CRC32();
+
+    PngChunkWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    void writeSignature() throws IOException {
+        out.write(PngChunkReader.SIGNATURE);
+    }
+
+    void writeChunk(int type, byte[] data, int offset, int length) throws IOException {
+        crc.reset();
+        crc.update(type >>> 24);
+        crc.update(type >>> 16);
+        crc.update(type >>> 8);
+        crc.update(type);
+        crc.update(data, offset, length);
+        out.writeInt(length);
+        out.writeInt(type);
+        out.write(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Copies the current chunk of {@code reader} through unchanged, verifying its CRC on the way.
+     */
+    void copyChunk(PngChunkReader reader, byte[] buffer) throws IOException {
+        out.writeInt(reader.length());
+        out.writeInt(reader.type());
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        reader.finishChunk();
+        out.writeInt(reader.storedCrc());
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Stream that turns every write into one IDAT chunk; wrap it in a buffer to control chunk size.
+     */
+    OutputStream idatStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > 0) {
+                    writeChunk(PngChunkReader.IDAT, b, off, len);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.stegosecure.util;
+
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * Deflate level and scanline filter strategy used when writing a stego PNG.
+ *
+ * Three named profiles cover the usual trade-offs:
+ * <ul>
+ *   <li>{@code fast}: level 1, carrier filters kept (no search), tail at BEST_SPEED</li>
+ *   <li>{@code balanced}: zlib default level, carrier filters kept, tail at BEST_SPEED</li>
+ *   <li>{@code small}: level 9, adaptive filter search on every row</li>
+ * </ul>
+ */
+public final class PngEncoderSettings {
+
+    public static final PngEncoderSettings FAST =
+            new PngEncoderSettings("fast", Deflater.BEST_SPEED, PngFilterStrategy.PRESERVE, true);
+    public static final PngEncoderSettings BALANCED =
+            new PngEncoderSettings("balanced", Deflater.DEFAULT_COMPRESSION, PngFilterStrategy.PRESERVE, true);
+    public static final PngEncoderSettings SMALL =
+            new PngEncoderSettings("small", Deflater.BEST_COMPRESSION, PngFilterStrategy.ADAPTIVE, false);
+
+    public static final PngEncoderSettings DEFAULT = BALANCED;
+
+    private final String profile;
+    private final int compressionLevel;
+    private final PngFilterStrategy filterStrategy;
+    private final boolean fastTail;
+
+    public PngEncoderSettings(String profile, int compressionLevel, PngFilterStrategy filterStrategy, boolean fastTail) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("PNG compression level must be 0-9 or -1, got " + compressionLevel);
+        }
+        this.profile = profile;
+        this.compressionLevel = compressionLevel;
+        this.filterStrategy = filterStrategy;
+        this.fastTail = fastTail;
+    }
+
+    /**
+     * Looks up a named profile.
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static PngEncoderSettings forProfile(String name) {
+        switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "fast": return FAST;
+            case "balanced": return BALANCED;
+            case "small": return SMALL;
+            default: throw new IllegalArgumentException("Unknown PNG encoder profile '" + name + "' (use fast, balanced or small)");
+        }
+    }
+
+    public PngEncoderSettings withCompressionLevel(int level) {
+        return new PngEncoderSettings(profile, level, filterStrategy, fastTail);
+    }
+
+    public PngEncoderSettings withFilterStrategy(PngFilterStrategy strategy) {
+        return new PngEncoderSettings(profile, compressionLevel, strategy, fastTail);
+    }
+
+    public PngEncoderSettings withFastTail(boolean enabled) {
+        return new PngEncoderSettings(profile, compressionLevel, filterStrategy, enabled);
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public PngFilterStrategy getFilterStrategy() {
+        return filterStrategy;
+    }
+
+    /**
+     * Whether the scanlines after the payload, which are copied unchanged, are deflated at
+     * BEST_SPEED. Only applies with {@link PngFilterStrategy#PRESERVE}; any other strategy
+     * re-filters every row.
+     */
+    public boolean isFastTail() {
+        return fastTail;
+    }
+
+    @Override
+    public String toString() {
+        return profile + "(level=" + compressionLevel + ", filter=" + filterStrategy + ", fastTail=" + fastTail + ")";
+    }
+}
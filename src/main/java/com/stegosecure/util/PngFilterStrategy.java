@@ -0,0 +1,16 @@
+package com.stegosecure.util;
+
+/**
+ * How the stego PNG writer chooses the filter for each scanline.
+ */
+public enum PngFilterStrategy {
+    /** Keep the carrier's filter type for every row (None when encoding a decoded image). No search. */
+    PRESERVE,
+    NONE,
+    SUB,
+    UP,
+    AVERAGE,
+    PAETH,
+    /** Try all five filters per row and keep the smallest sum of absolute differences. */
+    ADAPTIVE
+}
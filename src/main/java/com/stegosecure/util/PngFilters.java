@@ -0,0 +1,146 @@
+package com.stegosecure.util;
+
+/**
+ * PNG scanline filters (None, Sub, Up, Average, Paeth).
+ *
+ * Rows are {@code byte[]} with the filter type at index 0 and the scanline from index 1,
+ * so the "previous row" of the first scanline is simply an all-zero array.
+ */
+final class PngFilters {
+    static final int NONE = 0;
+    static final int SUB = 1;
+    static final int UP = 2;
+    static final int AVERAGE = 3;
+    static final int PAETH = 4;
+
+    private PngFilters() {
+    }
+
+    /**
+     * Reverses the filter recorded in {@code filtered[0]} into {@code raw}.
+     */
+    static void unfilter(byte[] filtered, byte[] raw, byte[] previousRaw, int bpp) {
+        int type = filtered[0] & 0xFF;
+        int length = filtered.length;
+        raw[0] = 0;
+        switch (type) {
+            case NONE:
+                System.arraycopy(filtered, 1, raw, 1, length - 1);
+                break;
+            case SUB:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    raw[i] = (byte) (filtered[i] + left);
+                }
+                break;
+            case UP:
+                for (int i = 1; i < length; i++) {
+                    raw[i] = (byte) (filtered[i] + previousRaw[i]);
+                }
+                break;
+            case AVERAGE:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    raw[i] = (byte) (filtered[i] + ((left + (previousRaw[i] & 0xFF)) >>> 1));
+                }
+                break;
+            case PAETH:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    int upLeft = i > bpp ? previousRaw[i - bpp] & 0xFF : 0;
+                    raw[i] = (byte) (filtered[i] + paeth(left, previousRaw[i] & 0xFF, upLeft));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("❌ Invalid PNG: unknown filter type " + type);
+        }
+    }
+
+    /**
+     * Applies filter {@code type} to {@code raw} and writes the filtered row (type byte included) to {@code out}.
+     */
+    static void filter(int type, byte[] raw, byte[] previousRaw, int bpp, byte[] out) {
+        int length = raw.length;
+        out[0] = (byte) type;
+        switch (type) {
+            case NONE:
+                System.arraycopy(raw, 1, out, 1, length - 1);
+                break;
+            case SUB:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) (raw[i] - left);
+                }
+                break;
+            case UP:
+                for (int i = 1; i < length; i++) {
+                    out[i] = (byte) (raw[i] - previousRaw[i]);
+                }
+                break;
+            case AVERAGE:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) (raw[i] - ((left + (previousRaw[i] & 0xFF)) >>> 1));
+                }
+                break;
+            case PAETH:
+                for (int i = 1; i < length; i++) {
+                    int left = i > bpp ? raw[i - bpp] & 0xFF : 0;
+                    int upLeft = i > bpp ? previousRaw[i - bpp] & 0xFF : 0;
+                    out[i] = (byte) (raw[i] - paeth(left, previousRaw[i] & 0xFF, upLeft));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown PNG filter type " + type);
+        }
+    }
+
+    /**
+     * Filters {@code raw} into {@code out} as the strategy dictates.
+     * @param carrierType filter type the row had in the carrier, used by PRESERVE
+     * @param scratch row-sized buffer, only needed for ADAPTIVE
+     */
+    static void filter(PngFilterStrategy strategy, int carrierType, byte[] raw, byte[] previousRaw, int bpp,
+                       byte[] out, byte[] scratch) {
+        switch (strategy) {
+            case PRESERVE: filter(carrierType, raw, previousRaw, bpp, out); break;
+            case NONE: filter(NONE, raw, previousRaw, bpp, out); break;
+            case SUB: filter(SUB, raw, previousRaw, bpp, out); break;
+            case UP: filter(UP, raw, previousRaw, bpp, out); break;
+            case AVERAGE: filter(AVERAGE, raw, previousRaw, bpp, out); break;
+            case PAETH: filter(PAETH, raw, previousRaw, bpp, out); break;
+            case ADAPTIVE: filterAdaptive(raw, previousRaw, bpp, out, scratch); break;
+            default: throw new IllegalArgumentException("Unknown filter strategy " + strategy);
+        }
+    }
+
+    /**
+     * The libpng heuristic: pick the filter whose output has the smallest sum of absolute
+     * values when read as signed bytes.
+     */
+    private static void filterAdaptive(byte[] raw, byte[] previousRaw, int bpp, byte[] out, byte[] scratch) {
+        long best = Long.MAX_VALUE;
+        for (int type = NONE; type <= PAETH; type++) {
+            filter(type, raw, previousRaw, bpp, scratch);
+            long sum = 0;
+            for (int i = 1; i < scratch.length && sum < best; i++) {
+                sum += Math.abs(scratch[i]);
+            }
+            if (sum < best) {
+                best = sum;
+                System.arraycopy(scratch, 0, out, 0, scratch.length);
+            }
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int estimate = left + up - upLeft;
+        int distanceLeft = Math.abs(estimate - left);
+        int distanceUp = Math.abs(estimate - up);
+        int distanceUpLeft = Math.abs(estimate - upLeft);
+        if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+            return left;
+        }
+        return distanceUp <= distanceUpLeft ? up : upLeft;
+    }
+}
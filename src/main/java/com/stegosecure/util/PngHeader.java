@@ -0,0 +1,130 @@
+package com.stegosecure.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The PNG signature and IHDR chunk, read without touching any pixel data.
+ */
+public final class PngHeader {
+    public static final int COLOR_GRAY = 0;
+    public static final int COLOR_RGB = 2;
+    public static final int COLOR_PALETTE = 3;
+    public static final int COLOR_GRAY_ALPHA = 4;
+    public static final int COLOR_RGBA = 6;
+
+    /** Signature plus the complete IHDR chunk. */
+    public static final int LENGTH = 8 + 4 + 4 + 13 + 4;
+
+    private final int width;
+    private final int height;
+    private final int bitDepth;
+    private final int colorType;
+    private final int interlaceMethod;
+    private final byte[] ihdrData;
+
+    private PngHeader(byte[] ihdrData) {
+        this.ihdrData = ihdrData;
+        this.width = readInt(ihdrData, 0);
+        this.height = readInt(ihdrData, 4);
+        this.bitDepth = ihdrData[8] & 0xFF;
+        this.colorType = ihdrData[9] & 0xFF;
+        this.interlaceMethod = ihdrData[12] & 0xFF;
+    }
+
+    /**
+     * Reads the signature and IHDR chunk from the start of a PNG stream.
+     * The stream is left positioned at the chunk following IHDR.
+     * @throws IllegalArgumentException if the data is not a well-formed PNG header
+     */
+    public static PngHeader read(InputStream in) throws IOException {
+        PngChunkReader reader = new PngChunkReader(in);
+        reader.readSignature();
+        return read(reader);
+    }
+
+    static PngHeader read(PngChunkReader reader) throws IOException {
+        if (reader.nextChunk() != PngChunkReader.IHDR || reader.length() != 13) {
+            throw new IllegalArgumentException("❌ Invalid PNG: missing IHDR chunk");
+        }
+        byte[] data = new byte[13];
+        reader.readFully(data);
+        reader.finishChunk();
+
+        PngHeader header = new PngHeader(data);
+        if (header.width <= 0 || header.height <= 0) {
+            throw new IllegalArgumentException("❌ Invalid PNG: bad dimensions " + header.width + "x" + header.height);
+        }
+        if ((data[10] & 0xFF) != 0 || (data[11] & 0xFF) != 0 || header.interlaceMethod > 1) {
+            throw new IllegalArgumentException("❌ Invalid PNG: unknown compression, filter or interlace method");
+        }
+        if (header.channels() == 0 || !isValidBitDepth(header.colorType, header.bitDepth)) {
+            throw new IllegalArgumentException("❌ Invalid PNG: bit depth " + header.bitDepth
+                    + " is not allowed for colour type " + header.colorType);
+        }
+        return header;
+    }
+
+    private static boolean isValidBitDepth(int colorType, int bitDepth) {
+        switch (colorType) {
+            case COLOR_GRAY: return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+            case COLOR_PALETTE: return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+            default: return bitDepth == 8 || bitDepth == 16;
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBitDepth() {
+        return bitDepth;
+    }
+
+    public int getColorType() {
+        return colorType;
+    }
+
+    public boolean isInterlaced() {
+        return interlaceMethod != 0;
+    }
+
+    public boolean hasAlpha() {
+        return colorType == COLOR_RGBA || colorType == COLOR_GRAY_ALPHA;
+    }
+
+    /** Samples per pixel for the colour type. */
+    public int channels() {
+        switch (colorType) {
+            case COLOR_GRAY: return 1;
+            case COLOR_RGB: return 3;
+            case COLOR_PALETTE: return 1;
+            case COLOR_GRAY_ALPHA: return 2;
+            case COLOR_RGBA: return 4;
+            default: return 0;
+        }
+    }
+
+    /** Bytes per complete pixel, rounded up to 1 as the PNG filters require. */
+    int filterBytesPerPixel() {
+        return Math.max(1, channels() * bitDepth / 8);
+    }
+
+    /** Bytes in one unfiltered scanline, excluding the filter type byte. */
+    long rowBytes() {
+        return ((long) width * channels() * bitDepth + 7) / 8;
+    }
+
+    byte[] ihdrData() {
+        return ihdrData.clone();
+    }
+}
@@ -0,0 +1,73 @@
+package com.stegosecure.util;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a BufferedImage as an 8-bit RGB or RGBA PNG with configurable deflate level and
+ * scanline filter strategy. Used for stego-images that could not be streamed.
+ */
+public final class PngImageEncoder {
+    private static final int IO_BUFFER = 64 * 1024;
+
+    private PngImageEncoder() {
+    }
+
+    /**
+     * @param image an image produced by {@link ImageSteganographyUtil#hideMessage(BufferedImage, String)}
+     */
+    public static void write(BufferedImage image, OutputStream out, PngEncoderSettings settings) throws IOException {
+        PixelRaster raster = PixelRaster.of(image);
+        if (raster == null) {
+            raster = PixelRaster.of(PixelRaster.copyOf(image));
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int samples = raster.hasAlpha() ? 4 : 3;
+        long rowBytes = (long) width * samples;
+        if (rowBytes >= Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("❌ Image is too wide to encode as PNG: " + width + " pixels");
+        }
+
+        PngChunkWriter writer = new PngChunkWriter(out);
+        writer.writeSignature();
+        byte[] ihdr = {
+                (byte) (width >>> 24), (byte) (width >>> 16), (byte) (width >>> 8), (byte) width,
+                (byte) (height >>> 24), (byte) (height >>> 16), (byte) (height >>> 8), (byte) height,
+                8, (byte) (samples == 4 ? PngHeader.COLOR_RGBA : PngHeader.COLOR_RGB), 0, 0, 0
+        };
+        writer.writeChunk(PngChunkReader.IHDR, ihdr, 0, ihdr.length);
+
+        int rowLength = (int) rowBytes + 1;
+        byte[] raw = new byte[rowLength];
+        byte[] previousRaw = new byte[rowLength];
+        byte[] filtered = new byte[rowLength];
+        PngFilterStrategy strategy = settings.getFilterStrategy();
+        byte[] scratch = strategy == PngFilterStrategy.ADAPTIVE ? new byte[rowLength] : null;
+
+        Deflater deflater = new Deflater(settings.getCompressionLevel());
+        try {
+            BufferedOutputStream chunks = new BufferedOutputStream(writer.idatStream(), IO_BUFFER);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(chunks, deflater, IO_BUFFER);
+            for (int y = 0; y < height; y++) {
+                raster.copyRow(y, raw, 1);
+                // A decoded image has no carrier filter to preserve, so PRESERVE means None here
+                PngFilters.filter(strategy, PngFilters.NONE, raw, previousRaw, samples, filtered, scratch);
+                compressed.write(filtered);
+                byte[] swap = previousRaw;
+                previousRaw = raw;
+                raw = swap;
+            }
+            compressed.finish();
+            chunks.flush();
+        } finally {
+            deflater.end();
+        }
+        writer.writeChunk(PngChunkReader.IEND, new byte[0], 0, 0);
+        writer.flush();
+    }
+}
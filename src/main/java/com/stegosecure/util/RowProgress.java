@@ -0,0 +1,13 @@
+package com.stegosecure.util;
+
+/**
+ * Receives the number of image rows processed so far while a stego-image is written.
+ * Called from the writing thread, with non-decreasing values up to the image height.
+ */
+@FunctionalInterface
+public interface RowProgress {
+
+    RowProgress NONE = rows -> { };
+
+    void rowsProcessed(int rows);
+}
@@ -0,0 +1,101 @@
+package com.stegosecure.util;
+
+/**
+ * A keyed bijection on {@code [0, size)}: payload bit {@code i} goes to slot {@code apply(i)}.
+ *
+ * A balanced four-round Feistel network permutes the smallest even-width bit domain covering
+ * {@code size}, and cycle-walking re-applies it until the result falls inside the range.
+ * That domain is less than four times {@code size}, so a lookup takes a few rounds in
+ * expectation, in either direction, without any table: the state is four round keys whatever
+ * the image size. The round function is a 64-bit mixer, not a cipher; the permutation only has
+ * to make the positions unpredictable without the key, the payload itself is already encrypted.
+ */
+final class SlotPermutation {
+
+    /** Bytes of key material consumed: one 64-bit key per round. */
+    static final int KEY_BYTES = 32;
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    /**
+     * @param key at least {@link #KEY_BYTES} bytes of secret key material
+     * @param size number of slots to permute
+     */
+    SlotPermutation(byte[] key, long size) {
+        if (key.length < KEY_BYTES) {
+            throw new IllegalArgumentException("❌ Scatter key needs " + KEY_BYTES + " bytes, got " + key.length);
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("❌ Negative permutation size: " + size);
+        }
+        this.size = size;
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, size - 1));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = (1L << halfBits) - 1;
+        for (int round = 0; round < ROUNDS; round++) {
+            long roundKey = 0;
+            for (int i = 0; i < 8; i++) {
+                roundKey = (roundKey << 8) | (key[round * 8 + i] & 0xFF);
+            }
+            // Different image sizes get unrelated permutations under the same key
+            roundKeys[round] = roundKey ^ mix(size + round);
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /** The slot of element {@code index}, both relative to the start of the range. */
+    long apply(long index) {
+        long value = encrypt(index);
+        while (value >= size) {
+            value = encrypt(value);
+        }
+        return value;
+    }
+
+    /** The element stored at slot {@code slot}: {@code inverse(apply(i)) == i}. */
+    long inverse(long slot) {
+        long value = decrypt(slot);
+        while (value >= size) {
+            value = decrypt(value);
+        }
+        return value;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (mix(right ^ roundKeys[round]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long decrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long previous = right ^ (mix(left ^ roundKeys[round]) & halfMask);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /** The SplitMix64 finalizer: every input bit affects every output bit. */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
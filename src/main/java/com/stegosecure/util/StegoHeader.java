@@ -0,0 +1,49 @@
+package com.stegosecure.util;
+
+/**
+ * The header at the start of an embedded bitstream; see {@link ImageSteganographyUtil} for the layout.
+ */
+public final class StegoHeader {
+    private final int version;
+    private final int flags;
+    private final int payloadLength;
+
+    StegoHeader(int version, int flags, int payloadLength) {
+        this.version = version;
+        this.flags = flags;
+        this.payloadLength = payloadLength;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /** Payload size in bytes, excluding the header. */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /** Whether the payload is raw bytes rather than text. */
+    public boolean isRawPayload() {
+        return (flags & ImageSteganographyUtil.FLAG_RAW_PAYLOAD) != 0;
+    }
+
+    /** Whether the payload is a {@link StreamingAesGcm} encrypted file rather than a message. */
+    public boolean isEncryptedFile() {
+        return (flags & ImageSteganographyUtil.FLAG_ENCRYPTED_FILE) != 0;
+    }
+
+    /** Whether the payload bits are scattered with a keyed permutation instead of following the slot order. */
+    public boolean isScattered() {
+        return (flags & ImageSteganographyUtil.FLAG_SCATTERED) != 0;
+    }
+
+    /** How the payload bits are spread over the pixels. */
+    public LsbLayout getLayout() {
+        return LsbLayout.fromFlags(flags);
+    }
+}
@@ -0,0 +1,277 @@
+package com.stegosecure.util;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+/**
+ * Authenticated encryption of large payloads as a stream of AES-GCM segments.
+ *
+ * Layout of the ciphertext:
+ * <pre>
+ *   salt         16 bytes  PBKDF2 salt for the per-message key
+ *   nonce prefix  7 bytes  random per message
+ *   segments             each up to {@link #SEGMENT_SIZE} plaintext bytes followed by a 16-byte GCM tag
+ * </pre>
+ * Segment {@code i} uses the nonce {@code prefix || i (4 bytes, big-endian) || last (1 byte)}, so
+ * segments cannot be reordered, dropped or truncated without a tag failing. A single GCM
+ * message would not do: the JDK holds back all decrypted output until the final tag has
+ * been checked, so memory would grow with the payload. Per segment it stays at one
+ * segment in each direction, however large the file.
+ */
+public final class StreamingAesGcm {
+    static final int SALT_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int HEADER_LENGTH = SALT_LENGTH + NONCE_PREFIX_LENGTH;
+    static final int TAG_LENGTH = 16;
+    static final int SEGMENT_SIZE = 64 * 1024;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_LENGTH = 12;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Re-initialised for every segment; a segment is read in full first, so another stream on the
+    // same thread never runs between init and doFinal
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES provider unavailable: " + e.getMessage(), e);
+        }
+    });
+
+    private StreamingAesGcm() {
+    }
+
+    /**
+     * Exact ciphertext size for a plaintext of the given size; an empty plaintext is one empty segment.
+     */
+    public static long ciphertextLength(long plaintextLength) {
+        return HEADER_LENGTH + plaintextLength + segmentCount(plaintextLength) * TAG_LENGTH;
+    }
+
+    /**
+     * Largest plaintext whose ciphertext fits in {@code ciphertextCapacity} bytes, or -1 if none does.
+     */
+    public static long maxPlaintextLength(long ciphertextCapacity) {
+        long available = ciphertextCapacity - HEADER_LENGTH;
+        if (available < TAG_LENGTH) {
+            return -1;
+        }
+        long fullSegments = available / (SEGMENT_SIZE + TAG_LENGTH);
+        long rest = available % (SEGMENT_SIZE + TAG_LENGTH);
+        return fullSegments * SEGMENT_SIZE + Math.max(0, rest - TAG_LENGTH);
+    }
+
+    /**
+     * Plaintext size of a well-formed ciphertext of the given size.
+     */
+    public static long plaintextLength(long ciphertextLength) {
+        long bodyLength = ciphertextLength - HEADER_LENGTH;
+        long segments = (bodyLength + SEGMENT_SIZE + TAG_LENGTH - 1) / (SEGMENT_SIZE + TAG_LENGTH);
+        return bodyLength - Math.max(1, segments) * TAG_LENGTH;
+    }
+
+    /**
+     * Returns a stream of exactly {@link #ciphertextLength(long)} bytes encrypting {@code plaintext}.
+     * Reading fails if {@code plaintext} does not hold exactly {@code plaintextLength} bytes.
+     */
+    public static InputStream encrypt(InputStream plaintext, long plaintextLength, String key) throws Exception {
+        byte[] header = new byte[HEADER_LENGTH];
+        RANDOM.nextBytes(header);
+        SecretKey secretKey = AESUtil.deriveStreamKey(key, header, 0, SALT_LENGTH);
+        return new EncryptingStream(plaintext, plaintextLength, secretKey, header);
+    }
+
+    /**
+     * Returns the plaintext of {@code ciphertext}, which holds {@code ciphertextLength} bytes.
+     * The first segment is decrypted before this returns, so a wrong key fails here rather than
+     * part-way through the caller's output; a later tampered segment fails the read with an IOException.
+     */
+    public static InputStream decrypt(InputStream ciphertext, long ciphertextLength, String key) throws Exception {
+        long bodyLength = ciphertextLength - HEADER_LENGTH;
+        long lastSegment = bodyLength % (SEGMENT_SIZE + TAG_LENGTH);
+        if (bodyLength < TAG_LENGTH || (lastSegment != 0 && lastSegment < TAG_LENGTH)) {
+            throw new IllegalArgumentException("❌ Corrupt encrypted file: invalid length " + ciphertextLength);
+        }
+        byte[] header = new byte[HEADER_LENGTH];
+        readFully(ciphertext, header, 0, HEADER_LENGTH);
+        SecretKey secretKey = AESUtil.deriveStreamKey(key, header, 0, SALT_LENGTH);
+        DecryptingStream stream = new DecryptingStream(ciphertext, bodyLength, secretKey, header);
+        try {
+            stream.nextSegment();
+        } catch (IOException e) {
+            throw new Exception("#### AES Decryption failed: " + e.getMessage(), e);
+        }
+        return stream;
+    }
+
+    private static long segmentCount(long plaintextLength) {
+        return Math.max(1, (plaintextLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+    }
+
+    private static Cipher initCipher(int mode, SecretKey key, byte[] header, int segment, boolean last)
+            throws GeneralSecurityException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(header, SALT_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (segment >>> 24);
+        nonce[8] = (byte) (segment >>> 16);
+        nonce[9] = (byte) (segment >>> 8);
+        nonce[10] = (byte) segment;
+        nonce[11] = (byte) (last ? 1 : 0);
+        Cipher cipher = CIPHER.get();
+        cipher.init(mode, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+        return cipher;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) {
+                throw new EOFException("❌ Stream ended " + length + " bytes early");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    /**
+     * Serves bytes from one segment buffer, refilling it a segment at a time.
+     */
+    private abstract static class SegmentStream extends InputStream {
+        protected final byte[] segment;
+        protected int position;
+        protected int limit;
+
+        SegmentStream(int capacity) {
+            this.segment = new byte[capacity];
+        }
+
+        /** Fills {@link #segment}; returns false at the end of the stream. */
+        abstract boolean nextSegment() throws IOException;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == limit) {
+                if (!nextSegment()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(segment, position, b, off, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private static final class EncryptingStream extends SegmentStream {
+        private final InputStream plaintext;
+        private final SecretKey key;
+        private final byte[] header;
+        private final int segments;
+        private long remaining;
+        private int index = -1; // -1 until the header has been served
+
+        EncryptingStream(InputStream plaintext, long plaintextLength, SecretKey key, byte[] header) {
+            super(Math.max(HEADER_LENGTH, SEGMENT_SIZE + TAG_LENGTH));
+            long segmentCount = segmentCount(plaintextLength);
+            if (segmentCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("❌ File too large to encrypt: " + plaintextLength + " bytes");
+            }
+            this.plaintext = plaintext;
+            this.remaining = plaintextLength;
+            this.key = key;
+            this.header = header;
+            this.segments = (int) segmentCount;
+        }
+
+        @Override
+        boolean nextSegment() throws IOException {
+            position = 0;
+            if (index < 0) {
+                System.arraycopy(header, 0, segment, 0, HEADER_LENGTH);
+                limit = HEADER_LENGTH;
+                index = 0;
+                return true;
+            }
+            if (index == segments) {
+                return false;
+            }
+            boolean last = index == segments - 1;
+            int segmentLength = (int) Math.min(SEGMENT_SIZE, remaining);
+            try {
+                readFully(plaintext, segment, 0, segmentLength);
+                Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, header, index, last);
+                limit = cipher.doFinal(segment, 0, segmentLength, segment, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("##### AES Encryption failed :  " + e.getMessage(), e);
+            }
+            remaining -= segmentLength;
+            index++;
+            if (last && plaintext.read() >= 0) {
+                throw new IOException("❌ File is longer than its declared size");
+            }
+            return true;
+        }
+    }
+
+    private static final class DecryptingStream extends SegmentStream {
+        private final InputStream ciphertext;
+        private final SecretKey key;
+        private final byte[] header;
+        private final int segments;
+        private long remaining;
+        private int index = -1;
+
+        DecryptingStream(InputStream ciphertext, long bodyLength, SecretKey key, byte[] header) {
+            super(SEGMENT_SIZE + TAG_LENGTH);
+            long segmentCount = (bodyLength + SEGMENT_SIZE + TAG_LENGTH - 1) / (SEGMENT_SIZE + TAG_LENGTH);
+            if (segmentCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("❌ Corrupt encrypted file: too many segments");
+            }
+            this.ciphertext = ciphertext;
+            this.remaining = bodyLength;
+            this.key = key;
+            this.header = header;
+            this.segments = (int) segmentCount;
+        }
+
+        @Override
+        boolean nextSegment() throws IOException {
+            if (index + 1 == segments) {
+                return false;
+            }
+            index++;
+            position = 0;
+            boolean last = index == segments - 1;
+            int segmentLength = (int) Math.min(SEGMENT_SIZE + TAG_LENGTH, remaining);
+            try {
+                readFully(ciphertext, segment, 0, segmentLength);
+                Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, header, index, last);
+                limit = cipher.doFinal(segment, 0, segmentLength, segment, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("❌ Encrypted file failed authentication in segment " + index
+                        + " (wrong key or modified image)", e);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("#### AES Decryption failed: " + e.getMessage(), e);
+            }
+            remaining -= segmentLength;
+            return true;
+        }
+    }
+}
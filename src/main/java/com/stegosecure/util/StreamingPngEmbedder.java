@@ -0,0 +1,485 @@
+package com.stegosecure.util;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Embeds LSB segments into an 8-bit, non-interlaced RGB/RGBA PNG one scanline at a time.
+ *
+ * Scanlines are inflated, unfiltered, modified and re-filtered while the output is being
+ * deflated, so no full decoded image is ever held in memory. With
+ * {@link PngFilterStrategy#PRESERVE} rows past the end of the payload keep their original
+ * filtered bytes; only the first of them is re-filtered, because its filter may refer to the
+ * modified row above. Any other strategy re-filters every row. A {@link ScatteredSegment}
+ * reaches almost every row, so it leaves little or no tail.
+ *
+ * The untouched tail is copied as inflated bytes without unfiltering. It cannot be spliced in
+ * still compressed: PNG image data is a single zlib stream whose back-references and Adler-32
+ * checksum span the modified head. Instead the tail can be re-deflated at
+ * {@link Deflater#BEST_SPEED}, which for the typical sub-kilobyte payload in a multi-megabyte
+ * carrier is where nearly all of the encoding time goes.
+ */
+final class StreamingPngEmbedder {
+    private static final int IO_BUFFER = 64 * 1024;
+
+    private StreamingPngEmbedder() {
+    }
+
+    /**
+     * Whether {@link #embed} can process an image with this header.
+     */
+    static boolean supports(PngHeader header) {
+        return header.getBitDepth() == 8 && !header.isInterlaced()
+                && (header.getColorType() == PngHeader.COLOR_RGB || header.getColorType() == PngHeader.COLOR_RGBA)
+                && header.rowBytes() < Integer.MAX_VALUE - 1;
+    }
+
+    /**
+     * Copies the PNG from {@code source} to {@code target}, writing each segment's bits into
+     * the R/G/B slots it covers. Segment bytes are read from their stream as the rows that
+     * carry them are reached, so a payload of any size is embedded with one row's worth of it
+     * in memory.
+     * @param segments bit sources, in slot order
+     * @param settings deflate level for the output and whether the untouched tail uses BEST_SPEED
+     */
+    static void embed(InputStream source, OutputStream target, Segment[] segments,
+                      PngEncoderSettings settings) throws IOException {
+        embed(source, target, segments, settings, RowProgress.NONE);
+    }
+
+    /**
+     * As above, reporting each row as it is written.
+     */
+    static void embed(InputStream source, OutputStream target, Segment[] segments,
+                      PngEncoderSettings settings, RowProgress progress) throws IOException {
+        PngChunkReader reader = new PngChunkReader(source);
+        reader.readSignature();
+        PngHeader header = PngHeader.read(reader);
+        if (!supports(header)) {
+            throw new IllegalArgumentException("❌ PNG layout not supported for streaming embedding");
+        }
+        for (Segment segment : segments) {
+            long availableSlots = (long) header.getWidth() * header.getHeight() * segment.layout.slotsPerPixel();
+            if (segment.endSlot > availableSlots) {
+                throw new IllegalArgumentException("❌ Message too large! Need " + segment.endSlot
+                        + " bits, but image only has " + availableSlots + " bits available");
+            }
+            if (segment.layout.usesAlpha() && header.channels() < 4) {
+                throw new IllegalArgumentException("❌ " + segment.layout + " needs an image with an alpha channel");
+            }
+        }
+
+        PngChunkWriter writer = new PngChunkWriter(target);
+        writer.writeSignature();
+        byte[] ihdr = header.ihdrData();
+        writer.writeChunk(PngChunkReader.IHDR, ihdr, 0, ihdr.length);
+
+        byte[] buffer = new byte[8192];
+        int type = reader.nextChunk();
+        while (type != PngChunkReader.IDAT) {
+            if (type == PngChunkReader.IEND) {
+                throw new IllegalArgumentException("❌ Invalid PNG: no image data");
+            }
+            passThrough(reader, writer, buffer);
+            type = reader.nextChunk();
+        }
+
+        IdatInputStream idat = new IdatInputStream(reader);
+        embedScanlines(header, idat, writer, segments, settings, progress);
+        idat.skipToEnd();
+
+        type = reader.type();
+        while (type != PngChunkReader.IEND) {
+            passThrough(reader, writer, buffer);
+            type = reader.nextChunk();
+        }
+        writer.copyChunk(reader, buffer);
+        writer.flush();
+    }
+
+    /**
+     * Copies an ancillary chunk. iCCP is dropped: an embedded ICC profile makes ImageIO colour-convert
+     * on read, which destroys the LSBs, and the ImageIO encoder never wrote one either.
+     */
+    private static void passThrough(PngChunkReader reader, PngChunkWriter writer, byte[] buffer) throws IOException {
+        if (reader.type() == PngChunkReader.ICCP) {
+            reader.finishChunk();
+        } else {
+            writer.copyChunk(reader, buffer);
+        }
+    }
+
+    private static void embedScanlines(PngHeader header, InputStream idat, PngChunkWriter writer,
+                                       Segment[] segments, PngEncoderSettings settings, RowProgress progress) throws IOException {
+        int width = header.getWidth();
+        int samples = header.channels();
+        int bpp = header.filterBytesPerPixel();
+        int rowLength = (int) header.rowBytes() + 1;
+
+        long lastChangedRow = -1;
+        for (Segment segment : segments) {
+            segment.bind(width, header.getHeight(), samples);
+            lastChangedRow = Math.max(lastChangedRow, segment.lastRow());
+        }
+        PngFilterStrategy strategy = settings.getFilterStrategy();
+        boolean preserve = strategy == PngFilterStrategy.PRESERVE;
+        // Rows with payload bits, plus the one after them that needs re-filtering
+        int headRows = preserve ? (int) Math.min(header.getHeight(), lastChangedRow + 2) : header.getHeight();
+
+        byte[] filtered = new byte[rowLength];
+        byte[] refiltered = new byte[rowLength];
+        byte[] scratch = strategy == PngFilterStrategy.ADAPTIVE ? new byte[rowLength] : null;
+        byte[] raw = new byte[rowLength];
+        byte[] previousRaw = new byte[rowLength];
+        byte[] modified = new byte[rowLength];
+        byte[] previousModified = new byte[rowLength];
+
+        Inflater inflater = new Inflater();
+        Deflater deflater = new Deflater(settings.getCompressionLevel());
+        try (InputStream scanlines = new InflaterInputStream(idat, inflater, IO_BUFFER)) {
+            BufferedOutputStream chunks = new BufferedOutputStream(writer.idatStream(), IO_BUFFER);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(chunks, deflater, IO_BUFFER);
+
+            boolean previousChanged = false;
+            boolean previousCopied = false;
+            for (int y = 0; y < headRows; y++) {
+                readRow(scanlines, filtered);
+                PngFilters.unfilter(filtered, raw, previousRaw, bpp);
+
+                boolean changed = y <= lastChangedRow;
+                boolean refilter = !preserve || changed || previousChanged;
+                if (refilter) {
+                    System.arraycopy(raw, 0, modified, 0, rowLength);
+                    if (changed) {
+                        for (Segment segment : segments) {
+                            segment.write(modified, y);
+                        }
+                    }
+                    byte[] above = previousCopied ? previousModified : previousRaw;
+                    PngFilters.filter(strategy, filtered[0] & 0xFF, modified, above, bpp, refiltered, scratch);
+                    compressed.write(refiltered);
+                } else {
+                    compressed.write(filtered);
+                }
+
+                byte[] swap = previousRaw;
+                previousRaw = raw;
+                raw = swap;
+                if (refilter) {
+                    swap = previousModified;
+                    previousModified = modified;
+                    modified = swap;
+                }
+                previousChanged = changed;
+                previousCopied = refilter;
+                progress.rowsProcessed(y + 1);
+            }
+
+            long tailBytes = (long) (header.getHeight() - headRows) * rowLength;
+            if (tailBytes > 0) {
+                if (settings.isFastTail()) {
+                    deflater.setLevel(Deflater.BEST_SPEED);
+                }
+                copyRows(scanlines, compressed, headRows, header.getHeight(), rowLength, progress);
+            }
+            compressed.finish();
+            chunks.flush();
+        } finally {
+            inflater.end();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Payload bits destined for a range of slots, written row by row as the embedder reaches them.
+     */
+    abstract static class Segment {
+        protected final LsbLayout layout;
+        protected final long firstSlot;
+        protected final long endSlot; // the image needs at least this many slots
+
+        protected int width;
+        protected int height;
+        protected int samples;
+        protected long rowSlots;
+        private boolean bgr;
+        // The embedder alternates between two row buffers; keep a raster view of each
+        private byte[] rowA;
+        private PixelRaster rasterA;
+        private byte[] rowB;
+        private PixelRaster rasterB;
+
+        Segment(LsbLayout layout, long firstSlot, long bitCount) {
+            this.layout = layout;
+            this.firstSlot = firstSlot;
+            this.endSlot = firstSlot + bitCount;
+        }
+
+        void bind(int imageWidth, int imageHeight, int samplesPerPixel) {
+            this.width = imageWidth;
+            this.height = imageHeight;
+            this.samples = samplesPerPixel;
+            this.rowSlots = (long) imageWidth * layout.slotsPerPixel();
+        }
+
+        /**
+         * Binds to rows of B, G, R byte triples from index 0, as in a 24-bit BMP, instead of
+         * PNG scanlines behind their filter byte.
+         */
+        void bindBgr(int imageWidth, int imageHeight) {
+            bgr = true;
+            bind(imageWidth, imageHeight, PixelRaster.CHANNELS);
+        }
+
+        /** Last row holding bits of this segment, or -1 if it is empty. */
+        abstract long lastRow();
+
+        /** Writes the bits that fall into row {@code y}, held unfiltered (or as BMP pixels) in {@code row}. */
+        abstract void write(byte[] row, int y) throws IOException;
+
+        protected PixelRaster rasterFor(byte[] row) {
+            if (row == rowA) {
+                return rasterA;
+            }
+            if (row != rowB) {
+                rowB = rowA;
+                rasterB = rasterA;
+                rowA = row;
+                rasterA = bgr ? PixelRaster.ofBgrRow(row, width, layout) : PixelRaster.ofScanline(row, 1, width, samples, layout);
+                return rasterA;
+            }
+            return rasterB;
+        }
+    }
+
+    /**
+     * A run of payload bits in consecutive slots from a fixed slot. Rows are visited in order, so
+     * the bytes are read from the stream sequentially; only those under the current row are
+     * buffered, plus a byte that straddles the row boundary.
+     */
+    static final class SequentialSegment extends Segment {
+        private final InputStream source;
+        private byte[] window = new byte[0];
+        private int windowLength;
+        private long windowStart; // payload byte index of window[0]
+
+        /**
+         * @param length number of bytes {@code source} must supply
+         */
+        SequentialSegment(InputStream source, long length, long firstSlot) {
+            this(source, length, firstSlot, LsbLayout.DEFAULT);
+        }
+
+        /**
+         * @param firstSlot first slot under {@code layout}
+         */
+        SequentialSegment(InputStream source, long length, long firstSlot, LsbLayout layout) {
+            super(layout, firstSlot, length * 8);
+            this.source = source;
+        }
+
+        @Override
+        long lastRow() {
+            return endSlot == firstSlot ? -1 : (endSlot - 1) / rowSlots;
+        }
+
+        @Override
+        void write(byte[] row, int y) throws IOException {
+            long rowStart = y * rowSlots;
+            long from = Math.max(firstSlot, rowStart);
+            long to = Math.min(endSlot, rowStart + rowSlots);
+            if (from >= to) {
+                return;
+            }
+            long firstByte = (from - firstSlot) >>> 3;
+            int needed = (int) (((to - firstSlot + 7) >>> 3) - firstByte);
+            int keep = (int) Math.max(0, windowStart + windowLength - firstByte);
+            byte[] target = window.length < needed ? new byte[needed] : window;
+            System.arraycopy(window, windowLength - keep, target, 0, keep);
+            window = target;
+            windowStart = firstByte;
+            windowLength = keep;
+            while (windowLength < needed) {
+                int read = source.read(window, windowLength, needed - windowLength);
+                if (read < 0) {
+                    throw new EOFException("❌ Payload ended before its declared length");
+                }
+                windowLength += read;
+            }
+            rasterFor(row).writeBits(window, from - firstSlot - (firstByte << 3), to - from, from - rowStart);
+        }
+    }
+
+    /**
+     * A payload whose bit {@code i} goes to slot {@code firstSlot + P(i)}, P being the
+     * {@link SlotPermutation} of every slot from {@code firstSlot} to the end of the image.
+     *
+     * Small payloads have their slots computed up front and sorted, so each row only visits its
+     * own bits; that table costs 8 bytes per payload bit. Above {@code sortedLimitBits} nothing
+     * is tabulated: every slot of every row is mapped back through the inverse permutation,
+     * which costs time in proportion to the image but no memory.
+     */
+    static final class ScatteredSegment extends Segment {
+        /** Largest payload, in bits, whose slots are sorted up front. */
+        static final long SORTED_LIMIT_BITS = 1L << 19;
+        // Sorted entries are slot << INDEX_BITS | payload bit
+        private static final int INDEX_BITS = 20;
+
+        private final byte[] payload;
+        private final long bitCount;
+        private final byte[] key;
+        private final long sortedLimitBits;
+        private SlotPermutation permutation;
+        private long[] sorted;
+        private int next;
+
+        ScatteredSegment(byte[] payload, long firstSlot, LsbLayout layout, byte[] key) {
+            this(payload, firstSlot, layout, key, SORTED_LIMIT_BITS);
+        }
+
+        ScatteredSegment(byte[] payload, long firstSlot, LsbLayout layout, byte[] key, long sortedLimitBits) {
+            super(layout, firstSlot, (long) payload.length * 8);
+            this.payload = payload;
+            this.bitCount = (long) payload.length * 8;
+            this.key = key;
+            this.sortedLimitBits = Math.min(sortedLimitBits, 1L << INDEX_BITS);
+        }
+
+        @Override
+        void bind(int imageWidth, int imageHeight, int samplesPerPixel) {
+            super.bind(imageWidth, imageHeight, samplesPerPixel);
+            long size = imageHeight * rowSlots - firstSlot;
+            permutation = new SlotPermutation(key, size);
+            if (bitCount <= sortedLimitBits && size < 1L << (63 - INDEX_BITS)) {
+                sorted = new long[(int) bitCount];
+                for (int bit = 0; bit < sorted.length; bit++) {
+                    sorted[bit] = (permutation.apply(bit) << INDEX_BITS) | bit;
+                }
+                Arrays.sort(sorted);
+            }
+        }
+
+        @Override
+        long lastRow() {
+            if (bitCount == 0) {
+                return -1;
+            }
+            if (sorted != null) {
+                return (firstSlot + (sorted[sorted.length - 1] >>> INDEX_BITS)) / rowSlots;
+            }
+            return (firstSlot + permutation.size() - 1) / rowSlots;
+        }
+
+        @Override
+        void write(byte[] row, int y) {
+            long rowStart = y * rowSlots;
+            long rowEnd = rowStart + rowSlots;
+            PixelRaster raster = rasterFor(row);
+            if (sorted != null) {
+                for (; next < sorted.length; next++) {
+                    long slot = firstSlot + (sorted[next] >>> INDEX_BITS);
+                    if (slot >= rowEnd) {
+                        break;
+                    }
+                    int bit = (int) (sorted[next] & ((1L << INDEX_BITS) - 1));
+                    raster.writeBit(slot - rowStart, PixelRaster.bitAt(payload, bit));
+                }
+                return;
+            }
+            for (long slot = Math.max(firstSlot, rowStart); slot < rowEnd; slot++) {
+                long bit = permutation.inverse(slot - firstSlot);
+                if (bit < bitCount) {
+                    raster.writeBit(slot - rowStart, PixelRaster.bitAt(payload, bit));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the untouched rows {@code fromRow} up to {@code toRow} in buffer-sized runs, reporting whole rows copied.
+     */
+    private static void copyRows(InputStream in, OutputStream out, int fromRow, int toRow, int rowLength,
+                                 RowProgress progress) throws IOException {
+        byte[] buffer = new byte[IO_BUFFER];
+        long count = (long) (toRow - fromRow) * rowLength;
+        long copied = 0;
+        while (copied < count) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, count - copied));
+            if (read < 0) {
+                throw new IllegalArgumentException("❌ Invalid PNG: image data ends early");
+            }
+            out.write(buffer, 0, read);
+            copied += read;
+            progress.rowsProcessed(fromRow + (int) (copied / rowLength));
+        }
+    }
+
+    private static void readRow(InputStream in, byte[] row) throws IOException {
+        int offset = 0;
+        while (offset < row.length) {
+            int read = in.read(row, offset, row.length - offset);
+            if (read < 0) {
+                throw new IllegalArgumentException("❌ Invalid PNG: image data ends early");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Presents the data of consecutive IDAT chunks as one stream. Stops at the first chunk
+     * of another type, which is left current in the reader.
+     */
+    private static final class IdatInputStream extends InputStream {
+        private final PngChunkReader reader;
+        private boolean done;
+
+        IdatInputStream(PngChunkReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!done) {
+                int read = reader.read(b, off, len);
+                if (read > 0) {
+                    return read;
+                }
+                reader.finishChunk();
+                if (reader.nextChunk() != PngChunkReader.IDAT) {
+                    done = true;
+                }
+            }
+            return -1;
+        }
+
+        /** Consumes any IDAT data left after the last scanline (e.g. the zlib checksum). */
+        void skipToEnd() throws IOException {
+            byte[] skip = new byte[8192];
+            while (read(skip, 0, skip.length) >= 0) {
+                // discard
+            }
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream belongs to the caller
+        }
+    }
+}
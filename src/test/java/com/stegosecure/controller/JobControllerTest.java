@@ -0,0 +1,66 @@
+package com.stegosecure.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class JobControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testFinishedHideJobResultIsDownloaded() throws Exception {
+        // Given
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB), "png", png);
+        MockMultipartFile carrier = new MockMultipartFile("image", "carrier.png", MediaType.IMAGE_PNG_VALUE, png.toByteArray());
+
+        // When
+        String submitted = mockMvc.perform(multipart("/api/jobs/hide").file(carrier)
+                        .param("message", "Fetched later")
+                        .param("key", "job-key"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        String id = JsonPath.read(submitted, "$.jobId");
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        String state;
+        do {
+            Thread.sleep(20);
+            state = JsonPath.read(mockMvc.perform(get("/api/jobs/" + id))
+                    .andReturn().getResponse().getContentAsString(), "$.state");
+        } while (!"SUCCEEDED".equals(state) && !"FAILED".equals(state) && System.nanoTime() < deadline);
+
+        // Then
+        assertEquals("SUCCEEDED", state);
+        byte[] stegoImage = mockMvc.perform(get("/api/jobs/" + id + "/result"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("encoded_image.png")))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(stegoImage)));
+        mockMvc.perform(multipart("/api/reveal")
+                        .file(new MockMultipartFile("image", "encoded_image.png", MediaType.IMAGE_PNG_VALUE, stegoImage))
+                        .param("key", "job-key"))
+                .andExpect(jsonPath("$.message").value("Fetched later"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.stegosecure.controller;
+
+import com.stegosecure.service.MemoryBudget;
+import jakarta.servlet.ServletRequestEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class StegoControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
+    @Autowired
+    private RequestCleanup requestCleanup;
+
+    private MockMultipartFile carrier;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        carrier = new MockMultipartFile("image", "carrier.png", MediaType.IMAGE_PNG_VALUE, png.toByteArray());
+    }
+
+    @Test
+    void testHiddenImageIsStreamedAsADownloadAndReveals() throws Exception {
+        // Given
+        String message = "Streamed through the controller";
+
+        // When
+        // The stego-image is written asynchronously, after the handler has returned
+        MvcResult started = mockMvc.perform(multipart("/api/hide").file(carrier)
+                        .param("message", message)
+                        .param("key", "controller-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] stegoImage = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString("encoded_image.png")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        mockMvc.perform(multipart("/api/reveal")
+                        .file(new MockMultipartFile("image", "encoded_image.png", MediaType.IMAGE_PNG_VALUE, stegoImage))
+                        .param("key", "controller-key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("success"))
+                .andExpect(jsonPath("$.message").value(message));
+    }
+
+    @Test
+    void testHiddenFileIsStreamedBothWays() throws Exception {
+        // Given
+        byte[] file = new byte[3_000];
+        new Random(5).nextBytes(file);
+
+        // When
+        MvcResult hidden = mockMvc.perform(multipart("/api/hide-file").file(carrier)
+                        .file(new MockMultipartFile("file", "secret.bin", MediaType.APPLICATION_OCTET_STREAM_VALUE, file))
+                        .param("key", "file-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] stegoImage = mockMvc.perform(asyncDispatch(hidden))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        MvcResult revealed = mockMvc.perform(multipart("/api/reveal-file")
+                        .file(new MockMultipartFile("image", "encoded_image.png", MediaType.IMAGE_PNG_VALUE, stegoImage))
+                        .param("key", "file-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        byte[] revealedFile = mockMvc.perform(asyncDispatch(revealed))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(file, revealedFile);
+    }
+
+    @Test
+    void testBatchResultsAreStreamedAsNdjson() throws Exception {
+        // Given
+        MvcResult hidden = mockMvc.perform(multipart("/api/hide").file(carrier)
+                        .param("message", "batched")
+                        .param("key", "batch-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] stegoImage = mockMvc.perform(asyncDispatch(hidden)).andReturn().getResponse().getContentAsByteArray();
+
+        // When
+        MvcResult revealed = mockMvc.perform(multipart("/api/batch/reveal")
+                        .file(new MockMultipartFile("image", "one.png", MediaType.IMAGE_PNG_VALUE, stegoImage))
+                        .file(new MockMultipartFile("image", "two.png", MediaType.IMAGE_PNG_VALUE, stegoImage))
+                        .param("key", "batch-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        String ndjson = mockMvc.perform(asyncDispatch(revealed))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(2, ndjson.lines().filter(line -> line.contains("\"batched\"")).count(), ndjson);
+        mockMvc.perform(multipart("/api/batch/reveal").file(carrier).param("key", "k").param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("use zip or ndjson")));
+    }
+
+    @Test
+    void testUnwrittenDownloadIsReleasedWhenTheRequestEnds() throws Exception {
+        // Given
+        // The handler reserves memory for the stego-image, then the body is never run
+        MvcResult started = mockMvc.perform(multipart("/api/hide").file(carrier)
+                        .param("message", "never sent")
+                        .param("key", "abandoned-key"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(memoryBudget.getReservedBytes() > 0);
+
+        // When
+        requestCleanup.requestDestroyed(new ServletRequestEvent(started.getRequest().getServletContext(), started.getRequest()));
+
+        // Then
+        assertEquals(0, memoryBudget.getReservedBytes(), "The budget must be full again once the request is over.");
+    }
+
+    @Test
+    void testInvalidRequestsGetJsonErrors() throws Exception {
+        // Given
+        MockMultipartFile gif = new MockMultipartFile("image", "carrier.gif", MediaType.IMAGE_GIF_VALUE, new byte[]{1, 2, 3});
+
+        // When & Then
+        mockMvc.perform(multipart("/api/hide").file(carrier).param("message", "m").param("key", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"))
+                .andExpect(jsonPath("$.message").value("Encryption key is required"));
+        mockMvc.perform(multipart("/api/reveal").file(gif).param("key", "k"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(containsString("PNG, BMP or TIFF")));
+        mockMvc.perform(multipart("/api/reveal").file(carrier).param("key", "no-message-here"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.status").value("error"));
+        mockMvc.perform(multipart("/api/hide").file(carrier).param("message", "m"))
+                .andExpect(status().isBadRequest());
+    }
+}
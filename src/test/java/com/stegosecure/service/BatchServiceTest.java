@@ -0,0 +1,154 @@
+package com.stegosecure.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BatchServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Autowired
+    private BatchService batchService;
+
+    private byte[] testImageBytes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        BufferedImage testImage = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(testImage, "png", baos);
+        testImageBytes = baos.toByteArray();
+    }
+
+    @Test
+    void testBatchHideAndRevealKeepsOrderAndIsolatesFailures() throws Exception {
+        // Given
+        // Twenty images, one of which is not a PNG, each with its own message and key
+        List<String> messages = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            messages.add("message " + i + ", with a comma");
+            keys.add("key-" + i);
+            byte[] image = i == 7 ? "not an image".getBytes(StandardCharsets.UTF_8) : testImageBytes;
+            items.add(BatchItems.item(i, "dir/img" + i + ".png", image, messages, keys));
+        }
+
+        // When
+        ByteArrayOutputStream hidden = new ByteArrayOutputStream();
+        batchService.hideBatch(items.iterator(), null, BatchResultWriter.ndjson(hidden));
+        List<JsonNode> hideLines = readLines(hidden.toByteArray());
+
+        List<BatchItem> stegoItems = new ArrayList<>();
+        for (JsonNode line : hideLines) {
+            if ("success".equals(line.get("status").asText())) {
+                byte[] stegoImage = Base64.getDecoder().decode(line.get("image").asText());
+                stegoItems.add(BatchItems.item(line.get("index").asInt(), line.get("name").asText(), stegoImage,
+                        null, List.of(keys.get(line.get("index").asInt()))));
+            }
+        }
+        ByteArrayOutputStream revealed = new ByteArrayOutputStream();
+        batchService.revealBatch(stegoItems.iterator(), BatchResultWriter.ndjson(revealed));
+        List<JsonNode> revealLines = readLines(revealed.toByteArray());
+
+        // Then
+        assertEquals(20, hideLines.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i, hideLines.get(i).get("index").asInt(), "Results must come back in request order.");
+            assertEquals("img" + i + ".png", hideLines.get(i).get("name").asText(), "Directories are stripped from names.");
+            assertEquals(i == 7 ? "error" : "success", hideLines.get(i).get("status").asText());
+        }
+        assertEquals(19, revealLines.size());
+        for (JsonNode line : revealLines) {
+            assertEquals(messages.get(line.get("index").asInt()), line.get("message").asText());
+        }
+    }
+
+    @Test
+    void testBatchRevealFromZipArchiveToZipOutput() throws Exception {
+        // Given
+        StegoService stegoService = new StegoService();
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            zip.putNextEntry(new ZipEntry("images/"));
+            zip.putNextEntry(new ZipEntry("images/first.png"));
+            zip.write(stegoService.hideMessage(testImageBytes, "first secret", "k"));
+            zip.putNextEntry(new ZipEntry("images/second.png"));
+            zip.write(stegoService.hideMessage(testImageBytes, "second secret", "other-key"));
+            zip.putNextEntry(new ZipEntry("images/huge.png"));
+            zip.write(new byte[4096]);
+        }
+
+        // When
+        // One key for every entry, so the second item fails to decrypt; the 4 KiB entry exceeds the limit
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        batchService.revealBatch(BatchItems.fromZip(new ByteArrayInputStream(archive.toByteArray()), null, List.of("k"), 2048),
+                BatchResultWriter.zip(output));
+
+        // Then
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        assertEquals("first secret", new String(entries.get("0_first.png.txt"), StandardCharsets.UTF_8));
+        List<JsonNode> status = readLines(entries.get(ZipBatchResultWriter.RESULTS_ENTRY));
+        assertEquals(3, status.size());
+        assertEquals("success", status.get(0).get("status").asText());
+        assertEquals("error", status.get(1).get("status").asText());
+        assertEquals("error", status.get(2).get("status").asText());
+        assertTrue(status.get(2).get("error").asText().contains("limit"));
+        assertEquals(2, entries.size(), "Only successful items get a file next to the status list.");
+    }
+
+    @Test
+    void testUnnamedItemsAreNamedAfterTheirFormat() throws Exception {
+        // Given
+        ByteArrayOutputStream bmp = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR), "bmp", bmp);
+        List<String> keys = List.of("k");
+
+        // When
+        BatchItem png = BatchItems.item(0, null, testImageBytes, null, keys);
+        BatchItem bitmap = BatchItems.item(1, "upload/", bmp.toByteArray(), null, keys);
+        BatchItem unknown = BatchItems.item(2, "", new byte[]{1, 2, 3}, null, keys);
+
+        // Then
+        assertEquals("image_0.png", png.getName());
+        assertEquals("image_1.bmp", bitmap.getName());
+        assertEquals("image_2", unknown.getName());
+    }
+
+    private static List<JsonNode> readLines(byte[] ndjson) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : new String(ndjson, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(MAPPER.readTree(line));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,169 @@
+package com.stegosecure.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CpuWorkPoolTest {
+
+    private static final long MB = 1 << 20;
+
+    @Test
+    void testDisabledPoolRunsOnCallingThread() throws Exception {
+        // Given
+        CpuWorkPool pool = new CpuWorkPool(false, 2, 4);
+
+        // When
+        Thread worker = pool.execute(Thread::currentThread);
+
+        // Then
+        assertSame(Thread.currentThread(), worker);
+        assertEquals(0, pool.getQueueDepth());
+    }
+
+    @Test
+    void testEnabledPoolRunsOnItsOwnThreadsAndPropagatesFailures() throws Exception {
+        // Given
+        CpuWorkPool pool = new CpuWorkPool(true, 2, 4);
+        try {
+            // When
+            Thread worker = pool.execute(Thread::currentThread);
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+            pool.render(() -> outputStream -> outputStream.write(new byte[]{1, 2, 3})).writeTo(rendered);
+
+            // Then
+            assertTrue(worker.getName().startsWith("stego-cpu-"));
+            assertArrayEquals(new byte[]{1, 2, 3}, rendered.toByteArray());
+            assertThrows(IOException.class, () -> pool.execute(() -> {
+                throw new IOException("task failure");
+            }), "The task's own exception should reach the caller unwrapped.");
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void testRenderedImageIsEncodedBeforeTheDownloadAndFreesThePoolThread() throws Exception {
+        // Given
+        CpuWorkPool pool = new CpuWorkPool(true, 1, 4);
+        MemoryBudget budget = new MemoryBudget(true, 64 * MB, 0);
+        byte[] image = new byte[5 << 20];
+        new Random(3).nextBytes(image);
+        try {
+            // When
+            StegoImageOutput rendered = pool.render(() -> budget.reserve(MB).releaseAfter(outputStream -> {
+                for (int offset = 0; offset < image.length; offset += 1000) {
+                    outputStream.write(image, offset, Math.min(1000, image.length - offset));
+                }
+            }));
+
+            // Then
+            // Encoded and released before anything is downloaded, so the only pool thread is free again
+            assertEquals(0, budget.getReservedBytes());
+            CompletableFuture.runAsync(() -> call(pool, () -> null)).get(5, TimeUnit.SECONDS);
+            ByteArrayOutputStream downloaded = new ByteArrayOutputStream();
+            rendered.writeTo(downloaded);
+            assertArrayEquals(image, downloaded.toByteArray());
+            IOException failure = assertThrows(IOException.class, () -> pool.render(() -> outputStream -> {
+                outputStream.write(image);
+                throw new IOException("encoder failure");
+            }), "Encoding failures must surface before the response is committed.");
+            assertEquals("encoder failure", failure.getMessage());
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void testOutputPreparedForAnInterruptedCallerIsReleased() throws Exception {
+        // Given
+        // The caller stops waiting while the output is still being prepared on the pool
+        CpuWorkPool pool = new CpuWorkPool(true, 1, 4);
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Exception> outcome = new CompletableFuture<>();
+            Thread caller = new Thread(() -> {
+                try {
+                    pool.render(() -> budget.reserve(MB).hold(() -> {
+                        started.countDown();
+                        release.await();
+                        return outputStream -> outputStream.write(1);
+                    }));
+                    outcome.complete(null);
+                } catch (Exception e) {
+                    outcome.complete(e);
+                }
+            });
+            caller.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // When
+            caller.interrupt();
+            assertInstanceOf(InterruptedException.class, outcome.get(5, TimeUnit.SECONDS));
+            release.countDown();
+            StegoImageOutput unwritten = pool.render(() -> budget.reserve(MB).releaseAfter(outputStream -> outputStream.write(1)));
+            unwritten.close();
+
+            // Then
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (budget.getReservedBytes() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, budget.getReservedBytes(), "Neither output was written, so both must have been closed.");
+        } finally {
+            release.countDown();
+            pool.stop();
+        }
+    }
+
+    @Test
+    void testFullQueueIsRejectedAsBusy() throws Exception {
+        // Given
+        // One thread held busy and a queue of one already taken
+        CpuWorkPool pool = new CpuWorkPool(true, 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> running = CompletableFuture.runAsync(() -> call(pool, () -> {
+                started.countDown();
+                release.await();
+                return null;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> call(pool, () -> null));
+            while (pool.getQueueDepth() == 0) {
+                Thread.onSpinWait();
+            }
+
+            // When & Then
+            assertThrows(ServerBusyException.class, () -> pool.execute(() -> null));
+            assertThrows(ServerBusyException.class, () -> pool.render(() -> outputStream -> outputStream.write(1)),
+                    "Rendering is queued before the body is returned, so it is refused the same way.");
+            assertEquals(2, pool.getRejectedCount());
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+            pool.stop();
+        }
+    }
+
+    private static void call(CpuWorkPool pool, Callable<Object> task) {
+        try {
+            pool.execute(task);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.stegosecure.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class JobServiceTest {
+
+    @Autowired
+    private JobService jobService;
+
+    @Autowired
+    private StegoService stegoService;
+
+    private byte[] testImageBytes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        BufferedImage testImage = new BufferedImage(300, 240, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(testImage, "png", baos);
+        testImageBytes = baos.toByteArray();
+    }
+
+    @Test
+    void testHideAndRevealJobsReportProgressAndStoreResults() throws Exception {
+        // Given
+        String originalMessage = "Hidden by a background job";
+
+        // When
+        StegoJob hideJob = jobService.submitHide(ImageSource.of(testImageBytes), originalMessage, "job-key", null);
+        awaitFinished(hideJob);
+        byte[] stegoImage;
+        try (InputStream result = jobService.openResult(hideJob)) {
+            stegoImage = result.readAllBytes();
+        }
+        StegoJob revealJob = jobService.submitReveal(ImageSource.of(stegoImage), "job-key");
+        awaitFinished(revealJob);
+
+        // Then
+        assertEquals(StegoJob.State.SUCCEEDED, hideJob.getState(), () -> "Hide job failed: " + hideJob.getError());
+        assertEquals(240, hideJob.getTotalRows());
+        assertEquals(240, hideJob.getRowsProcessed(), "Every row should have been reported.");
+        assertEquals(stegoImage.length, hideJob.getResultSize());
+        assertEquals(originalMessage, stegoService.revealMessage(stegoImage, "job-key"));
+        try (InputStream result = jobService.openResult(revealJob)) {
+            assertEquals(originalMessage, new String(result.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testFailedJobKeepsErrorAndExpiredJobsAreEvicted() throws Exception {
+        // Given
+        StegoJob job = jobService.submitReveal(ImageSource.of(testImageBytes), "no-message-here");
+
+        // When
+        awaitFinished(job);
+
+        // Then
+        assertEquals(StegoJob.State.FAILED, job.getState());
+        assertNotNull(job.getError());
+        assertThrows(IllegalStateException.class, () -> jobService.openResult(job));
+        jobService.evictExpired(Instant.now());
+        assertSame(job, jobService.getJob(job.getId()), "A job is kept until its TTL has passed.");
+        jobService.evictExpired(Instant.now().plus(Duration.ofDays(1)));
+        assertNull(jobService.getJob(job.getId()));
+        assertThrows(IllegalArgumentException.class, () -> jobService.submitHide(ImageSource.of("not a png".getBytes(StandardCharsets.UTF_8)), "m", "k", null),
+                "Non-PNG uploads are rejected at submission, not queued.");
+    }
+
+    private static void awaitFinished(StegoJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "Job did not finish in time");
+    }
+}
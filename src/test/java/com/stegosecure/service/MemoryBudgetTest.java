@@ -0,0 +1,141 @@
+package com.stegosecure.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryBudgetTest {
+
+    private static final long MB = 1 << 20;
+
+    @Test
+    void testReservationsAreReleasedOnceWhenClosedOrWritten() throws Exception {
+        // Given
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, 0);
+
+        // When
+        MemoryBudget.Reservation first = budget.reserve(MB + 1);
+        StegoImageOutput output = budget.reserve(MB).releaseAfter(outputStream -> outputStream.write(1));
+
+        // Then
+        assertEquals(MB + 1024, first.getBytes(), "Reservations are rounded up to whole KiB.");
+        assertEquals(2 * MB + 1024, budget.getReservedBytes());
+        first.close();
+        first.close();
+        assertEquals(MB, budget.getReservedBytes(), "Closing twice must release only once.");
+        output.writeTo(new ByteArrayOutputStream());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    void testOutputThatIsNeverWrittenIsReleasedWhenClosed() throws Exception {
+        // Given
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, 0);
+        StegoImageOutput output = budget.reserve(3 * MB).hold(() -> outputStream -> outputStream.write(1));
+        assertEquals(3 * MB, budget.getReservedBytes());
+
+        // When
+        output.close();
+
+        // Then
+        assertEquals(0, budget.getReservedBytes(), "An output dropped unwritten must not keep its reservation.");
+        budget.reserve(4 * MB).close();
+    }
+
+    @Test
+    void testFailedPreparationReleasesItsReservation() throws Exception {
+        // Given
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, 0);
+        MemoryBudget.Reservation reservation = budget.reserve(3 * MB);
+
+        // When & Then
+        assertThrows(IOException.class, () -> reservation.hold(() -> {
+            throw new IOException("decode failed");
+        }));
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    void testImageLargerThanTheBudgetIsRefusedAtOnce() {
+        // Given
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, TimeUnit.SECONDS.toNanos(10));
+
+        // When & Then
+        assertThrows(ImageTooLargeException.class, () -> budget.reserve(4 * MB + 1));
+        assertEquals(1, budget.getRejectedCount());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    void testRequestWaitsForReleaseAndIsRefusedAsBusyAfterMaxWait() throws Exception {
+        // Given
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, TimeUnit.SECONDS.toNanos(5));
+        MemoryBudget.Reservation held = budget.reserve(3 * MB);
+
+        // When
+        CompletableFuture<MemoryBudget.Reservation> waiting = CompletableFuture.supplyAsync(() -> reserve(budget, 2 * MB));
+        while (budget.getWaitingCount() == 0) {
+            Thread.onSpinWait();
+        }
+        held.close();
+
+        // Then
+        MemoryBudget.Reservation admitted = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(2 * MB, budget.getReservedBytes());
+        MemoryBudget impatient = new MemoryBudget(true, 4 * MB, TimeUnit.MILLISECONDS.toNanos(20));
+        impatient.reserve(4 * MB);
+        assertThrows(ServerBusyException.class, () -> impatient.reserve(1));
+        assertEquals(1, impatient.getRejectedCount());
+        admitted.close();
+    }
+
+    @Test
+    void testDisabledBudgetAdmitsEverything() throws Exception {
+        // Given
+        MemoryBudget budget = MemoryBudget.unlimited();
+
+        // When
+        MemoryBudget.Reservation reservation = budget.reserve(Long.MAX_VALUE);
+
+        // Then
+        assertFalse(budget.isEnabled());
+        assertEquals(0, reservation.getBytes());
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    void testReservationsArePublishedAsMeters() throws Exception {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        MemoryBudget budget = new MemoryBudget(true, 4 * MB, 0);
+        budget.bindTo(registry);
+
+        // When
+        MemoryBudget.Reservation reservation = budget.reserve(MB);
+        assertThrows(ImageTooLargeException.class, () -> budget.reserve(5 * MB));
+
+        // Then
+        assertEquals(MB, registry.get("stego.memory.reserved").gauge().value());
+        assertEquals(4 * MB, registry.get("stego.memory.budget").gauge().value());
+        assertEquals(1, registry.get("stego.memory.reservations").functionCounter().count());
+        assertEquals(1, registry.get("stego.memory.rejections").tag("reason", "too-large").functionCounter().count());
+        assertEquals(0, registry.get("stego.memory.rejections").tag("reason", "busy").functionCounter().count());
+        reservation.close();
+        assertEquals(0, registry.get("stego.memory.reserved").gauge().value());
+    }
+
+    private static MemoryBudget.Reservation reserve(MemoryBudget budget, long bytes) {
+        try {
+            return budget.reserve(bytes);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.stegosecure.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevealCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private byte[] load(int size) {
+        loads.incrementAndGet();
+        return new byte[size];
+    }
+
+    @Test
+    void testSameImageIsServedFromCacheWhateverItsSource() throws Exception {
+        // Given
+        RevealCache cache = new RevealCache(true, 1_000, 1_000, 1_000, clock::get);
+
+        // When
+        byte[] first = cache.get(ImageSource.of(new byte[]{1, 2, 3}), () -> load(10));
+        byte[] second = cache.get(ImageSource.of(new byte[]{1, 2, 3}), () -> load(10));
+        cache.get(ImageSource.of(new byte[]{1, 2, 4}), () -> load(10));
+
+        // Then
+        assertSame(first, second, "Identical image bytes should hit the cached payload.");
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.getSize());
+        assertEquals(20, cache.getBytes());
+    }
+
+    @Test
+    void testLeastRecentlyUsedPayloadsAreEvictedToStayWithinByteBudget() throws Exception {
+        // Given
+        RevealCache cache = new RevealCache(true, 100, 1_000, 1_000, clock::get);
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(40));
+        cache.get(ImageSource.of(new byte[]{2}), () -> load(40));
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(40)); // 2 is now the eldest
+
+        // When
+        cache.get(ImageSource.of(new byte[]{3}), () -> load(40));
+        cache.get(ImageSource.of(new byte[]{4}), () -> load(500)); // larger than the budget, never cached
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(40));
+
+        // Then
+        assertEquals(4, loads.get(), "Only the new, the evicted and the oversized payloads are loaded.");
+        assertEquals(80, cache.getBytes());
+    }
+
+    @Test
+    void testImagesAboveTheSizeLimitBypassTheCache() throws Exception {
+        // Given
+        RevealCache cache = new RevealCache(true, 1_000, 4, 1_000, clock::get);
+        AtomicInteger opens = new AtomicInteger();
+        ImageSource large = ImageSource.of(5, () -> {
+            opens.incrementAndGet();
+            return new ByteArrayInputStream(new byte[5]);
+        });
+
+        // When
+        cache.get(large, () -> load(10));
+        cache.get(large, () -> load(10));
+        cache.get(ImageSource.of(new byte[4]), () -> load(10));
+
+        // Then
+        assertEquals(0, opens.get(), "An image above the limit must not be read to hash it.");
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    void testPayloadsExpireAfterTtlEvenWhenHit() throws Exception {
+        // Given
+        RevealCache cache = new RevealCache(true, 1_000, 1_000, 1_000, clock::get);
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(10));
+        clock.set(999);
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(10));
+
+        // When
+        clock.set(1_000);
+        cache.get(ImageSource.of(new byte[]{1}), () -> load(10));
+
+        // Then
+        assertEquals(2, loads.get(), "An expired payload must be extracted again.");
+        assertFalse(RevealCache.disabled().isEnabled());
+    }
+}
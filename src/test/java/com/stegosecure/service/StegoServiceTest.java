@@ -1,16 +1,39 @@
 package com.stegosecure.service;
 
+import com.stegosecure.util.AESUtil;
+import com.stegosecure.util.CarrierCodec;
+import com.stegosecure.util.CarrierCodecs;
+import com.stegosecure.util.ImageSteganographyUtil;
+import com.stegosecure.util.LsbLayout;
+import com.stegosecure.util.PngHeader;
+import com.stegosecure.util.RowProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @SpringBootTest
 class StegoServiceTest {
@@ -18,6 +41,12 @@ class StegoServiceTest {
     @Autowired
     private StegoService stegoService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MemoryBudget memoryBudget;
+
     private byte[] testImageBytes;
 
     @BeforeEach
@@ -63,4 +92,367 @@ class StegoServiceTest {
             stegoService.revealMessage(stegoImageBytes, wrongKey);
         }, "Revealing a message with the wrong key should throw an exception.");
     }
+
+    @Test
+    void testHideAndRevealGrayscaleImageUsesDecodingFallback() throws Exception {
+        // Given
+        // Greyscale PNGs cannot be streamed and go through the decode/embed/encode path
+        BufferedImage grayImage = new BufferedImage(120, 120, BufferedImage.TYPE_BYTE_GRAY);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(grayImage, "png", baos);
+        String originalMessage = "Greyscale carrier message";
+        String key = "grey-key";
+
+        // When
+        byte[] stegoImageBytes = stegoService.hideMessage(baos.toByteArray(), originalMessage, key);
+
+        // Then
+        assertEquals(originalMessage, stegoService.revealMessage(stegoImageBytes, key));
+    }
+
+    @Test
+    void testEveryEncoderProfileRoundTrips() throws Exception {
+        // Given
+        String originalMessage = "Profile round trip";
+        String key = "profile-key";
+
+        for (String profile : new String[]{"fast", "balanced", "small"}) {
+            // When
+            ByteArrayOutputStream stegoImage = new ByteArrayOutputStream();
+            stegoService.prepareHide(testImageBytes, originalMessage, key, profile).writeTo(stegoImage);
+
+            // Then
+            assertEquals(originalMessage, stegoService.revealMessage(stegoImage.toByteArray(), key),
+                    "Profile " + profile + " must produce a revealable image.");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> stegoService.prepareHide(testImageBytes, originalMessage, key, "turbo"));
+    }
+
+    @Test
+    void testRevealBase64ImageFromEarlierVersions() throws Exception {
+        // Given
+        // Earlier versions embedded the Base64 ciphertext as header-framed text
+        String originalMessage = "Written before raw payloads";
+        String key = "old-key";
+        BufferedImage carrier = ImageIO.read(new ByteArrayInputStream(testImageBytes));
+        BufferedImage oldStegoImage = ImageSteganographyUtil.hideMessage(carrier, AESUtil.encrypt(originalMessage, key));
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(oldStegoImage, "png", baos);
+
+        // When
+        String revealedMessage = stegoService.revealMessage(baos.toByteArray(), key);
+
+        // Then
+        assertEquals(originalMessage, revealedMessage);
+    }
+
+    @Test
+    void testScatteringIsOptInAndSequentialImagesStillReveal() throws Exception {
+        // Given
+        String originalMessage = "Spread over the whole image";
+        String key = "scatter-key";
+        StegoService scatteringService = new StegoService();
+        ReflectionTestUtils.setField(scatteringService, "lsbScatter", true);
+
+        // When
+        byte[] sequentialBytes = stegoService.hideMessage(testImageBytes, originalMessage, key);
+        byte[] scatteredBytes = scatteringService.hideMessage(testImageBytes, originalMessage, key);
+
+        // Then
+        assertFalse(ImageSteganographyUtil.readHeader(ImageIO.read(new ByteArrayInputStream(sequentialBytes))).isScattered(),
+                "Payloads are written in slot order unless scattering is turned on.");
+        assertTrue(ImageSteganographyUtil.readHeader(ImageIO.read(new ByteArrayInputStream(scatteredBytes))).isScattered());
+        assertEquals(originalMessage, stegoService.revealMessage(scatteredBytes, key),
+                "Reveal follows the embedded header whatever the service is configured to write.");
+        assertEquals(originalMessage, scatteringService.revealMessage(sequentialBytes, key));
+        assertThrows(Exception.class, () -> stegoService.revealMessage(scatteredBytes, "wrong-key"));
+    }
+
+    @Test
+    void testCapacityMatchesLargestMessageThatFits() throws Exception {
+        // Given
+        BufferedImage smallImage = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(smallImage, "png", baos);
+        byte[] smallImageBytes = baos.toByteArray();
+
+        // When
+        int capacity = stegoService.getImageCapacity(smallImageBytes);
+
+        // Then
+        String fits = "x".repeat(capacity);
+        assertEquals(fits, stegoService.revealMessage(stegoService.hideMessage(smallImageBytes, fits, "k"), "k"));
+        assertThrows(Exception.class, () -> stegoService.hideMessage(smallImageBytes, fits + "x", "k"),
+                "One byte more than the reported capacity must not fit.");
+    }
+
+    @Test
+    void testPipelineStagesAndFailuresAreMetered() throws Exception {
+        // Given
+        double decryptFailures = counter("stego.decrypt.failures", "reveal");
+        double rejections = counter("stego.capacity.rejections", "hide");
+        long streamedHides = stageCount("hide", "stream");
+
+        // When
+        byte[] stegoImageBytes = stegoService.hideMessage(testImageBytes, "Metered message", "metrics-key");
+        stegoService.revealMessage(stegoImageBytes, "metrics-key");
+        assertThrows(Exception.class, () -> stegoService.revealMessage(stegoImageBytes, "wrong-key"));
+        assertThrows(Exception.class, () -> stegoService.hideMessage(testImageBytes, "x".repeat(100_000), "metrics-key"));
+
+        // Then
+        assertEquals(streamedHides + 1, stageCount("hide", "stream"));
+        for (String stage : new String[] {"decode", "extract", "decrypt"}) {
+            assertTrue(stageCount("reveal", stage) > 0, "No timing for reveal stage " + stage);
+        }
+        assertEquals(decryptFailures + 1, counter("stego.decrypt.failures", "reveal"));
+        assertEquals(rejections + 1, counter("stego.capacity.rejections", "hide"));
+        assertNotNull(meterRegistry.find("stego.payload.size").tag("operation", "hide").summary());
+        for (String pool : new String[] {"stego-batch", "stego-jobs"}) {
+            assertNotNull(meterRegistry.find("executor.queued").tag("name", pool).gauge(), "Pool not bound: " + pool);
+        }
+        assertNotNull(meterRegistry.find("cache.gets").tag("cache", "derived-keys").functionCounter());
+    }
+
+    @Test
+    void testHideAndRevealReadFromAFileBackedSource(@TempDir Path tempDir) throws Exception {
+        // Given
+        // Stands in for a multipart upload that spilled to disk: opened once per pass, never buffered
+        Path upload = Files.write(tempDir.resolve("upload.png"), testImageBytes);
+        AtomicInteger opens = new AtomicInteger();
+        ImageSource source = ImageSource.of(Files.size(upload), () -> {
+            opens.incrementAndGet();
+            return Files.newInputStream(upload);
+        });
+
+        // When
+        ByteArrayOutputStream stegoImage = new ByteArrayOutputStream();
+        stegoService.prepareHide(source, "Read from disk", "file-key", null, RowProgress.NONE).writeTo(stegoImage);
+        Path stegoUpload = Files.write(tempDir.resolve("stego.png"), stegoImage.toByteArray());
+
+        // Then
+        assertEquals(2, opens.get(), "The header and the pixels are each read straight from the source.");
+        assertEquals("Read from disk", stegoService.revealMessage(ImageSource.of(stegoUpload), "file-key"));
+    }
+
+    @Test
+    void testRepeatedRevealSkipsDecodingButStillChecksTheKey() throws Exception {
+        // Given
+        byte[] stegoImageBytes = stegoService.hideMessage(testImageBytes, "Revealed twice", "cache-key");
+        long decodes = stageCount("reveal", "decode");
+
+        // When
+        String first = stegoService.revealMessage(stegoImageBytes, "cache-key");
+        String second = stegoService.revealMessage(stegoImageBytes.clone(), "cache-key");
+
+        // Then
+        assertEquals("Revealed twice", first);
+        assertEquals(first, second);
+        assertEquals(decodes + 1, stageCount("reveal", "decode"), "The second reveal should use the cached payload.");
+        assertThrows(Exception.class, () -> stegoService.revealMessage(stegoImageBytes, "wrong-key"),
+                "Only ciphertext is cached, so a wrong key must still fail.");
+    }
+
+    @Test
+    void testCapacityReadsOnlyThePngHeader() throws Exception {
+        // Given
+        // Everything after the 33-byte signature + IHDR is withheld; reading on would fail
+        InputStream headerOnly = new SequenceInputStream(new ByteArrayInputStream(testImageBytes, 0, PngHeader.LENGTH),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Capacity must not read past the IHDR chunk");
+                    }
+                });
+        byte[] corruptCrc = testImageBytes.clone();
+        corruptCrc[PngHeader.LENGTH - 1] ^= 0x01;
+
+        // When & Then
+        assertEquals(stegoService.getImageCapacity(testImageBytes), stegoService.getImageCapacity(headerOnly));
+        assertThrows(IllegalArgumentException.class, () -> stegoService.getImageCapacity(corruptCrc),
+                "A damaged header must be rejected as invalid input.");
+        assertThrows(IllegalArgumentException.class,
+                () -> stegoService.getImageCapacity(Arrays.copyOf(testImageBytes, 20)));
+    }
+
+    @Test
+    void testHideFallsBackToDeeperLsbOnlyWhenNeeded() throws Exception {
+        // Given
+        BufferedImage smallImage = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(smallImage, "png", baos);
+        byte[] smallImageBytes = baos.toByteArray();
+        String shortMessage = "fits in one bit per channel";
+        String longMessage = "y".repeat(AESUtil.maxPlaintextLength(ImageSteganographyUtil.getMaxCapacity(smallImage) / 8) + 1);
+
+        // When
+        byte[] shallowStego = stegoService.hideMessage(smallImageBytes, shortMessage, "k");
+        byte[] deepStego = stegoService.hideMessage(smallImageBytes, longMessage, "k");
+
+        // Then
+        assertEquals(LsbLayout.DEFAULT, readLayout(shallowStego));
+        assertEquals(LsbLayout.of(2, false), readLayout(deepStego), "The shallowest depth that fits should be chosen.");
+        assertEquals(shortMessage, stegoService.revealMessage(shallowStego, "k"));
+        assertEquals(longMessage, stegoService.revealMessage(deepStego, "k"));
+    }
+
+    @Test
+    void testHideAndRevealFile() throws Exception {
+        // Given
+        byte[] file = new byte[10_000];
+        new java.util.Random(3).nextBytes(file);
+        String key = "file-passphrase";
+
+        // When
+        ByteArrayOutputStream stegoImage = new ByteArrayOutputStream();
+        stegoService.prepareHideFile(testImageBytes, new ByteArrayInputStream(file), file.length, key, null).writeTo(stegoImage);
+        RevealedFile revealedFile = stegoService.revealFile(stegoImage.toByteArray(), key);
+        ByteArrayOutputStream revealed = new ByteArrayOutputStream();
+        revealedFile.writeTo(revealed);
+
+        // Then
+        assertEquals(file.length, revealedFile.getSize());
+        assertArrayEquals(file, revealed.toByteArray());
+        assertThrows(Exception.class, () -> stegoService.revealFile(stegoImage.toByteArray(), "wrong-passphrase"));
+        assertThrows(Exception.class, () -> stegoService.revealMessage(stegoImage.toByteArray(), key),
+                "The message endpoint must refuse an image that holds a file.");
+    }
+
+    @Test
+    void testBmpAndTiffCarriersRoundTripInTheirOwnFormat() throws Exception {
+        // Given
+        BufferedImage bmpImage = new BufferedImage(120, 90, BufferedImage.TYPE_3BYTE_BGR);
+        BufferedImage tiffImage = new BufferedImage(120, 90, BufferedImage.TYPE_4BYTE_ABGR);
+        java.util.Random random = new java.util.Random(11);
+        for (int y = 0; y < 90; y++) {
+            for (int x = 0; x < 120; x++) {
+                bmpImage.setRGB(x, y, random.nextInt());
+                tiffImage.setRGB(x, y, random.nextInt());
+            }
+        }
+        byte[] file = new byte[2_000];
+        random.nextBytes(file);
+
+        for (CarrierCodec codec : new CarrierCodec[]{CarrierCodecs.BMP, CarrierCodecs.TIFF}) {
+            ByteArrayOutputStream carrier = new ByteArrayOutputStream();
+            ImageIO.write(codec == CarrierCodecs.BMP ? bmpImage : tiffImage, codec.getName(), carrier);
+            byte[] carrierBytes = carrier.toByteArray();
+
+            // When
+            byte[] stegoImageBytes = stegoService.hideMessage(carrierBytes, "Carried by " + codec.getName(), "codec-key");
+            ByteArrayOutputStream fileStego = new ByteArrayOutputStream();
+            stegoService.prepareHideFile(carrierBytes, new ByteArrayInputStream(file), file.length, "codec-key", null).writeTo(fileStego);
+            ByteArrayOutputStream revealedFile = new ByteArrayOutputStream();
+            stegoService.revealFile(fileStego.toByteArray(), "codec-key").writeTo(revealedFile);
+
+            // Then
+            assertSame(codec, stegoService.detectFormat(ImageSource.of(stegoImageBytes)),
+                    "The stego-image must keep the format of the upload.");
+            assertEquals("Carried by " + codec.getName(), stegoService.revealMessage(stegoImageBytes, "codec-key"));
+            assertArrayEquals(file, revealedFile.toByteArray());
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(codec == CarrierCodecs.BMP ? bmpImage : tiffImage, "png", png);
+            assertEquals(stegoService.getImageCapacity(png.toByteArray()), stegoService.getImageCapacity(carrierBytes),
+                    "Capacity depends on the dimensions, not the format.");
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> stegoService.detectFormat(ImageSource.of("GIF89a".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void testBmpCapacityReadsOnlyTheFileHeader() throws Exception {
+        // Given
+        ByteArrayOutputStream carrier = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 200, BufferedImage.TYPE_3BYTE_BGR), "bmp", carrier);
+        // A BMP header is the 14-byte file header plus the 40-byte info header
+        InputStream headerOnly = new SequenceInputStream(new ByteArrayInputStream(carrier.toByteArray(), 0, 54),
+                new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Capacity must not read BMP pixel data");
+                    }
+                });
+
+        // When & Then
+        assertEquals(stegoService.getImageCapacity(testImageBytes), stegoService.getImageCapacity(headerOnly));
+    }
+
+    @Test
+    void testBmpHideIsEmbeddedInPlaceWithoutReencoding() throws Exception {
+        // Given
+        BufferedImage image = new BufferedImage(301, 200, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream carrier = new ByteArrayOutputStream();
+        ImageIO.write(image, "bmp", carrier);
+        byte[] file = new byte[5_000];
+        new java.util.Random(24).nextBytes(file);
+        long inPlaceBefore = stageCount("hide", "in-place");
+        long decodesBefore = stageCount("hide", "decode");
+
+        // When
+        byte[] stegoImageBytes = stegoService.hideMessage(carrier.toByteArray(), "Mapped, not decoded", "bmp-key");
+        ByteArrayOutputStream fileStego = new ByteArrayOutputStream();
+        stegoService.prepareHideFile(carrier.toByteArray(), new ByteArrayInputStream(file), file.length, "bmp-key", null).writeTo(fileStego);
+        ByteArrayOutputStream revealedFile = new ByteArrayOutputStream();
+        stegoService.revealFile(fileStego.toByteArray(), "bmp-key").writeTo(revealedFile);
+
+        // Then
+        assertEquals(inPlaceBefore + 1, stageCount("hide", "in-place"));
+        assertEquals(decodesBefore, stageCount("hide", "decode"), "An uncompressed BMP must not be decoded to hide.");
+        assertEquals(carrier.size(), stegoImageBytes.length, "Only pixel bytes change, so the file keeps its size.");
+        assertEquals(carrier.size(), fileStego.size());
+        assertEquals("Mapped, not decoded", stegoService.revealMessage(stegoImageBytes, "bmp-key"));
+        assertArrayEquals(file, revealedFile.toByteArray());
+    }
+
+    @Test
+    void testRequestsReserveWorkingMemoryBeforeDecoding() throws Exception {
+        // Given
+        // Decoded to hide and reveal, so both reserve the decoded size
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(200, 200, BufferedImage.TYPE_3BYTE_BGR), "tiff", tiff);
+        // Claims 65535x65535 pixels (about 17 GB decoded); nothing past the header is valid
+        byte[] huge = withDimensions(testImageBytes, 65_535, 65_535);
+        assumeTrue(memoryBudget.getMaxBytes() < 65_535L * 65_535 * 4, "Heap too large for this test");
+        long admissions = stageCount("hide", "admission");
+        double tooLarge = meterRegistry.get("stego.memory.rejections").tag("reason", "too-large").functionCounter().count();
+
+        // When
+        byte[] stegoImageBytes = stegoService.hideMessage(tiff.toByteArray(), "Budgeted", "budget-key");
+        String revealed = stegoService.revealMessage(stegoImageBytes, "budget-key");
+
+        // Then
+        assertEquals("Budgeted", revealed);
+        assertEquals(admissions + 1, stageCount("hide", "admission"));
+        assertEquals(0, memoryBudget.getReservedBytes(), "Reservations must be released once the results are written.");
+        assertThrows(ImageTooLargeException.class, () -> stegoService.revealMessage(huge, "budget-key"),
+                "An image that could never fit must be refused before it is decoded.");
+        assertEquals(tooLarge + 1,
+                meterRegistry.get("stego.memory.rejections").tag("reason", "too-large").functionCounter().count());
+        assertEquals(0, memoryBudget.getReservedBytes());
+    }
+
+    /** A copy of a PNG whose IHDR chunk, CRC included, claims other dimensions. */
+    private static byte[] withDimensions(byte[] png, int width, int height) {
+        byte[] copy = png.clone();
+        ByteBuffer ihdr = ByteBuffer.wrap(copy, 16, 8);
+        ihdr.putInt(width).putInt(height);
+        CRC32 crc = new CRC32();
+        crc.update(copy, 12, 17);
+        ByteBuffer.wrap(copy, 29, 4).putInt((int) crc.getValue());
+        return copy;
+    }
+
+    private static LsbLayout readLayout(byte[] stegoImageBytes) throws Exception {
+        return ImageSteganographyUtil.readHeader(ImageIO.read(new ByteArrayInputStream(stegoImageBytes))).getLayout();
+    }
+
+    private long stageCount(String operation, String stage) {
+        Timer timer = meterRegistry.find(StegoMetrics.STAGE_TIMER).tag("operation", operation).tag("stage", stage).timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private double counter(String name, String operation) {
+        Counter counter = meterRegistry.find(name).tag("operation", operation).counter();
+        return counter == null ? 0 : counter.count();
+    }
 }
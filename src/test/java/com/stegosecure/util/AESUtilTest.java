@@ -1,6 +1,17 @@
 package com.stegosecure.util;
 
 import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class AESUtilTest {
@@ -51,4 +62,76 @@ class AESUtilTest {
         assertNotNull(encrypted, "Encrypted string of an empty message should not be null.");
         assertEquals(emptyMessage, decrypted, "Decrypting an encrypted empty message should result in an empty string.");
     }
+
+    @Test
+    void testRepeatedKeyIsServedFromCache() throws Exception {
+        // Given
+        String key = "cache-test-key-" + System.nanoTime();
+        long hitsBefore = AESUtil.getKeyCacheStats().getHits();
+
+        // When
+        String encrypted = AESUtil.encrypt("cached", key);
+        String decrypted = AESUtil.decrypt(encrypted, key);
+
+        // Then
+        assertEquals("cached", decrypted);
+        assertTrue(AESUtil.getKeyCacheStats().getHits() > hitsBefore, "Decrypting with the same key should hit the cache.");
+    }
+
+    @Test
+    void testConcurrentEncryptionWithSharedKeys() throws Exception {
+        // Given
+        String[] keys = {"key-one", "key-two", "key-three"};
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            // When
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String key = keys[i % keys.length];
+                String message = "message " + i;
+                results.add(pool.submit(() -> message.equals(AESUtil.decrypt(AESUtil.encrypt(message, key), key))));
+            }
+
+            // Then
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(), "Every round trip should succeed with per-thread ciphers.");
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testByteAndByteBufferRoundTrip() throws Exception {
+        // Given
+        byte[] plaintext = "raw bytes, no Base64".getBytes(StandardCharsets.UTF_8);
+        String key = "byte-key";
+
+        // When
+        byte[] ciphertext = AESUtil.encrypt(plaintext, key);
+        ByteBuffer direct = ByteBuffer.allocateDirect(AESUtil.ciphertextLength(plaintext.length));
+        int written = AESUtil.encrypt(ByteBuffer.wrap(plaintext), direct, key);
+        direct.flip();
+        ByteBuffer decrypted = ByteBuffer.allocate(written);
+        AESUtil.decrypt(direct, decrypted, key);
+
+        // Then
+        assertEquals(AESUtil.ciphertextLength(plaintext.length), ciphertext.length);
+        assertArrayEquals(plaintext, AESUtil.decrypt(ciphertext, key));
+        assertEquals(ciphertext.length, written);
+        assertArrayEquals(plaintext, Arrays.copyOf(decrypted.array(), decrypted.position()));
+        assertEquals(Base64.getEncoder().encodeToString(ciphertext), AESUtil.encrypt("raw bytes, no Base64", key),
+                "The String API is the byte API plus Base64.");
+    }
+
+    @Test
+    void testCapacityHelpersAccountForPadding() {
+        assertEquals(16, AESUtil.ciphertextLength(0));
+        assertEquals(16, AESUtil.ciphertextLength(15));
+        assertEquals(32, AESUtil.ciphertextLength(16));
+        assertEquals(15, AESUtil.maxPlaintextLength(16));
+        assertEquals(15, AESUtil.maxPlaintextLength(31));
+        assertEquals(-1, AESUtil.maxPlaintextLength(15));
+    }
 }
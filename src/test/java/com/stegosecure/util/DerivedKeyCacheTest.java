@@ -0,0 +1,75 @@
+package com.stegosecure.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedKeyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger derivations = new AtomicInteger();
+
+    private SecretKeySpec derive() {
+        derivations.incrementAndGet();
+        return new SecretKeySpec(new byte[16], "AES");
+    }
+
+    @Test
+    void testRepeatedLookupIsServedFromCache() throws Exception {
+        // Given
+        DerivedKeyCache cache = new DerivedKeyCache(4, 1_000, clock::get);
+
+        // When
+        SecretKeySpec first = cache.get(new byte[]{1}, this::derive);
+        SecretKeySpec second = cache.get(new byte[]{1}, this::derive);
+
+        // Then
+        assertSame(first, second, "The second lookup should return the cached key.");
+        assertEquals(1, derivations.get());
+        KeyCacheStats stats = cache.stats();
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryIsEvictedWhenFull() throws Exception {
+        // Given
+        DerivedKeyCache cache = new DerivedKeyCache(2, 1_000, clock::get);
+        cache.get(new byte[]{1}, this::derive);
+        cache.get(new byte[]{2}, this::derive);
+        cache.get(new byte[]{1}, this::derive); // 2 is now the eldest
+
+        // When
+        cache.get(new byte[]{3}, this::derive);
+        cache.get(new byte[]{1}, this::derive);
+        cache.get(new byte[]{2}, this::derive);
+
+        // Then
+        assertEquals(4, derivations.get(), "Only the evicted key should have been derived again.");
+        KeyCacheStats stats = cache.stats();
+        assertEquals(2, stats.getSize());
+        assertEquals(2, stats.getEvictions());
+    }
+
+    @Test
+    void testEntriesExpireAfterTtlEvenWhenHit() throws Exception {
+        // Given
+        DerivedKeyCache cache = new DerivedKeyCache(4, 1_000, clock::get);
+        cache.get(new byte[]{1}, this::derive);
+        clock.set(999);
+        cache.get(new byte[]{1}, this::derive);
+
+        // When
+        clock.set(1_000);
+        cache.get(new byte[]{1}, this::derive);
+
+        // Then
+        assertEquals(2, derivations.get(), "An expired key must be derived again.");
+        assertEquals(1, cache.stats().getExpirations());
+    }
+}
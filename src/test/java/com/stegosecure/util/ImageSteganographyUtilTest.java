@@ -2,12 +2,24 @@ package com.stegosecure.util;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class ImageSteganographyUtilTest {
 
@@ -33,6 +45,191 @@ class ImageSteganographyUtilTest {
         assertEquals(secretMessage, revealedMessage, "The revealed message must match the original secret message.");
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {
+            BufferedImage.TYPE_INT_RGB,
+            BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_3BYTE_BGR,
+            BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_BYTE_GRAY
+    })
+    void testHideAndRevealAcrossImageTypes(int imageType) throws Exception {
+        // Given
+        BufferedImage image = new BufferedImage(64, 48, imageType);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 4 << 16) | (y * 5 << 8) | ((x + y) & 0xFF));
+            }
+        }
+        int[] originalPixels = image.getRGB(0, 0, 64, 48, null, 0, 64);
+        String secretMessage = "Raster engine round trip for every supported layout";
+
+        // When
+        BufferedImage stegoImage = ImageSteganographyUtil.hideMessage(image, secretMessage);
+        String revealedMessage = ImageSteganographyUtil.revealMessage(stegoImage);
+
+        // Then
+        assertEquals(secretMessage, revealedMessage, "The revealed message must match for image type " + imageType);
+        assertArrayEquals(originalPixels, image.getRGB(0, 0, 64, 48, null, 0, 64),
+                "Hiding must not modify the source image.");
+    }
+
+    @Test
+    void testHideAndRevealAllocationIsBoundedByImageCopy() throws Exception {
+        // Given
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        BufferedImage largeImage = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+        String secretMessage = "x".repeat(4096);
+        long imageCopyBytes = 1000L * 1000 * Integer.BYTES;
+        ImageSteganographyUtil.revealMessage(ImageSteganographyUtil.hideMessage(largeImage, secretMessage)); // warm up
+
+        // When
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        BufferedImage stegoImage = ImageSteganographyUtil.hideMessage(largeImage, secretMessage);
+        long afterHide = threads.getThreadAllocatedBytes(threadId);
+        String revealedMessage = ImageSteganographyUtil.revealMessage(stegoImage);
+        long afterReveal = threads.getThreadAllocatedBytes(threadId);
+
+        // Then
+        long hideAllocated = afterHide - before - imageCopyBytes;
+        long revealAllocated = afterReveal - afterHide;
+        System.out.println("Allocated beyond the image copy: hide=" + hideAllocated + " B, reveal=" + revealAllocated
+                + " B for a " + secretMessage.length() + " byte payload");
+        assertEquals(secretMessage, revealedMessage);
+        assertTrue(hideAllocated < 64 * 1024, "Hide should only allocate the image copy plus the encoded payload.");
+        assertTrue(revealAllocated < 64 * 1024, "Reveal should only allocate the payload buffer and result string.");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR})
+    void testUnrolledExtractionMatchesSlotBySlotReads(int imageType) {
+        // Given
+        BufferedImage image = new BufferedImage(40, 10, imageType);
+        java.util.Random random = new java.util.Random(imageType);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        PixelRaster raster = PixelRaster.of(image);
+        int bitCount = 300;
+
+        // When & Then
+        // Every combination of pixel and payload byte offsets, so the head, unrolled groups and tail all run
+        for (int firstSlot = 0; firstSlot < 24; firstSlot++) {
+            for (int dstBit = 0; dstBit < 24; dstBit++) {
+                byte[] expected = new byte[(dstBit + bitCount + 7) / 8];
+                for (int bit = 0; bit < bitCount; bit++) {
+                    int at = dstBit + bit;
+                    expected[at / 8] |= (byte) (raster.readBit(firstSlot + bit) << (7 - at % 8));
+                }
+                byte[] actual = new byte[expected.length];
+                raster.readBits(actual, dstBit, bitCount, firstSlot);
+                assertArrayEquals(expected, actual, "firstSlot=" + firstSlot + " dstBit=" + dstBit);
+            }
+        }
+    }
+
+    @Test
+    void testRevealFromPixelFormatWithoutDirectAccess() throws Exception {
+        // Given
+        // TYPE_INT_BGR has no PixelRaster view, so extraction goes through getRGB a row at a time
+        byte[] payload = new byte[700];
+        new java.util.Random(3).nextBytes(payload);
+        BufferedImage stegoImage = ImageSteganographyUtil.hidePayload(testImage, payload);
+        BufferedImage legacyImage = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        writeLsbBits(legacyImage, "Legacy text###EOM###".getBytes(StandardCharsets.US_ASCII));
+
+        // When
+        BufferedImage bgrStego = toIntBgr(stegoImage);
+        BufferedImage bgrLegacy = toIntBgr(legacyImage);
+
+        // Then
+        assertNull(PixelRaster.of(bgrStego));
+        assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(bgrStego));
+        assertEquals("Legacy text", ImageSteganographyUtil.revealMessage(bgrLegacy));
+    }
+
+    @Test
+    void testParallelBandsMatchSequentialEmbedding() throws Exception {
+        // Given
+        // A payload well above the parallel threshold
+        BufferedImage largeImage = new BufferedImage(700, 700, BufferedImage.TYPE_3BYTE_BGR);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 150_000; i++) {
+            builder.append(i).append(',');
+        }
+        String secretMessage = builder.toString();
+        byte[] payload = secretMessage.getBytes(StandardCharsets.UTF_8);
+        assertTrue(payload.length * 8L >= ParallelLsb.PARALLEL_THRESHOLD_BITS);
+
+        // When
+        BufferedImage parallelImage = ImageSteganographyUtil.hideMessage(largeImage, secretMessage);
+        BufferedImage sequentialImage = ImageSteganographyUtil.hideMessage(largeImage, "");
+        PixelRaster.of(sequentialImage).writeBits(payload, 0, payload.length * 8L, ImageSteganographyUtil.HEADER_BITS);
+        byte[] header = new byte[ImageSteganographyUtil.HEADER_BYTES];
+        PixelRaster.of(parallelImage).readBits(header, 0, ImageSteganographyUtil.HEADER_BITS, 0);
+        PixelRaster.of(sequentialImage).writeBits(header, 0, ImageSteganographyUtil.HEADER_BITS, 0);
+
+        // Then
+        assertArrayEquals(sequentialImage.getRGB(0, 0, 700, 700, null, 0, 700),
+                parallelImage.getRGB(0, 0, 700, 700, null, 0, 700),
+                "Parallel bands must produce exactly the pixels of a sequential pass.");
+        assertEquals(secretMessage, ImageSteganographyUtil.revealMessage(parallelImage));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR})
+    void testStreamingPngHideMatchesDecodedReveal(int imageType) throws Exception {
+        // Given
+        // A noisy image so the PNG encoder picks a mix of scanline filters
+        BufferedImage image = new BufferedImage(120, 90, imageType);
+        java.util.Random random = new java.util.Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int noise = random.nextInt(16);
+                image.setRGB(x, y, (0x80 + noise) << 24 | (x * 2 + noise) << 16 | (y * 2) << 8 | (x + y + noise) & 0xFF);
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        PngHeader header = PngHeader.read(new ByteArrayInputStream(png.toByteArray()));
+        byte[] payload = "Streamed through scanlines without decoding the whole image".getBytes(StandardCharsets.UTF_8);
+
+        // When & Then
+        // Every profile and filter strategy must change exactly the pixels the in-memory embedder changes
+        assertTrue(ImageSteganographyUtil.supportsStreaming(header));
+        int[] expected = ImageSteganographyUtil.hidePayload(image, payload).getRGB(0, 0, 120, 90, null, 0, 120);
+        PngEncoderSettings[] variants = {
+                PngEncoderSettings.DEFAULT,
+                PngEncoderSettings.FAST,
+                PngEncoderSettings.SMALL,
+                PngEncoderSettings.BALANCED.withFilterStrategy(PngFilterStrategy.PAETH)
+        };
+        for (PngEncoderSettings settings : variants) {
+            ByteArrayOutputStream stegoPng = new ByteArrayOutputStream();
+            ImageSteganographyUtil.hidePayload(new ByteArrayInputStream(png.toByteArray()), stegoPng, payload, settings);
+            BufferedImage stegoImage = ImageIO.read(new ByteArrayInputStream(stegoPng.toByteArray()));
+            assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(stegoImage), "Settings " + settings);
+            assertArrayEquals(expected, stegoImage.getRGB(0, 0, 120, 90, null, 0, 120), "Settings " + settings);
+        }
+    }
+
+    @Test
+    void testStreamingPngHideRejectsCorruptChunk() throws Exception {
+        // Given
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 40, BufferedImage.TYPE_3BYTE_BGR), "png", png);
+        byte[] corrupt = png.toByteArray();
+        corrupt[PngHeader.LENGTH - 1] ^= 0x01; // flip a bit of the IHDR CRC
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> ImageSteganographyUtil.hidePayload(
+                new ByteArrayInputStream(corrupt), new ByteArrayOutputStream(), new byte[16], PngEncoderSettings.DEFAULT));
+    }
+
     @Test
     void testMessageTooLargeForImageThrowsException() {
         // Given
@@ -55,4 +252,374 @@ class ImageSteganographyUtilTest {
         assertThrows(Exception.class, () -> ImageSteganographyUtil.revealMessage(originalImage),
                 "Attempting to reveal a message from an image with no hidden content should throw an exception.");
     }
+
+    @Test
+    void testRevealLegacyDelimiterImage() throws Exception {
+        // Given
+        // An image written by the pre-header format: payload followed by ###EOM###
+        String secretMessage = "bGVnYWN5IHBheWxvYWQ=";
+        writeLsbBits(testImage, (secretMessage + "###EOM###").getBytes(StandardCharsets.UTF_8));
+
+        // When
+        String revealedMessage = ImageSteganographyUtil.revealMessage(testImage);
+
+        // Then
+        assertEquals(secretMessage, revealedMessage, "Legacy images must still decode through the compatibility path.");
+    }
+
+    @Test
+    void testRevealWithCorruptHeaderLengthThrowsException() {
+        // Given
+        // A valid magic and version but a length far beyond the image capacity
+        byte[] header = {(byte) 0x89, 'S', 'T', 'G', 1, 0, 0x7F, 0, 0, 0};
+        writeLsbBits(testImage, header);
+
+        // When & Then
+        assertThrows(Exception.class, () -> ImageSteganographyUtil.revealMessage(testImage),
+                "A header claiming more bytes than the image can hold should be rejected.");
+    }
+
+    @Test
+    void testHideAndRevealRawPayload() throws Exception {
+        // Given
+        // Every byte value, including ones that are not valid UTF-8
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        // When
+        BufferedImage stegoImage = ImageSteganographyUtil.hidePayload(testImage, payload);
+
+        // Then
+        assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(stegoImage), "Raw payloads must come back byte for byte.");
+        assertEquals(Base64.getEncoder().encodeToString(payload), ImageSteganographyUtil.revealMessage(stegoImage),
+                "Revealed as text, a raw payload is Base64-encoded.");
+    }
+
+    @Test
+    void testRevealPayloadDecodesBase64TextImages() throws Exception {
+        // Given
+        // Images written before raw payloads embedded the ciphertext as Base64 text
+        byte[] ciphertext = {1, 2, 3, (byte) 0xFE, (byte) 0xFF};
+        String base64 = Base64.getEncoder().encodeToString(ciphertext);
+        BufferedImage headerImage = ImageSteganographyUtil.hideMessage(testImage, base64);
+        writeLsbBits(testImage, (base64 + "###EOM###").getBytes(StandardCharsets.UTF_8));
+
+        // When & Then
+        assertArrayEquals(ciphertext, ImageSteganographyUtil.revealPayload(headerImage));
+        assertArrayEquals(ciphertext, ImageSteganographyUtil.revealPayload(testImage));
+    }
+
+    @Test
+    void testRevealWithUnknownHeaderFlagThrowsException() {
+        // Given
+        byte[] header = {(byte) 0x89, 'S', 'T', 'G', 1, 0x02, 0, 0, 0, 0};
+        writeLsbBits(testImage, header);
+
+        // When & Then
+        assertThrows(Exception.class, () -> ImageSteganographyUtil.revealPayload(testImage),
+                "Flags this version does not know must be rejected rather than misread.");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY})
+    void testHideAndRevealFileInMemoryAndStreamed(int imageType) throws Exception {
+        // Given
+        // Large enough to span many scanlines of the streaming embedder
+        BufferedImage image = new BufferedImage(300, 200, imageType);
+        byte[] file = new byte[20_000];
+        new java.util.Random(7).nextBytes(file);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+
+        // When
+        BufferedImage decodedStego = ImageSteganographyUtil.hideFile(image, new ByteArrayInputStream(file), file.length);
+
+        // Then
+        StegoHeader header = ImageSteganographyUtil.readHeader(decodedStego);
+        assertTrue(header.isEncryptedFile());
+        assertEquals(file.length, header.getPayloadLength());
+        assertArrayEquals(file, ImageSteganographyUtil.revealFile(decodedStego).readAllBytes());
+        assertThrows(Exception.class, () -> ImageSteganographyUtil.revealMessage(decodedStego),
+                "A file payload must not be mistaken for a message.");
+
+        if (ImageSteganographyUtil.supportsStreaming(PngHeader.read(new ByteArrayInputStream(png.toByteArray())))) {
+            ByteArrayOutputStream stegoPng = new ByteArrayOutputStream();
+            ImageSteganographyUtil.hideFile(new ByteArrayInputStream(png.toByteArray()), stegoPng,
+                    new ByteArrayInputStream(file), file.length, PngEncoderSettings.DEFAULT);
+            BufferedImage streamedStego = ImageIO.read(new ByteArrayInputStream(stegoPng.toByteArray()));
+            assertArrayEquals(file, ImageSteganographyUtil.revealFile(streamedStego).readAllBytes());
+            assertArrayEquals(decodedStego.getRGB(0, 0, 300, 200, null, 0, 300), streamedStego.getRGB(0, 0, 300, 200, null, 0, 300),
+                    "Streamed and in-memory embedding must change the same pixels.");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 4})
+    void testHideAndRevealAtEveryLsbDepth(int depth) throws Exception {
+        // Given
+        byte[] payload = new byte[3_000];
+        new java.util.Random(depth).nextBytes(payload);
+        for (LsbLayout layout : new LsbLayout[]{LsbLayout.of(depth, false), LsbLayout.of(depth, true)}) {
+            for (int imageType : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR}) {
+                BufferedImage image = new BufferedImage(120, 90, imageType);
+                java.util.Random random = new java.util.Random(11);
+                for (int y = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++) {
+                        image.setRGB(x, y, random.nextInt());
+                    }
+                }
+                ByteArrayOutputStream png = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", png);
+                String context = layout + " on type " + imageType;
+
+                // When
+                BufferedImage decodedStego = ImageSteganographyUtil.hidePayload(image, payload, layout);
+                ByteArrayOutputStream stegoPng = new ByteArrayOutputStream();
+                ImageSteganographyUtil.hidePayload(new ByteArrayInputStream(png.toByteArray()), stegoPng, payload,
+                        PngEncoderSettings.DEFAULT, layout);
+                BufferedImage streamedStego = ImageIO.read(new ByteArrayInputStream(stegoPng.toByteArray()));
+
+                // Then
+                assertEquals(layout, ImageSteganographyUtil.readHeader(decodedStego).getLayout(), context);
+                assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(decodedStego), context);
+                assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(streamedStego), context);
+                assertArrayEquals(decodedStego.getRGB(0, 0, 120, 90, null, 0, 120), streamedStego.getRGB(0, 0, 120, 90, null, 0, 120),
+                        "Streamed and in-memory embedding must change the same bits: " + context);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 1000, 4097, 65_536})
+    void testSlotPermutationIsAnInvertibleBijection(long size) {
+        // Given
+        byte[] key = new byte[SlotPermutation.KEY_BYTES];
+        new java.util.Random(size).nextBytes(key);
+        SlotPermutation permutation = new SlotPermutation(key, size);
+        boolean[] taken = new boolean[(int) size];
+
+        // When & Then
+        for (long index = 0; index < size; index++) {
+            long slot = permutation.apply(index);
+            assertTrue(slot >= 0 && slot < size, "Slot out of range: " + slot);
+            assertFalse(taken[(int) slot], "Two indices map to slot " + slot);
+            taken[(int) slot] = true;
+            assertEquals(index, permutation.inverse(slot));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4})
+    void testScatteredPayloadRoundTripsOnlyWithItsKey(int depth) throws Exception {
+        // Given
+        byte[] payload = new byte[2_000];
+        new java.util.Random(depth).nextBytes(payload);
+        byte[] scatterKey = AESUtil.deriveScatterKey("scatter-key");
+        byte[] otherKey = AESUtil.deriveScatterKey("other-key");
+        LsbLayout layout = LsbLayout.of(depth, false);
+        for (int imageType : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage image = new BufferedImage(120, 90, imageType);
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+            String context = layout + " on type " + imageType;
+
+            // When
+            BufferedImage decodedStego = ImageSteganographyUtil.hidePayload(image, payload, layout, scatterKey);
+            ByteArrayOutputStream stegoPng = new ByteArrayOutputStream();
+            ImageSteganographyUtil.hidePayload(new ByteArrayInputStream(png.toByteArray()), stegoPng, payload,
+                    PngEncoderSettings.DEFAULT, layout, scatterKey, RowProgress.NONE);
+            BufferedImage streamedStego = ImageIO.read(new ByteArrayInputStream(stegoPng.toByteArray()));
+
+            // Then
+            assertTrue(ImageSteganographyUtil.readHeader(decodedStego).isScattered(), context);
+            assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(decodedStego, scatterKey), context);
+            assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(streamedStego, scatterKey), context);
+            assertArrayEquals(decodedStego.getRGB(0, 0, 120, 90, null, 0, 120), streamedStego.getRGB(0, 0, 120, 90, null, 0, 120),
+                    "Streamed and in-memory embedding must scatter to the same slots: " + context);
+            assertFalse(java.util.Arrays.equals(payload, ImageSteganographyUtil.revealPayload(decodedStego, otherKey)), context);
+            assertThrows(Exception.class, () -> ImageSteganographyUtil.revealPayload(decodedStego),
+                    "A scattered payload cannot be found without its key.");
+            int lastRow = decodedStego.getHeight() - 1;
+            assertFalse(java.util.Arrays.equals(image.getRGB(0, lastRow, 120, 1, null, 0, 120),
+                    decodedStego.getRGB(0, lastRow, 120, 1, null, 0, 120)), "Bits should reach the bottom of the image: " + context);
+        }
+    }
+
+    @Test
+    void testScatteredStreamingWithoutSortedSlotsMatchesSortedSlots() throws Exception {
+        // Given
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        byte[] payload = new byte[500];
+        new java.util.Random(5).nextBytes(payload);
+        byte[] scatterKey = AESUtil.deriveScatterKey("scatter-key");
+        long payloadSlot = ImageSteganographyUtil.payloadSlot(LsbLayout.DEFAULT);
+
+        // When
+        // A limit of 0 maps every slot back through the inverse permutation instead
+        byte[][] outputs = new byte[2][];
+        long[] limits = {StreamingPngEmbedder.ScatteredSegment.SORTED_LIMIT_BITS, 0};
+        for (int i = 0; i < limits.length; i++) {
+            ByteArrayOutputStream stegoPng = new ByteArrayOutputStream();
+            StreamingPngEmbedder.embed(new ByteArrayInputStream(png.toByteArray()), stegoPng, new StreamingPngEmbedder.Segment[]{
+                    new StreamingPngEmbedder.ScatteredSegment(payload, payloadSlot, LsbLayout.DEFAULT, scatterKey, limits[i])},
+                    PngEncoderSettings.DEFAULT);
+            outputs[i] = stegoPng.toByteArray();
+        }
+
+        // Then
+        assertArrayEquals(outputs[0], outputs[1]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testInPlaceBmpEmbeddingMatchesDecodedEmbedding(boolean topDown, @TempDir Path tempDir) throws Exception {
+        // Given
+        // An odd width, so every stored row ends in padding bytes
+        BufferedImage image = new BufferedImage(37, 29, BufferedImage.TYPE_3BYTE_BGR);
+        java.util.Random random = new java.util.Random(37);
+        for (int y = 0; y < 29; y++) {
+            for (int x = 0; x < 37; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        byte[] bmp = topDown ? toTopDown(bmpBytes(image), 37, 29) : bmpBytes(image);
+        byte[] payload = new byte[300];
+        random.nextBytes(payload);
+        byte[] scatterKey = AESUtil.deriveScatterKey("bmp-key");
+
+        for (LsbLayout layout : new LsbLayout[]{LsbLayout.DEFAULT, LsbLayout.of(2, false)}) {
+            for (byte[] key : new byte[][]{null, scatterKey}) {
+                Path copy = Files.write(tempDir.resolve("carrier.bmp"), bmp);
+                String context = layout + (key == null ? " sequential" : " scattered") + (topDown ? " top-down" : "");
+
+                // When
+                ImageSteganographyUtil.hidePayload(copy, payload, layout, key, RowProgress.NONE);
+                byte[] stego = Files.readAllBytes(copy);
+                BufferedImage mappedStego = ImageIO.read(new ByteArrayInputStream(stego));
+                BufferedImage decodedStego = ImageSteganographyUtil.hidePayload(image, payload, layout, key);
+
+                // Then
+                assertEquals(bmp.length, stego.length, context);
+                assertArrayEquals(Arrays.copyOf(bmp, 54), Arrays.copyOf(stego, 54), "Headers stay untouched: " + context);
+                for (int row = 0; row < 29; row++) {
+                    int padding = 54 + row * 112 + 37 * 3;
+                    assertArrayEquals(Arrays.copyOfRange(bmp, padding, padding + 1), Arrays.copyOfRange(stego, padding, padding + 1),
+                            "Row padding stays untouched: " + context);
+                }
+                assertArrayEquals(decodedStego.getRGB(0, 0, 37, 29, null, 0, 37), mappedStego.getRGB(0, 0, 37, 29, null, 0, 37),
+                        "In-place and in-memory embedding must write the same slots: " + context);
+                assertArrayEquals(payload, ImageSteganographyUtil.revealPayload(mappedStego, key), context);
+            }
+        }
+        Path tooSmall = Files.write(tempDir.resolve("small.bmp"), bmp);
+        assertThrows(IllegalArgumentException.class,
+                () -> ImageSteganographyUtil.hidePayload(tooSmall, new byte[500], LsbLayout.DEFAULT, null, RowProgress.NONE));
+    }
+
+    @Test
+    void testSelectLayoutPicksShallowestDepthThatFits() {
+        // Given
+        int oneBitCapacity = ImageSteganographyUtil.getMaxCapacity(testImage) / 8;
+
+        // When & Then
+        assertEquals(LsbLayout.DEFAULT, ImageSteganographyUtil.selectLayout(100, 100, false, oneBitCapacity, 4, false));
+        assertEquals(LsbLayout.of(2, false), ImageSteganographyUtil.selectLayout(100, 100, false, oneBitCapacity + 1, 4, false));
+        assertEquals(LsbLayout.of(1, true), ImageSteganographyUtil.selectLayout(100, 100, true, oneBitCapacity + 1, 4, true),
+                "Alpha at the same depth changes fewer bits per channel than going one bit deeper.");
+        assertNull(ImageSteganographyUtil.selectLayout(100, 100, false, oneBitCapacity + 1, 1, false),
+                "Nothing fits when the deepest allowed layout is too small.");
+    }
+
+    @Test
+    void testDeepLayoutCannotUseMissingAlpha() {
+        // When & Then
+        assertThrows(Exception.class, () -> ImageSteganographyUtil.hidePayload(testImage, new byte[16], LsbLayout.of(2, true)),
+                "An RGB image has no alpha channel to carry payload.");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY})
+    void testTiffCodecDecodesIntoAddressableLayouts(int imageType) throws Exception {
+        // Given
+        BufferedImage original = new BufferedImage(64, 48, imageType);
+        java.util.Random random = new java.util.Random(imageType);
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                original.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+        ImageIO.write(original, "tiff", tiff);
+
+        // When
+        CarrierInfo info = CarrierCodecs.readInfo(new ByteArrayInputStream(tiff.toByteArray()));
+        BufferedImage decoded = CarrierCodecs.decode(new ByteArrayInputStream(tiff.toByteArray()));
+
+        // Then
+        assertSame(CarrierCodecs.TIFF, info.getCodec());
+        assertEquals(64, info.getWidth());
+        assertEquals(48, info.getHeight());
+        assertEquals(imageType == BufferedImage.TYPE_4BYTE_ABGR, info.hasAlpha());
+        if (imageType != BufferedImage.TYPE_BYTE_GRAY) {
+            assertEquals(imageType, decoded.getType(), "8-bit RGB(A) must decode straight into the embedder's layout.");
+            assertNotNull(PixelRaster.of(decoded));
+        }
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                assertEquals(original.getRGB(x, y), decoded.getRGB(x, y));
+            }
+        }
+        assertSame(CarrierCodecs.BMP, CarrierCodecs.forMediaType("image/x-ms-bmp"));
+        assertSame(CarrierCodecs.TIFF, CarrierCodecs.forMediaType("IMAGE/TIFF; charset=binary"));
+        assertNull(CarrierCodecs.forMediaType("image/gif"));
+    }
+
+    private static byte[] bmpBytes(BufferedImage image) throws IOException {
+        ByteArrayOutputStream bmp = new ByteArrayOutputStream();
+        ImageIO.write(image, "bmp", bmp);
+        return bmp.toByteArray();
+    }
+
+    /** Rewrites a bottom-up 24-bit BMP as top-down: negative height, rows in the reverse order. */
+    private static byte[] toTopDown(byte[] bmp, int width, int height) {
+        int stride = (width * 3 + 3) & ~3;
+        byte[] topDown = bmp.clone();
+        int negativeHeight = -height;
+        for (int i = 0; i < 4; i++) {
+            topDown[22 + i] = (byte) (negativeHeight >>> (8 * i));
+        }
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(bmp, 54 + row * stride, topDown, 54 + (height - 1 - row) * stride, stride);
+        }
+        return topDown;
+    }
+
+    private static BufferedImage toIntBgr(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_BGR);
+        copy.setRGB(0, 0, image.getWidth(), image.getHeight(),
+                image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth()), 0, image.getWidth());
+        return copy;
+    }
+
+    /**
+     * Writes raw bytes MSB-first into the R/G/B least significant bits in raster order.
+     */
+    private static void writeLsbBits(BufferedImage image, byte[] data) {
+        int bitIndex = 0;
+        int totalBits = data.length * 8;
+        for (int y = 0; y < image.getHeight() && bitIndex < totalBits; y++) {
+            for (int x = 0; x < image.getWidth() && bitIndex < totalBits; x++) {
+                int pixel = image.getRGB(x, y);
+                for (int shift = 16; shift >= 0 && bitIndex < totalBits; shift -= 8, bitIndex++) {
+                    int bit = (data[bitIndex / 8] >> (7 - bitIndex % 8)) & 1;
+                    pixel = (pixel & ~(1 << shift)) | (bit << shift);
+                }
+                image.setRGB(x, y, pixel);
+            }
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package com.stegosecure.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingAesGcmTest {
+
+    private static final int SEGMENT = StreamingAesGcm.SEGMENT_SIZE;
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 3 * SEGMENT + 5})
+    void testRoundTripAcrossSegmentBoundaries(int size) throws Exception {
+        // Given
+        byte[] plaintext = randomBytes(size);
+        String key = "file-key";
+
+        // When
+        byte[] ciphertext = StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), size, key).readAllBytes();
+        byte[] decrypted = StreamingAesGcm.decrypt(new ByteArrayInputStream(ciphertext), ciphertext.length, key).readAllBytes();
+
+        // Then
+        assertEquals(StreamingAesGcm.ciphertextLength(size), ciphertext.length);
+        assertEquals(size, StreamingAesGcm.plaintextLength(ciphertext.length));
+        assertArrayEquals(plaintext, decrypted);
+    }
+
+    @Test
+    void testStreamsChainedOnOneThreadDoNotShareCipherState() throws Exception {
+        // Given
+        int size = 2 * SEGMENT + 7;
+        byte[] plaintext = randomBytes(size);
+        long ciphertextLength = StreamingAesGcm.ciphertextLength(size);
+
+        // When
+        InputStream encrypted = StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), size, "inner-key");
+        InputStream reencrypted = StreamingAesGcm.encrypt(encrypted, ciphertextLength, "outer-key");
+        InputStream decrypted = StreamingAesGcm.decrypt(
+                StreamingAesGcm.decrypt(reencrypted, StreamingAesGcm.ciphertextLength(ciphertextLength), "outer-key"),
+                ciphertextLength, "inner-key");
+
+        // Then
+        assertArrayEquals(plaintext, decrypted.readAllBytes());
+    }
+
+    @Test
+    void testEveryMessageGetsItsOwnSaltAndNonce() throws Exception {
+        // Given
+        byte[] plaintext = randomBytes(100);
+
+        // When
+        byte[] first = StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), 100, "same-key").readAllBytes();
+        byte[] second = StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), 100, "same-key").readAllBytes();
+
+        // Then
+        assertFalse(Arrays.equals(first, second), "Encrypting the same file twice must not repeat the ciphertext.");
+    }
+
+    @Test
+    void testWrongKeyFailsBeforeAnyOutput() throws Exception {
+        // Given
+        byte[] ciphertext = StreamingAesGcm.encrypt(new ByteArrayInputStream(randomBytes(10)), 10, "right").readAllBytes();
+
+        // When & Then
+        assertThrows(Exception.class,
+                () -> StreamingAesGcm.decrypt(new ByteArrayInputStream(ciphertext), ciphertext.length, "wrong"),
+                "A wrong key must be detected on the first segment, before the caller writes anything.");
+    }
+
+    @Test
+    void testTamperedOrTruncatedSegmentsFailToRead() throws Exception {
+        // Given
+        int size = 2 * SEGMENT + 10;
+        byte[] ciphertext = StreamingAesGcm.encrypt(new ByteArrayInputStream(randomBytes(size)), size, "key").readAllBytes();
+        byte[] tampered = ciphertext.clone();
+        tampered[tampered.length - 20] ^= 1;
+        // Dropping the last segment leaves a stream whose new last segment is not flagged as last
+        int truncatedLength = StreamingAesGcm.HEADER_LENGTH + 2 * (SEGMENT + StreamingAesGcm.TAG_LENGTH);
+
+        // When
+        InputStream tamperedStream = StreamingAesGcm.decrypt(new ByteArrayInputStream(tampered), tampered.length, "key");
+        InputStream truncatedStream = StreamingAesGcm.decrypt(new ByteArrayInputStream(ciphertext), truncatedLength, "key");
+
+        // Then
+        assertThrows(IOException.class, tamperedStream::readAllBytes);
+        assertThrows(IOException.class, truncatedStream::readAllBytes);
+    }
+
+    @Test
+    void testEncryptRejectsFileOfWrongLength() throws Exception {
+        // Given
+        byte[] plaintext = randomBytes(20);
+
+        // When & Then
+        assertThrows(IOException.class,
+                () -> StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), 30, "key").readAllBytes());
+        assertThrows(IOException.class,
+                () -> StreamingAesGcm.encrypt(new ByteArrayInputStream(plaintext), 10, "key").readAllBytes());
+    }
+
+    @Test
+    void testMaxPlaintextLengthIsExact() {
+        for (long size : new long[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 5L * SEGMENT + 123}) {
+            long ciphertext = StreamingAesGcm.ciphertextLength(size);
+            assertEquals(size, StreamingAesGcm.maxPlaintextLength(ciphertext), "size " + size);
+            assertTrue(StreamingAesGcm.ciphertextLength(StreamingAesGcm.maxPlaintextLength(ciphertext + 1)) <= ciphertext + 1);
+        }
+        assertEquals(-1, StreamingAesGcm.maxPlaintextLength(StreamingAesGcm.HEADER_LENGTH + StreamingAesGcm.TAG_LENGTH - 1));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}